@@ -0,0 +1,283 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     AllocCheck.java                                       //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Checks that the game's steady state allocates         //
+//            nothing.  A headless map with machines working        //
+//            through jobs is run until it has warmed up, then the  //
+//            bytes allocated by more of the same are counted for   //
+//            each part of it:                                      //
+//                                                                  //
+//              tick    Map.check() on this thread                  //
+//              frame   Map.redraw() into a FrameBuffer             //
+//              strips  StripRenderer.redraw(), on this thread and  //
+//                      on each of its workers                      //
+//                                                                  //
+//              java AllocCheck [options]                           //
+//                -dir d       directory holding the tile sheets    //
+//                -size w h    map size in tiles (default 64x64)    //
+//                -warmup n    ticks before counting (default 1000) //
+//                -ticks n     ticks counted (default 2000)         //
+//                -strips n    StripRenderer threads (default 4)    //
+//                                                                  //
+//            It exits with status 1 if any part allocates, or if   //
+//            the JVM can't count allocations.                      //
+//                                                                  //
+//            There are two exceptions, counted apart and reported  //
+//            but not held to nothing:                              //
+//                                                                  //
+//              ground  a finished job makes a new Terrain          //
+//                      object for its tile, which is a real        //
+//                      change to the map, and the JVM may          //
+//                      allocate as it recompiles the code          //
+//                      around it                                   //
+//              awt     the same frames drawn on the AwtFrame       //
+//                      GameKit draws with, here on                 //
+//                      BufferedImages.  Our side of it allocates   //
+//                      nothing, but Java2D makes temporary         //
+//                      objects as it draws an image; the JIT       //
+//                      removes nearly all of them once it has      //
+//                      compiled that code fully                    //
+//                                                                  //
+//            GameKit's copy of each frame to the screen needs a    //
+//            display and isn't covered.                            //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.util.*;
+
+class AllocCheck implements MapListener
+{
+  static int width = 64, height = 64;
+  static int warmupTicks = 1000, ticks = 2000;
+  static int numStrips = 4;
+
+  //machines on the map, as in Benchmark's larger cases
+  static final int FLEET = 32;
+
+  Map map;
+  StripRenderer strips;
+  AwtFrame awt;
+
+  //counted since the last reset()
+  int changes;                 //tiles and corners changed
+  int changeTicks;             //ticks that changed any
+  long tickBytes;              //by ticks that didn't
+  long changeBytes;            //by ticks that did
+  long frameBytes, stripBytes, awtBytes;
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  AllocCheck                                       //
+  // Arguments:    _map - the site to run                           //
+  //               _strips - draws it in parallel                   //
+  //               _awt - draws it as GameKit does                  //
+  ////////////////////////////////////////////////////////////////////
+  AllocCheck(Map _map, StripRenderer _strips, AwtFrame _awt)
+  {
+    map = _map;
+    strips = _strips;
+    awt = _awt;
+    map.addMapListener(this);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       tick                                             //
+  // Description:  Runs the map for three ticks, drawn serially, in  //
+  //               strips and with AWT so that every kind of frame  //
+  //               sees it changing, and counts what each part      //
+  //               allocates                                        //
+  ////////////////////////////////////////////////////////////////////
+  void tick()
+  {
+    int changes0 = changes;
+    long bytes0 = Benchmark.allocatedBytes();
+    map.check();
+    long bytes1 = Benchmark.allocatedBytes();
+    map.redraw();
+    long bytes2 = Benchmark.allocatedBytes();
+    map.check();
+    long bytes3 = Benchmark.allocatedBytes();
+    strips.redraw(map);
+    long bytes4 = Benchmark.allocatedBytes();
+    map.check();
+    long bytes5 = Benchmark.allocatedBytes();
+    map.beginFrame(awt);
+    map.drawFrame(awt, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    map.endFrame();
+    long bytes6 = Benchmark.allocatedBytes();
+    long ticked = (bytes1 - bytes0) + (bytes3 - bytes2) + (bytes5 - bytes4);
+    if(changes != changes0)
+    {
+      changeBytes += ticked;
+      changeTicks++;
+    }
+    else
+    {
+      tickBytes += ticked;
+    }
+    frameBytes += bytes2 - bytes1;
+    stripBytes += bytes4 - bytes3;
+    awtBytes += bytes6 - bytes5;
+  }
+
+  void reset()
+  {
+    changes = changeTicks = 0;
+    tickBytes = changeBytes = frameBytes = stripBytes = awtBytes = 0;
+  }
+
+  public void terrainChanged(int i, int j)
+  {
+    changes++;
+  }
+  public void elevationChanged(int x, int y)
+  {
+    changes++;
+  }
+  public void machinesChanged(int i, int j)
+  {
+  }
+  public void mapChanged()
+  {
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       makeSite                                         //
+  // Returns:      a random headless map drawing onto fb, with the  //
+  //               machines and a job queued for every tile that    //
+  //               needs one, so they are kept busy                 //
+  ////////////////////////////////////////////////////////////////////
+  static Map makeSite(FrameBuffer fb)
+  {
+    Map map = Benchmark.makeMap(width, height, FLEET);
+    map.setRenderTarget(fb);
+    int i, j;
+    for(j=0; j<height; j++)
+    {
+      for(i=0; i<width; i++) map.addJobAt(i, j);
+    }
+    return map;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getWorkers                                       //
+  // Returns:      ids of the StripRenderer threads running         //
+  ////////////////////////////////////////////////////////////////////
+  static long[] getWorkers()
+  {
+    ArrayList<Thread> workers = new ArrayList<Thread>();
+    for(Thread t : Thread.getAllStackTraces().keySet())
+    {
+      if(t.getName().equals("StripRenderer")) workers.add(t);
+    }
+    long ids[] = new long[workers.size()];
+    int n;
+    for(n=0; n<ids.length; n++) ids[n] = workers.get(n).getId();
+    return ids;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       workerBytes                                      //
+  // Returns:      bytes allocated so far by all of the threads     //
+  ////////////////////////////////////////////////////////////////////
+  static long workerBytes(long ids[])
+  {
+    long bytes[] = Benchmark.threadBean.getThreadAllocatedBytes(ids);
+    long sum = 0;
+    int n;
+    for(n=0; n<bytes.length; n++) sum += bytes[n];
+    return sum;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       report                                           //
+  // Arguments:    part - "tick", "frame", etc.                     //
+  //               bytes - allocated over the ticks counted         //
+  //               n - how many ticks that was                      //
+  // Returns:      false if that's more than none                   //
+  ////////////////////////////////////////////////////////////////////
+  static boolean report(String part, long bytes, int n)
+  {
+    System.out.println(part + ": " + bytes + " bytes over " + n
+                       + " ticks");
+    return bytes <= 0;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[]) throws Exception
+  {
+    int n;
+    for(n=0; n<args.length; n++)
+    {
+      if(args[n].equals("-dir"))         Benchmark.dir = new File(args[++n]);
+      else if(args[n].equals("-warmup")) warmupTicks = parse(args[++n]);
+      else if(args[n].equals("-ticks"))  ticks = parse(args[++n]);
+      else if(args[n].equals("-strips")) numStrips = parse(args[++n]);
+      else if(args[n].equals("-size"))
+      {
+        width = parse(args[++n]);
+        height = parse(args[++n]);
+      }
+      else
+      {
+        System.out.println("usage: java AllocCheck [-dir d] [-size w h]"
+                           + " [-warmup n] [-ticks n] [-strips n]");
+        System.exit(2);
+      }
+    }
+    if(Benchmark.allocatedBytes() < 0)
+    {
+      System.out.println("this JVM can't count allocated bytes");
+      System.exit(1);
+    }
+
+    FrameBuffer fb = new FrameBuffer(GameKit.HRES, GameKit.VRES,
+                                     Benchmark.getTiles());
+    fb.prepareTiles();   //rather than as each tile is first drawn
+    Map map = makeSite(fb);
+    StripRenderer strips = new StripRenderer(fb, numStrips);
+    long workers[] = getWorkers();
+    AwtFrame awt = RenderCheck.makeAwtFrame(GameKit.HRES, GameKit.VRES,
+                                            Benchmark.getTiles());
+    AllocCheck check = new AllocCheck(map, strips, awt);
+
+    //the same code is warmed up and then counted, so that the JIT
+    //has finished with it
+    for(n=0; n<warmupTicks; n++) check.tick();
+    check.reset();
+    long workerBytes0 = workerBytes(workers);
+    for(n=0; n<ticks; n++) check.tick();
+    long workerBytes = workerBytes(workers) - workerBytes0;
+    strips.shutdown();
+
+    System.out.println(ticks + " ticks after " + warmupTicks
+                       + " to warm up, " + map.getJobQ().getNumJobs()
+                       + " jobs still queued");
+    System.out.println("ground: " + check.changeBytes
+                       + " bytes over " + check.changeTicks
+                       + " ticks changing " + check.changes
+                       + " tiles and corners");
+    boolean ok = report("tick", check.tickBytes,
+                        ticks - check.changeTicks);
+    ok &= report("frame", check.frameBytes, ticks);
+    ok &= report("strips", check.stripBytes, ticks);
+    ok &= report("strip workers", workerBytes, ticks);
+    System.out.println("awt: " + check.awtBytes
+                       + " bytes over " + ticks + " ticks");
+    if(!ok)
+    {
+      System.out.println("the steady state allocates");
+      System.exit(1);
+    }
+  }
+
+  static int parse(String s)
+  {
+    return Integer.parseInt(s);
+  }
+}
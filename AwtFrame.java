@@ -0,0 +1,216 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     AwtFrame.java                                         //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  The RenderTarget GameKit draws its frames on: tiles   //
+//            and pixels drawn with java.awt.Graphics onto an       //
+//            off-screen image, and a second image holding the      //
+//            saved background.  It needs no display of its own,    //
+//            so the check tools draw the same frames onto          //
+//            BufferedImages.                                       //
+//                                                                  //
+//            Nothing is allocated once a frame's images are made:  //
+//            colors come from a small cache, and the array given   //
+//            to drawPixels is wrapped in an image once and drawn   //
+//            straight from after that.                             //
+//////////////////////////////////////////////////////////////////////
+
+import java.awt.*;
+import java.awt.image.*;
+
+class AwtFrame implements RenderTarget
+{
+  private Image    logic_image;     //back-buffer image
+  private Graphics logic_graphics;  //graphics interface to it
+  private Image    copy_image;      //the background saved from it
+  private Graphics copy_graphics;
+  private int      width, height;
+  private ImageObserver observer;
+
+  //images of the tiles at each zoom level, owned by whoever made them
+  private Image tile[][];
+  private int   zoom;
+
+  //Colors used by cls and drawString, so a frame doesn't make new
+  //ones.  Each color has one slot, picked from its value.
+  private Color colorCache[] = new Color[64];
+
+  //the last array given to drawPixels, its size, and an image that
+  //draws straight from it
+  private int           pixelArray[];
+  private int           pixelWidth, pixelHeight;
+  private BufferedImage pixelImage;
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  AwtFrame                                         //
+  // Arguments:    logic - image to draw on                         //
+  //               copy - image of the same size to save it in      //
+  //               w, h - their size                                //
+  //               _tile - tile images by zoom level and number     //
+  //               _observer - told as images load (the applet)     //
+  ////////////////////////////////////////////////////////////////////
+  public AwtFrame(Image logic, Image copy, int w, int h, Image _tile[][],
+                  ImageObserver _observer)
+  {
+    logic_image = logic;
+    copy_image = copy;
+    logic_graphics = logic.getGraphics();
+    copy_graphics = copy.getGraphics();
+    width = w;
+    height = h;
+    tile = _tile;
+    observer = _observer;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      createTileImage                                  //
+  //               createTileImages                                 //
+  // Arguments:    tiles - pixels of the tiles                      //
+  //               n - which tile                                   //
+  // Returns:      the image of one tile at the tiles' zoom level,  //
+  //               or of every loaded one at every level, each      //
+  //               made ready to draw (as GameKit does with         //
+  //               prepareImage) rather than as it is first drawn   //
+  ////////////////////////////////////////////////////////////////////
+  static Image createTileImage(TileSet tiles, int n)
+  {
+    int w = tiles.getWidth(n);
+    return Toolkit.getDefaultToolkit().createImage(
+             new MemoryImageSource(w, tiles.getHeight(n), tiles.getPixels(n),
+                                   0, w));
+  }
+
+  static Image[][] createTileImages(TileSet tiles)
+  {
+    Image images[][] = new Image[TileSet.ZOOM_LEVELS][tiles.getMaxTiles()];
+    int level, n;
+    for(level=0; level<TileSet.ZOOM_LEVELS; level++)
+    {
+      TileSet t = tiles.getZoomLevel(level);
+      for(n=0; n<tiles.getMaxTiles(); n++)
+      {
+        if(t.getPixels(n) == null) continue;
+        images[level][n] = createTileImage(t, n);
+        Toolkit.getDefaultToolkit().prepareImage(images[level][n], -1, -1,
+                                                 null);
+      }
+    }
+    return images;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getImage - the picture drawn so far              //
+  //               getGraphics - for drawing on it directly         //
+  //               getColor - a Color for (r,g,b), 0-255 each, made //
+  //                          once and reused while it stays in the //
+  //                          cache                                 //
+  ////////////////////////////////////////////////////////////////////
+  public Image    getImage()
+  {
+    return logic_image;
+  }
+  public Graphics getGraphics()
+  {
+    return logic_graphics;
+  }
+  public Color    getColor(int r, int g, int b)
+  {
+    int rgb = 0xff000000 | (r<<16) | (g<<8) | b;
+    int slot = ((rgb * 0x9e3779b1) >>> 24) & (colorCache.length-1);
+    Color c = colorCache[slot];
+    if(c == null || c.getRGB() != rgb)
+    {
+      c = new Color(r,g,b);
+      colorCache[slot] = c;
+    }
+    return c;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getScreenWidth                                   //
+  //               getScreenHeight                                  //
+  //               setZoom                                          //
+  //               getZoom                                          //
+  ////////////////////////////////////////////////////////////////////
+  public int  getScreenWidth()
+  {
+    return width;
+  }
+  public int  getScreenHeight()
+  {
+    return height;
+  }
+  public void setZoom(int level)
+  {
+    zoom = Math.max(0, Math.min(level, TileSet.ZOOM_LEVELS-1));
+  }
+  public int  getZoom()
+  {
+    return zoom;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      cls                                              //
+  //               clearRect                                        //
+  ////////////////////////////////////////////////////////////////////
+  public void cls(int r, int g, int b)
+  {
+    logic_graphics.setColor(getColor(r,g,b));
+    logic_graphics.fillRect(0,0,width,height);
+  }
+
+  public void clearRect(int x, int y, int w, int h)
+  {
+    logic_graphics.setColor(Color.black);
+    logic_graphics.fillRect(x,y,w,h);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drawTile                                         //
+  ////////////////////////////////////////////////////////////////////
+  public void drawTile(int n, int x, int y)
+  {
+    logic_graphics.drawImage(tile[zoom][n], x, y, observer);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drawPixels                                       //
+  // Description:  The image is made the first time an array is     //
+  //               drawn and reads the array itself, so drawing it  //
+  //               again shows its new contents without sending     //
+  //               them anywhere.  The alpha byte is ignored.       //
+  ////////////////////////////////////////////////////////////////////
+  public void drawPixels(int pix[], int w, int h, int x, int y)
+  {
+    if(pix != pixelArray || w != pixelWidth || h != pixelHeight)
+    {
+      pixelArray = pix;
+      pixelWidth = w;
+      pixelHeight = h;
+      DirectColorModel rgb = new DirectColorModel(24, 0xff0000, 0xff00,
+                                                  0xff);
+      WritableRaster raster = Raster.createPackedRaster(
+                                new DataBufferInt(pix, w*h), w, h, w,
+                                rgb.getMasks(), null);
+      pixelImage = new BufferedImage(rgb, raster, false, null);
+    }
+    logic_graphics.drawImage(pixelImage, x, y, observer);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      copyBackground                                   //
+  //               restoreBackground                                //
+  ////////////////////////////////////////////////////////////////////
+  public void copyBackground()
+  {
+    copy_graphics.drawImage(logic_image, 0, 0, observer);
+  }
+
+  public void restoreBackground()
+  {
+    logic_graphics.drawImage(copy_image, 0, 0, observer);
+  }
+}
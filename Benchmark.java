@@ -0,0 +1,541 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Benchmark.java                                        //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Times the hot paths of the game so that a change can  //
+//            be compared against a saved baseline:                 //
+//                                                                  //
+//              java Benchmark [options] [name filter]              //
+//                -dir d       directory holding the tile sheets    //
+//                -save f      write the results to file f          //
+//                -compare f   show the change from results in f    //
+//                -quick       fewer, shorter rounds                //
+//                                                                  //
+//            Each case is run in batches long enough to time       //
+//            well, first to warm up and then for real.  The median //
+//            batch is reported as time per operation, along with   //
+//            the bytes allocated per operation where the JVM can   //
+//            count them.                                           //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+class Benchmark
+{
+  //a result this much slower than the baseline is flagged
+  static final double REGRESSION = 1.10;
+
+  static int warmupRounds = 5, rounds = 10;
+  static long batchNanos = 50000000L;   //50 ms
+
+  static File dir = new File(".");
+  static TileSet tiles;                 //loaded on first use
+
+  //the JVM's per-thread counters, or null if it has none
+  static com.sun.management.ThreadMXBean threadBean = getThreadBean();
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        Case                                             //
+  // Description:  One thing to time.  setUp() runs once before the //
+  //               case; run() does one operation.                  //
+  ////////////////////////////////////////////////////////////////////
+  static abstract class Case
+  {
+    String name;
+
+    Case(String _name)
+    {
+      name = _name;
+    }
+
+    void setUp() throws Exception
+    {
+    }
+
+    abstract void run();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getTiles                                         //
+  // Returns:      every tile, loaded from the sheets in dir        //
+  ////////////////////////////////////////////////////////////////////
+  static TileSet getTiles() throws Exception
+  {
+    if(tiles == null)
+    {
+      tiles = new TileSet(GameKit.MAX_TILES);
+      Throwable error = new TileLoader(dir.toURI().toURL(), tiles)
+                        .start().await();
+      if(error != null) throw new IOException(error.toString());
+    }
+    return tiles;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       makeMap                                          //
+  // Arguments:    w, h - size in tiles                             //
+  //               fleet - number of machines wanted; those beyond  //
+  //                       the 8 randomize() makes go on row 1 on   //
+  // Returns:      a new random headless map.  Map keeps static     //
+  //               state, so only use the newest one.               //
+  ////////////////////////////////////////////////////////////////////
+  static Map makeMap(int w, int h, int fleet)
+  {
+    final String type[] = { "Hoe", "Dozer", "Roller", "Grader", "Truck" };
+    Map map = new Map(null, w, h);
+    map.randomize();
+    int n;
+    for(n=8; n<fleet; n++)
+    {
+      int i = n % w, j = 1 + (n / w) % (h-1);
+      Terrain t = map.getTerrain(i, j);
+      t.addMachine(Machine.create(type[n % type.length], t));
+    }
+    return map;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       readFile                                         //
+  ////////////////////////////////////////////////////////////////////
+  static byte[] readFile(File f) throws IOException
+  {
+    byte data[] = new byte[(int) f.length()];
+    DataInputStream in = new DataInputStream(new FileInputStream(f));
+    try
+    {
+      in.readFully(data);
+    }
+    finally
+    {
+      in.close();
+    }
+    return data;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       addCases                                         //
+  // Arguments:    cases - list to add every case to                //
+  ////////////////////////////////////////////////////////////////////
+  static void addCases(ArrayList<Case> cases)
+  {
+    int depths[] = { 10, 100, 1000 };
+    int d;
+    for(d=0; d<depths.length; d++)
+    {
+      final int depth = depths[d];
+
+      //add a job at the tail, take it off again and free it the way
+      //a machine finishing it would
+      cases.add(new Case("jobq.addRemove.depth" + depth)
+      {
+        JobQ q;
+        void setUp()
+        {
+          q = fillQueue(depth);
+        }
+        void run()
+        {
+          q.freeJob(q.removeJob(q.addJob(JobQ.JOB_CLEAR, 1, 1, -1)));
+        }
+      });
+
+      //find the only job of its type, at the tail
+      cases.add(new Case("jobq.find.depth" + depth)
+      {
+        JobQ q;
+        void setUp()
+        {
+          q = fillQueue(depth);
+          q.addJob(JobQ.JOB_LEVEL, 2, 2, -1);
+        }
+        void run()
+        {
+          if(q.findJob(JobQ.JOB_LEVEL, null) == null)
+          {
+            throw new RuntimeException("job lost");
+          }
+        }
+      });
+
+      //what a machine does: take the best job of its types and put
+      //it back, with the one wanted ranked behind the rest
+      cases.add(new Case("jobq.claim.depth" + depth)
+      {
+        JobQ q;
+        void setUp()
+        {
+          q = fillQueue(depth);
+          q.addJob(JobQ.JOB_LEVEL, 2, 2, -1);
+        }
+        void run()
+        {
+          JobItem job = q.claimJob(q.findBestJob(JobQ.JOB_LEVEL));
+          if(job == null) throw new RuntimeException("job lost");
+          q.addJob(job);
+        }
+      });
+    }
+
+    int sizes[] = { 21, 64, 128 };
+    int fleets[] = { 8, 64 };
+    int s, f;
+    for(s=0; s<sizes.length; s++)
+    {
+      for(f=0; f<fleets.length; f++)
+      {
+        final int size = sizes[s], fleet = fleets[f];
+        cases.add(new Case("map.check." + size + "x" + size
+                           + ".fleet" + fleet)
+        {
+          Map map;
+          void setUp()
+          {
+            map = makeMap(size, size, fleet);
+          }
+          void run()
+          {
+            map.check();
+          }
+        });
+      }
+    }
+
+    //drag a selection over the whole map, queueing a job for every
+    //tile as one batch, then empty the queue again
+    cases.add(new Case("map.select.64x64")
+    {
+      Map map;
+      void setUp()
+      {
+        map = makeMap(64, 64, 8);
+      }
+      void run()
+      {
+        map.addJobsIn(0, 0, 63, 63);
+        JobQ q = map.getJobQ();
+        JobItem job;
+        while((job = q.getFirstJob()) != null) q.freeJob(q.removeJob(job));
+      }
+    });
+
+    for(s=0; s<2; s++)
+    {
+      final int size = sizes[s];
+      cases.add(new Case("map.randomize." + size + "x" + size)
+      {
+        Map map;
+        void setUp()
+        {
+          map = new Map(null, size, size);
+        }
+        void run()
+        {
+          map.randomize();
+        }
+      });
+    }
+
+    for(s=0; s<sizes.length; s+=2)
+    {
+      final int size = sizes[s];
+      cases.add(new Case("render.drawTerrain." + size + "x" + size)
+      {
+        Map map;
+        FrameBuffer fb;
+        void setUp() throws Exception
+        {
+          fb = new FrameBuffer(GameKit.HRES, GameKit.VRES, getTiles());
+          fb.prepareTiles();
+          map = makeMap(size, size, 8);
+          map.beginFrame(fb);
+        }
+        void run()
+        {
+          map.drawTerrain(fb, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+      });
+
+      cases.add(new Case("render.drawMachines." + size + "x" + size)
+      {
+        Map map;
+        FrameBuffer fb;
+        void setUp() throws Exception
+        {
+          fb = new FrameBuffer(GameKit.HRES, GameKit.VRES, getTiles());
+          fb.prepareTiles();
+          map = makeMap(size, size, 64);
+          map.beginFrame(fb);
+        }
+        void run()
+        {
+          map.drawMachines(fb, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+      });
+    }
+
+    //a whole frame, redrawing the terrain each time
+    cases.add(new Case("render.fullFrame")
+    {
+      Map map;
+      FrameBuffer fb;
+      void setUp() throws Exception
+      {
+        fb = new FrameBuffer(GameKit.HRES, GameKit.VRES, getTiles());
+        map = makeMap(Map.DEFAULT_WIDTH, Map.DEFAULT_HEIGHT, 8);
+        map.setRenderTarget(fb);
+      }
+      void run()
+      {
+        map.setFullRedraw();
+        map.redraw();
+      }
+    });
+
+    //what GameKit.loadBMPGZ() spends its time on, from memory
+    for(s=0; s<TileSet.SHEET_FILE.length; s++)
+    {
+      final String file = TileSet.SHEET_FILE[s];
+      cases.add(new Case("bitmap.readBMPGZ." + TileSet.SHEET_DESC[s])
+      {
+        byte data[];
+        void setUp() throws IOException
+        {
+          data = readFile(new File(dir, file));
+        }
+        void run()
+        {
+          try
+          {
+            Bitmap.readBMPGZ(new ByteArrayInputStream(data));
+          }
+          catch(IOException e)
+          {
+            throw new RuntimeException(e.toString());
+          }
+        }
+      });
+    }
+
+    //what GameKit.grabTile() does besides making the Image
+    cases.add(new Case("tileset.grab")
+    {
+      Bitmap bm;
+      TileSet ts = new TileSet(GameKit.MAX_TILES);
+      int n;
+      void setUp() throws IOException
+      {
+        bm = Bitmap.readBMPGZ(new FileInputStream(
+               new File(dir, TileSet.SHEET_FILE[1])));
+      }
+      void run()
+      {
+        int k = n++ & 31;
+        ts.grab(k, bm.data, bm.width, (k & 3) * 64, (k >> 2) * 48, 64, 48);
+      }
+    });
+  }
+
+  static JobQ fillQueue(int depth)
+  {
+    JobQ q = new JobQ();
+    int n;
+    for(n=0; n<depth; n++) q.addJob(JobQ.JOB_CUT, n % 21, n / 21, -1);
+    return q;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       measure                                          //
+  // Arguments:    c - the case to time                             //
+  // Returns:      { median ns per op, bytes allocated per op (-1   //
+  //               if the JVM can't tell) }                         //
+  ////////////////////////////////////////////////////////////////////
+  static double[] measure(Case c)
+  {
+    //find a batch size that takes about batchNanos
+    long ops = 1;
+    while(true)
+    {
+      long t0 = System.nanoTime();
+      runBatch(c, ops);
+      long t = System.nanoTime() - t0;
+      if(t >= batchNanos/4 || ops >= (1L << 30)) break;
+      ops *= 2;
+    }
+    ops = Math.max(1, ops * 4);
+
+    double times[] = new double[rounds];
+    int r;
+    for(r=0; r<warmupRounds; r++) runBatch(c, ops);
+
+    long bytes0 = allocatedBytes();
+    for(r=0; r<rounds; r++)
+    {
+      long t0 = System.nanoTime();
+      runBatch(c, ops);
+      times[r] = (double) (System.nanoTime() - t0) / ops;
+    }
+    long bytes1 = allocatedBytes();
+
+    Arrays.sort(times);
+    double result[] = new double[2];
+    result[0] = times[rounds/2];
+    result[1] = (bytes0 < 0) ? -1 : (double) (bytes1 - bytes0) / (ops * rounds);
+    return result;
+  }
+
+  static void runBatch(Case c, long ops)
+  {
+    long n;
+    for(n=0; n<ops; n++) c.run();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getThreadBean                                    //
+  // Returns:      the JVM's thread bean if it counts allocations,  //
+  //               else null                                        //
+  ////////////////////////////////////////////////////////////////////
+  static com.sun.management.ThreadMXBean getThreadBean()
+  {
+    try
+    {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if(bean instanceof com.sun.management.ThreadMXBean)
+      {
+        return (com.sun.management.ThreadMXBean) bean;
+      }
+    }
+    catch(Throwable t)
+    {
+      //not a JVM that counts
+    }
+    return null;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       allocatedBytes                                   //
+  // Returns:      bytes allocated by this thread so far, or -1.    //
+  //               Reading the counter allocates nothing itself.    //
+  ////////////////////////////////////////////////////////////////////
+  static long allocatedBytes()
+  {
+    if(threadBean == null) return -1;
+    return threadBean.getCurrentThreadAllocatedBytes();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       readBaseline                                     //
+  // Returns:      name -> ns per op, from a file written by -save  //
+  ////////////////////////////////////////////////////////////////////
+  static Hashtable<String,Double> readBaseline(String filename)
+    throws IOException
+  {
+    Hashtable<String,Double> baseline = new Hashtable<String,Double>();
+    BufferedReader in = new BufferedReader(new FileReader(filename));
+    try
+    {
+      String line;
+      while((line = in.readLine()) != null)
+      {
+        StringTokenizer st = new StringTokenizer(line);
+        if(st.countTokens() < 2 || line.startsWith("#")) continue;
+        String name = st.nextToken();
+        baseline.put(name, Double.valueOf(st.nextToken()));
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    return baseline;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[]) throws Exception
+  {
+    String filter = null, saveFile = null, compareFile = null;
+    int n;
+    for(n=0; n<args.length; n++)
+    {
+      if(args[n].equals("-dir"))          dir = new File(args[++n]);
+      else if(args[n].equals("-save"))    saveFile = args[++n];
+      else if(args[n].equals("-compare")) compareFile = args[++n];
+      else if(args[n].equals("-quick"))
+      {
+        warmupRounds = 2;
+        rounds = 3;
+        batchNanos = 10000000L;
+      }
+      else filter = args[n];
+    }
+
+    Hashtable<String,Double> baseline = null;
+    if(compareFile != null) baseline = readBaseline(compareFile);
+    PrintWriter save = null;
+    if(saveFile != null)
+    {
+      save = new PrintWriter(new FileWriter(saveFile));
+      save.println("# name ns/op bytes/op");
+    }
+
+    ArrayList<Case> cases = new ArrayList<Case>();
+    addCases(cases);
+
+    int regressions = 0;
+    System.out.println(pad("case", 36) + pad("ns/op", 14)
+                       + pad("bytes/op", 10)
+                       + (baseline != null ? "vs baseline" : ""));
+    for(n=0; n<cases.size(); n++)
+    {
+      Case c = cases.get(n);
+      if(filter != null && c.name.indexOf(filter) < 0) continue;
+
+      c.setUp();
+      double result[] = measure(c);
+
+      String line = pad(c.name, 36) + pad(format(result[0]), 14)
+                    + pad(result[1] < 0 ? "?" : format(result[1]), 10);
+      if(baseline != null && baseline.get(c.name) != null)
+      {
+        double old = baseline.get(c.name).doubleValue();
+        double ratio = result[0] / old;
+        line += format((ratio - 1) * 100) + "%";
+        if(ratio > REGRESSION)
+        {
+          line += "  SLOWER";
+          regressions++;
+        }
+      }
+      System.out.println(line);
+      if(save != null) save.println(c.name + " " + result[0] + " " + result[1]);
+    }
+
+    if(save != null) save.close();
+    if(regressions > 0)
+    {
+      System.out.println(regressions + " case(s) more than "
+                         + Math.round((REGRESSION-1)*100)
+                         + "% slower than the baseline");
+      System.exit(1);
+    }
+  }
+
+  static String format(double d)
+  {
+    if(Math.abs(d) >= 100) return Long.toString(Math.round(d));
+    return Double.toString(Math.round(d * 10) / 10.0);
+  }
+
+  static String pad(String s, int width)
+  {
+    StringBuffer buf = new StringBuffer(s);
+    while(buf.length() < width) buf.append(' ');
+    return buf.toString();
+  }
+}
@@ -0,0 +1,177 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Bitmap.java                                           //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Decodes 8 and 24-bit .bmp.gz files into 32-bit ARGB   //
+//            pixels.  Needs no applet or AWT so that the asset     //
+//            pack builder and other tools can use it too.          //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.util.zip.*;
+
+class Bitmap
+{
+  int width, height;
+  int data[];     //pixels stored as aarrggbb, top row first
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  Bitmap                                           //
+  ////////////////////////////////////////////////////////////////////
+  public Bitmap(int w, int h)
+  {
+    width = w;
+    height = h;
+    data = new int[w*h];
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      readWord                                         //
+  //               readLong                                         //
+  // Arguments:    in - input stream to read from                   //
+  // Returns:      The next 16 or 32-bit value from the stream      //
+  // Description:  Reads in 2 or 4 bytes from the input stream and  //
+  //               returns their concatenated value.                //
+  // Note:         Assumes input is in lo-byte/hi-byte format       //
+  ////////////////////////////////////////////////////////////////////
+  static public int readWord(InputStream in) throws IOException
+  {
+    int returnVal;
+    returnVal = in.read();
+    returnVal |= in.read() << 8;
+    return returnVal;
+  }
+
+  static public int readLong(InputStream in) throws IOException
+  {
+    int returnVal;
+    returnVal  = readWord(in);
+    returnVal |= readWord(in) << 16;
+    return returnVal;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       readBMPGZ                                        //
+  // Arguments:    in - stream of a gzipped .bmp file               //
+  // Returns:      decoded bitmap                                   //
+  ////////////////////////////////////////////////////////////////////
+  static public Bitmap readBMPGZ(InputStream in) throws IOException
+  {
+    //the inflater is slow when asked for one byte at a time, so
+    //buffer on both sides of it
+    GZIPInputStream gzipInput = new GZIPInputStream(
+      new BufferedInputStream(in), 8192);
+    try
+    {
+      return readBMP(new BufferedInputStream(gzipInput, 8192));
+    }
+    finally
+    {
+      gzipInput.close();
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       readBMP                                          //
+  // Arguments:    in - stream positioned at the start of a .bmp    //
+  // Returns:      decoded bitmap                                   //
+  // Description:  Palette entry 0x0000ff (pure blue) in an 8-bit   //
+  //               bmp is left with alpha 0 to mark it transparent; //
+  //               every other pixel is made opaque.                //
+  ////////////////////////////////////////////////////////////////////
+  static public Bitmap readBMP(InputStream in) throws IOException
+  {
+    ////////////////////////////////
+    // Read in 54-byte bmp header //
+    ////////////////////////////////
+    if(in.read() != 'B' || in.read() != 'M')   //bytes 0,1 ID B,M
+    {
+      throw new IOException("Invalid BMP file");
+    }
+
+    //Read in extraneous stuff without saving values in order to get
+    //to the good stuff.
+    readLong(in);   //total file size
+    readLong(in);
+    int headerPlusPaletteSize = readLong(in);   //header + palette size
+    int paletteEntries = (headerPlusPaletteSize - 54) / 4;
+    readLong(in);
+    int w = readLong(in);
+    int h = readLong(in);
+    readWord(in);
+    int bpp = readWord(in);    //bits per pixel
+    int i, j, pos;
+    for(i=0; i<6; i++) readLong(in);  //skip remaining 24 bytes
+
+    if(bpp!=8 && bpp!=24)
+    {
+      throw new IOException("bitmap must be 8 or 24 bpp!");
+    }
+
+    Bitmap bm = new Bitmap(w, h);
+    int bmData[] = bm.data;
+    DataInputStream dataIn = new DataInputStream(in);
+
+    //rows are padded out to a multiple of 4 bytes
+    int rowBytes = ((w * (bpp/8)) + 3) & ~3;
+    byte row[] = new byte[rowBytes];
+
+    if(bpp==8)
+    {
+      ///////////////
+      // 8-bit bmp //
+      ///////////////
+      //palette is a series of longs (4-byte b, g, r, 0 values)
+      int palette[] = new int[256];
+      for(i=0; i<256; i++)
+      {
+        int color = 0;
+        if(i<paletteEntries) color = readLong(in);
+        if(color != 0xff)
+        {        //blue stays transparent
+          color |= 0xff000000;    //set alpha to opaque (ff)
+        }
+        palette[i] = color;
+      }
+
+      //BMPs are stored from left-to-right (normal) and bottom-to-top
+      //(unusual) so we must skip around in our destination array
+      //to read in it correctly.
+      for(j=h-1; j>=0; j--)
+      {
+        dataIn.readFully(row);
+        pos = (j * w);  //start at left side, next row up
+        for(i=0; i<w; i++)
+        {
+          bmData[pos++] = palette[row[i] & 0xff];
+        }
+      }
+    }
+    else
+    {
+      ////////////////
+      // 24-bit bmp //
+      ////////////////
+      //raw b, g, r byte-triplets for each pixel
+      for(j=h-1; j>=0; j--)
+      {
+        dataIn.readFully(row);
+        pos = (j * w);
+        int k = 0;
+        for(i=0; i<w; i++)
+        {
+          int color = row[k++] & 0xff;          //blue
+          color |= (row[k++] & 0xff) <<  8;     //green
+          color |= (row[k++] & 0xff) << 16;     //red
+          color |= 0xff000000;                  //alpha; make opaque
+          bmData[pos++] = color;
+        }
+      }
+    }
+
+    return bm;
+  }
+}
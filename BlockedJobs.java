@@ -0,0 +1,182 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     BlockedJobs.java                                      //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Holds jobs a machine took but couldn't start because  //
+//            of the ground around the site (a fill with no flat    //
+//            dirt beside it) until one of the tiles they wait on   //
+//            changes.  Putting such a job straight back in the     //
+//            JobQ just had the next machine take it, look, and put //
+//            it back again every tick.                             //
+//                                                                  //
+//            Each job keeps the rectangle of tiles it waits on,    //
+//            and each tile a count of the jobs waiting on it.      //
+//            When a tile that jobs wait on changes (its terrain or //
+//            one of its corners), the jobs whose rectangles hold   //
+//            it go back in the JobQ (as a requeue) for a machine   //
+//            to try again.  A job let go or cancelled leaves       //
+//            nothing behind, so it can be freed and reused.        //
+//////////////////////////////////////////////////////////////////////
+
+class BlockedJobs implements MapListener
+{
+  private Map  map;
+  private JobQ jobQ;
+
+  //the jobs held, most recent first, and how many of them wait on
+  //each tile (by j*WIDTH+i)
+  private JobItem head;
+  private int     waiting[];
+  private volatile int numJobs;   //read by MetricsServer
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  BlockedJobs                                      //
+  ////////////////////////////////////////////////////////////////////
+  public BlockedJobs(Map _map, JobQ _jobQ)
+  {
+    map = _map;
+    jobQ = _jobQ;
+    waiting = new int[map.WIDTH * map.HEIGHT];
+    map.addMapListener(this);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getNumJobs                                       //
+  // Returns:      jobs held here, not in the JobQ                  //
+  ////////////////////////////////////////////////////////////////////
+  public int getNumJobs()
+  {
+    return numJobs;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       block                                            //
+  // Arguments:    job - a job taken out of the JobQ that can't be  //
+  //                     started yet                                //
+  //               i0, j0, i1, j1 - tiles whose change might let    //
+  //                     it start                                   //
+  ////////////////////////////////////////////////////////////////////
+  public void block(JobItem job, int i0, int j0, int i1, int j1)
+  {
+    job.blocked = true;
+    job.block_i0 = Math.max(0, i0);
+    job.block_j0 = Math.max(0, j0);
+    job.block_i1 = Math.min(map.WIDTH-1, i1);
+    job.block_j1 = Math.min(map.HEIGHT-1, j1);
+    job.blockedPrev = null;
+    job.blockedNext = head;
+    if(head != null) head.blockedPrev = job;
+    head = job;
+    count(job, 1);
+    numJobs++;
+    Log.log(Log.JOBS, Log.DEBUG, "BlockedJobs", "blocked job",
+            job.getI(), job.getJ());
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       cancel                                           //
+  // Arguments:    job - a job that may be held here                //
+  // Returns:      false if it isn't                                //
+  // Description:  Gives up on the job (see JobQ.dropJob)           //
+  ////////////////////////////////////////////////////////////////////
+  public boolean cancel(JobItem job)
+  {
+    if(!job.blocked) return false;
+    unblock(job);
+    jobQ.dropJob(job);
+    return true;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       release                                          //
+  // Arguments:    i, j - tile that changed                         //
+  // Description:  Puts the jobs waiting on it back in the JobQ     //
+  ////////////////////////////////////////////////////////////////////
+  private void release(int i, int j)
+  {
+    if(i<0 || i>=map.WIDTH || j<0 || j>=map.HEIGHT) return;
+    if(waiting[j*map.WIDTH + i]==0) return;
+    JobItem job = head;
+    while(job != null)
+    {
+      JobItem next = job.blockedNext;
+      if(i>=job.block_i0 && i<=job.block_i1
+         && j>=job.block_j0 && j<=job.block_j1)
+      {
+        unblock(job);
+        jobQ.addJob(job);
+      }
+      job = next;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      unblock                                          //
+  //               count                                            //
+  // Arguments:    job - a job held here                            //
+  //               delta - 1 as it's blocked, -1 as it's let go     //
+  // Description:  Take the job off the list and the tiles it waits //
+  //               on; add delta to the count of each of them       //
+  ////////////////////////////////////////////////////////////////////
+  private void unblock(JobItem job)
+  {
+    if(job.blockedPrev != null) job.blockedPrev.blockedNext = job.blockedNext;
+    else                        head = job.blockedNext;
+    if(job.blockedNext != null) job.blockedNext.blockedPrev = job.blockedPrev;
+    job.blockedPrev = job.blockedNext = null;
+    job.blocked = false;
+    count(job, -1);
+    numJobs--;
+  }
+
+  private void count(JobItem job, int delta)
+  {
+    int i, j;
+    for(j=job.block_j0; j<=job.block_j1; j++)
+    {
+      for(i=job.block_i0; i<=job.block_i1; i++)
+      {
+        waiting[j*map.WIDTH + i] += delta;
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      terrainChanged                                   //
+  //               elevationChanged                                 //
+  //               machinesChanged                                  //
+  //               mapChanged                                       //
+  // Description:  MapListener                                      //
+  ////////////////////////////////////////////////////////////////////
+  public void terrainChanged(int i, int j)
+  {
+    release(i, j);
+  }
+
+  public void elevationChanged(int x, int y)
+  {
+    release(x-1, y-1);
+    release(x,   y-1);
+    release(x-1, y);
+    release(x,   y);
+  }
+
+  public void machinesChanged(int i, int j)
+  {
+  }
+
+  public void mapChanged()
+  {
+    int i, j;
+    for(j=0; j<map.HEIGHT; j++)
+    {
+      for(i=0; i<map.WIDTH; i++)
+      {
+        release(i, j);
+      }
+    }
+  }
+}
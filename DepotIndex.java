@@ -0,0 +1,176 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     DepotIndex.java                                       //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Keeps track of where the map's Depot tiles are so a   //
+//            Truck can find the one nearest its next job without   //
+//            looking over the whole map.  The map is split into    //
+//            CELL x CELL blocks of tiles, each with a list of the  //
+//            depots in it; findNearest looks at the block the tile //
+//            is in and then rings of blocks further out, stopping  //
+//            once no block left could hold a nearer one.           //
+//                                                                  //
+//            Distances are in tiles the way machines drive them    //
+//            (see Route.getDistance).  The lists follow the map    //
+//            as a MapListener.                                     //
+//////////////////////////////////////////////////////////////////////
+
+class DepotIndex implements MapListener
+{
+  static final int CELL = 8;
+
+  private Map map;
+  private int cellsAcross, cellsDown;
+  private int depots[][];      //j*WIDTH+i of each depot in a block,
+  private int numDepots[];     //by block; null until first used
+  private int total;
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  DepotIndex                                       //
+  ////////////////////////////////////////////////////////////////////
+  public DepotIndex(Map _map)
+  {
+    map = _map;
+    cellsAcross = (map.WIDTH + CELL - 1) / CELL;
+    cellsDown = (map.HEIGHT + CELL - 1) / CELL;
+    depots = new int[cellsAcross * cellsDown][];
+    numDepots = new int[cellsAcross * cellsDown];
+    map.addMapListener(this);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getNumDepots                                     //
+  ////////////////////////////////////////////////////////////////////
+  public int getNumDepots()
+  {
+    return total;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       findNearest                                      //
+  // Arguments:    i, j - a tile                                    //
+  // Returns:      the Depot nearest it, or null if there are none  //
+  ////////////////////////////////////////////////////////////////////
+  public Terrain findNearest(int i, int j)
+  {
+    if(total==0) return null;
+    int ci = Math.max(0, Math.min(cellsAcross-1, i / CELL));
+    int cj = Math.max(0, Math.min(cellsDown-1, j / CELL));
+    int best = -1, bestDist = 0;
+    int maxRing = Math.max(cellsAcross, cellsDown);
+    for(int r=0; r<maxRing; r++)
+    {
+      //the blocks r away from (ci,cj), around the edge of the square
+      for(int y=cj-r; y<=cj+r; y++)
+      {
+        if(y<0 || y>=cellsDown) continue;
+        int step = (y==cj-r || y==cj+r) ? 1 : 2*r;
+        for(int x=ci-r; x<=ci+r; x+=step)
+        {
+          if(x<0 || x>=cellsAcross) continue;
+          int c = y*cellsAcross + x;
+          for(int n=0; n<numDepots[c]; n++)
+          {
+            int d = Route.getDistance(i, j, depots[c][n] % map.WIDTH,
+                                      depots[c][n] / map.WIDTH);
+            if(best<0 || d < bestDist)
+            {
+              best = depots[c][n];
+              bestDist = d;
+            }
+          }
+        }
+      }
+
+      //every tile in the next ring out is more than r*CELL away
+      if(best>=0 && bestDist <= r*CELL) break;
+    }
+    return map.getTerrain(best % map.WIDTH, best / map.WIDTH);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      add                                              //
+  //               remove                                           //
+  // Arguments:    i, j - tile that became or stopped being a Depot //
+  ////////////////////////////////////////////////////////////////////
+  private void add(int i, int j)
+  {
+    int c = (j / CELL) * cellsAcross + i / CELL;
+    if(depots[c]==null) depots[c] = new int[4];
+    if(numDepots[c]==depots[c].length)
+    {
+      int bigger[] = new int[depots[c].length*2];
+      System.arraycopy(depots[c], 0, bigger, 0, numDepots[c]);
+      depots[c] = bigger;
+    }
+    depots[c][numDepots[c]++] = j*map.WIDTH + i;
+    total++;
+  }
+
+  private void remove(int i, int j)
+  {
+    int c = (j / CELL) * cellsAcross + i / CELL;
+    int tile = j*map.WIDTH + i;
+    for(int n=0; n<numDepots[c]; n++)
+    {
+      if(depots[c][n]==tile)
+      {
+        depots[c][n] = depots[c][--numDepots[c]];
+        total--;
+        return;
+      }
+    }
+  }
+
+  private boolean contains(int i, int j)
+  {
+    int c = (j / CELL) * cellsAcross + i / CELL;
+    int tile = j*map.WIDTH + i;
+    for(int n=0; n<numDepots[c]; n++)
+    {
+      if(depots[c][n]==tile) return true;
+    }
+    return false;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      terrainChanged                                   //
+  //               elevationChanged                                 //
+  //               machinesChanged                                  //
+  //               mapChanged                                       //
+  // Description:  MapListener                                      //
+  ////////////////////////////////////////////////////////////////////
+  public void terrainChanged(int i, int j)
+  {
+    boolean isDepot = map.getTerrain(i, j).getType()=="Depot";
+    if(isDepot == contains(i, j)) return;
+    if(isDepot) add(i, j);
+    else        remove(i, j);
+  }
+
+  public void elevationChanged(int x, int y)
+  {
+  }
+
+  public void machinesChanged(int i, int j)
+  {
+  }
+
+  public void mapChanged()
+  {
+    int i, j;
+    for(int c=0; c<numDepots.length; c++) numDepots[c] = 0;
+    total = 0;
+    for(j=0; j<map.HEIGHT; j++)
+    {
+      for(i=0; i<map.WIDTH; i++)
+      {
+        Terrain t = map.getTerrain(i, j);
+        if(t!=null && t.getType()=="Depot") add(i, j);
+      }
+    }
+  }
+}
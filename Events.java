@@ -0,0 +1,378 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Events.java                                           //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Java Flight Recorder events for the tick phases, the  //
+//            life of each job and terrain changes, so a recording  //
+//            of a real game shows where a slow tick went and which //
+//            machine or job it was busy with:                      //
+//                                                                  //
+//              java -XX:StartFlightRecording=filename=f.jfr ...    //
+//                                                                  //
+//            A listener on the recorder keeps "recording" up to    //
+//            date, and while nothing is recording every call here  //
+//            returns at once without making an event.  On a JVM    //
+//            without JFR (or with -Dforeman.jfr=false) the event   //
+//            classes are never even loaded.                        //
+//////////////////////////////////////////////////////////////////////
+
+import jdk.jfr.*;
+
+class Events
+{
+  //tick phases
+  static final String INPUT = "input", CHECK = "check",
+                      REDRAW = "redraw", PRESENT = "present";
+
+  static final boolean AVAILABLE = isAvailable();
+
+  //true while any flight recording is running
+  static volatile boolean recording;
+
+  static
+  {
+    if(AVAILABLE) Watcher.start();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       isAvailable                                      //
+  // Returns:      true if this JVM has JFR and it wasn't turned    //
+  //               off on the command line                          //
+  ////////////////////////////////////////////////////////////////////
+  private static boolean isAvailable()
+  {
+    try
+    {
+      if("false".equals(System.getProperty("foreman.jfr"))) return false;
+      Class.forName("jdk.jfr.Event");
+      return true;
+    }
+    catch(SecurityException e)
+    {
+      return false;   //running as an applet
+    }
+    catch(Throwable e)
+    {
+      return false;   //no JFR
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        Watcher                                          //
+  // Description:  Sets "recording" whenever a recording starts or  //
+  //               stops                                            //
+  ////////////////////////////////////////////////////////////////////
+  static class Watcher implements FlightRecorderListener
+  {
+    static void start()
+    {
+      Watcher w = new Watcher();
+      FlightRecorder.addListener(w);
+      if(FlightRecorder.isInitialized()) w.update();   //already going
+    }
+
+    public void recordingStateChanged(Recording r)
+    {
+      update();
+    }
+
+    void update()
+    {
+      boolean on = false;
+      java.util.List<Recording> list =
+        FlightRecorder.getFlightRecorder().getRecordings();
+      for(int n=0; n<list.size(); n++)
+      {
+        if(list.get(n).getState() == RecordingState.RUNNING)
+        {
+          on = true;
+        }
+      }
+      recording = on;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getJobName                                       //
+  // Returns:      "CLEAR", "FILL", etc. for a JobQ job value       //
+  ////////////////////////////////////////////////////////////////////
+  static String getJobName(int type)
+  {
+    switch(type)
+    {
+    case JobQ.JOB_CLEAR: return "CLEAR";
+    case JobQ.JOB_FILL:  return "FILL";
+    case JobQ.JOB_CUT:   return "CUT";
+    case JobQ.JOB_PAVE:  return "PAVE";
+    case JobQ.JOB_ROLL:  return "ROLL";
+    case JobQ.JOB_WAIT:  return "WAIT";
+    case JobQ.JOB_LEVEL: return "LEVEL";
+    }
+    return "?";
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        TickPhase                                        //
+  // Description:  One phase of one pass through the game loop      //
+  ////////////////////////////////////////////////////////////////////
+  @Name("foreman.TickPhase")
+  @Label("Tick Phase")
+  @Category({ "Foreman", "Tick" })
+  @Description("One phase of a pass through the game loop")
+  static class TickPhase extends Event
+  {
+    @Label("Phase")
+    String phase;
+
+    @Label("Tick")
+    long tick;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        JobEnqueued                                      //
+  // Description:  A job was put in the queue (again, if requeued)  //
+  ////////////////////////////////////////////////////////////////////
+  @Name("foreman.JobEnqueued")
+  @Label("Job Enqueued")
+  @Category({ "Foreman", "Jobs" })
+  static class JobEnqueued extends Event
+  {
+    @Label("Job")
+    String job;
+
+    @Label("I")
+    int i;
+
+    @Label("J")
+    int j;
+
+    @Label("Requeued")
+    @Description("Put back by a machine that couldn't start it")
+    boolean requeued;
+
+    @Label("Queue Length")
+    int queueLength;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        JobClaimed                                       //
+  // Description:  A machine took a job.  The duration is the time  //
+  //               spent searching the queue for it; a job handed   //
+  //               to the machine (see Hoe) or planned into its     //
+  //               route wasn't searched for and takes none.        //
+  ////////////////////////////////////////////////////////////////////
+  @Name("foreman.JobClaimed")
+  @Label("Job Claimed")
+  @Category({ "Foreman", "Jobs" })
+  @Description("A machine took a job; the duration is the queue search")
+  static class JobClaimed extends Event
+  {
+    @Label("Machine")
+    String machine;
+
+    @Label("Machine Id")
+    int machineId;
+
+    @Label("Machine I")
+    int machineI;
+
+    @Label("Machine J")
+    int machineJ;
+
+    @Label("Job")
+    String job;
+
+    @Label("I")
+    int i;
+
+    @Label("J")
+    int j;
+
+    @Label("Wait Ticks")
+    @Description("Ticks (1/10th second) since the job was queued")
+    long waitTicks;
+
+    @Label("Queue Length")
+    int queueLength;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        JobCompleted                                     //
+  ////////////////////////////////////////////////////////////////////
+  @Name("foreman.JobCompleted")
+  @Label("Job Completed")
+  @Category({ "Foreman", "Jobs" })
+  static class JobCompleted extends Event
+  {
+    @Label("Machine")
+    String machine;
+
+    @Label("Machine Id")
+    int machineId;
+
+    @Label("Job")
+    String job;
+
+    @Label("I")
+    int i;
+
+    @Label("J")
+    int j;
+
+    @Label("Work Time")
+    @Description("From the machine taking the job until it was done")
+    @Timespan(Timespan.NANOSECONDS)
+    long workTime;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        TerrainChanged                                   //
+  // Description:  A tile became a different kind of terrain.  The  //
+  //               duration covers updating the map and listeners.  //
+  ////////////////////////////////////////////////////////////////////
+  @Name("foreman.TerrainChanged")
+  @Label("Terrain Changed")
+  @Category({ "Foreman", "Map" })
+  static class TerrainChanged extends Event
+  {
+    @Label("I")
+    int i;
+
+    @Label("J")
+    int j;
+
+    @Label("From")
+    String from;
+
+    @Label("To")
+    String to;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      beginPhase                                       //
+  //               endPhase                                         //
+  // Arguments:    phase - INPUT, CHECK, REDRAW or PRESENT          //
+  //               tick - pass through the game loop                //
+  //               e - what beginPhase returned (null without JFR)  //
+  ////////////////////////////////////////////////////////////////////
+  static TickPhase beginPhase(String phase, long tick)
+  {
+    if(!recording) return null;
+    TickPhase e = new TickPhase();
+    e.phase = phase;
+    e.tick = tick;
+    e.begin();
+    return e;
+  }
+  static void endPhase(TickPhase e)
+  {
+    if(e != null) e.commit();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       jobEnqueued                                      //
+  // Arguments:    job - job just added                             //
+  //               requeued - true if it was in the queue before    //
+  //               queueLength - jobs in the queue now              //
+  ////////////////////////////////////////////////////////////////////
+  static void jobEnqueued(JobItem job, boolean requeued, int queueLength)
+  {
+    if(!recording) return;
+    JobEnqueued e = new JobEnqueued();
+    if(!e.isEnabled()) return;
+    e.job = getJobName(job.getType());
+    e.i = job.getI();
+    e.j = job.getJ();
+    e.requeued = requeued;
+    e.queueLength = queueLength;
+    e.commit();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      beginClaim                                       //
+  //               jobClaimed                                       //
+  // Arguments:    search - what beginClaim returned before the     //
+  //                        machine searched the queue, or null if  //
+  //                        it didn't                               //
+  //               m - machine that took the job                    //
+  //               job - the job                                    //
+  //               waitTicks - ticks since it was queued            //
+  //               queueLength - jobs left in the queue             //
+  // Description:  A search that finds nothing isn't reported       //
+  ////////////////////////////////////////////////////////////////////
+  static JobClaimed beginClaim()
+  {
+    if(!recording) return null;
+    JobClaimed e = new JobClaimed();
+    e.begin();
+    return e;
+  }
+  static void jobClaimed(JobClaimed search, Machine m, JobItem job,
+                         long waitTicks, int queueLength)
+  {
+    if(!recording) return;
+    JobClaimed e = search;
+    if(e == null) e = new JobClaimed();
+    else          e.end();
+    if(!e.shouldCommit()) return;
+    e.machine = m.getType();
+    e.machineId = System.identityHashCode(m);
+    e.machineI = m.terrain.getI();
+    e.machineJ = m.terrain.getJ();
+    e.job = getJobName(job.getType());
+    e.i = job.getI();
+    e.j = job.getJ();
+    e.waitTicks = waitTicks;
+    e.queueLength = queueLength;
+    e.commit();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       jobCompleted                                     //
+  // Arguments:    m - machine that did the job                     //
+  //               job - job it finished                            //
+  //               workTime - nanoseconds since it took the job     //
+  ////////////////////////////////////////////////////////////////////
+  static void jobCompleted(Machine m, JobItem job, long workTime)
+  {
+    if(!recording) return;
+    JobCompleted e = new JobCompleted();
+    if(!e.isEnabled()) return;
+    e.machine = m.getType();
+    e.machineId = System.identityHashCode(m);
+    e.job = getJobName(job.getType());
+    e.i = job.getI();
+    e.j = job.getJ();
+    e.workTime = workTime;
+    e.commit();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      beginTerrainChange                               //
+  //               endTerrainChange                                 //
+  // Arguments:    e - what beginTerrainChange returned             //
+  //               t - the new terrain                              //
+  //               from - type of the terrain it replaced           //
+  ////////////////////////////////////////////////////////////////////
+  static TerrainChanged beginTerrainChange()
+  {
+    if(!recording) return null;
+    TerrainChanged e = new TerrainChanged();
+    e.begin();
+    return e;
+  }
+  static void endTerrainChange(TerrainChanged e, Terrain t, String from)
+  {
+    if(e==null) return;
+    e.end();
+    if(!e.shouldCommit()) return;
+    e.i = t.getI();
+    e.j = t.getJ();
+    e.from = from;
+    e.to = t.getType();
+    e.commit();
+  }
+}
@@ -36,55 +36,52 @@ class Foreman implements Runnable
   {
     gk.debugMesg("Foreman thread running!");
 
-    //Load machine graphics
-    gk.showStatus("Getting machine images");
-    gk.loadBMPGZ("machines.bmp.gz");
-    int i, j, numTiles=0;
-    for(j=0; j<10; j++)
-    {
-      for(i=0; i<8; i++)
-      {
-        gk.grabTile(j*8+i + numTiles, i*64, j*32, 64, 32);
-      }
-    }
-    numTiles += 80;
-
-    //Load terrain graphics
-    gk.showStatus("Getting terrain images");
-    gk.loadBMPGZ("isotiles.bmp.gz");
-    for(j=0; j<9; j++)
-    {
-      for(i=0; i<4; i++)
-      {
-        gk.grabTile(j*4+i + numTiles, i*64, j*48, 64, 48);
-      }
-    }
-    numTiles += 36;
-
-    //Load wireframe terrain overlays
-    gk.showStatus("Getting wireframe images");
-    gk.loadBMPGZ("wireframe.bmp.gz");
-    for(j=0; j<4; j++)
-    {
-      for(i=0; i<4; i++)
-      {
-        gk.grabTile(j*4+i + numTiles, i*64, j*48, 64, 48);
-      }
-    }
-    numTiles += 16;
+    //Load the tiles on a small pool of threads (from the pre-cut
+    //pack if it has been built) and generate the map meanwhile
+    gk.showStatus("Loading");
+    TileLoader loader = gk.startTileLoader();
 
     Map map = new Map(gk);
     map.randomize();
 
+    //nothing can be drawn until every tile is in
+    gk.finishTileLoader(loader);
+
     map.setFullRedraw();
+
+    //serve metrics on localhost if asked to (see MetricsServer)
+    MetricsServer metrics =
+      MetricsServer.startIfEnabled(map, gk.getParameter("metrics"));
+    long start;
+
     // begin infinite loop (this thread won't stop until
     // the applet stops it)
-    for(;;)
+    //(each phase is timed for Java Flight Recorder; see Events)
+    Events.TickPhase phase;
+    for(long tick=0; ; tick++)
     {
+      phase = Events.beginPhase(Events.INPUT, tick);
       gk.checkEvents();
+      Events.endPhase(phase);
+
+      phase = Events.beginPhase(Events.CHECK, tick);
+      start = System.nanoTime();
       map.check();
+      if(metrics != null) metrics.recordTick(System.nanoTime() - start);
+      Events.endPhase(phase);
+
+      phase = Events.beginPhase(Events.REDRAW, tick);
+      start = System.nanoTime();
       map.redraw();
+      Events.endPhase(phase);
+
+      phase = Events.beginPhase(Events.PRESENT, tick);
       gk.updateScreen();
+      Events.endPhase(phase);
+      if(metrics != null)
+      {
+        metrics.recordFrame(System.nanoTime() - start, map.wasFullRedraw());
+      }
     }
   }
 }
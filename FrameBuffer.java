@@ -0,0 +1,369 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     FrameBuffer.java                                      //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  A RenderTarget that draws into an int[] of aarrggbb   //
+//            pixels in plain Java, so frames can be rendered on a  //
+//            machine with no display.                              //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+
+class FrameBuffer implements RenderTarget
+{
+  private int width, height;
+  private int pixels[];
+  private int background[];   //saved by copyBackground()
+
+  //only rows clipTop up to (not including) clipBottom are drawn on
+  private int clipTop, clipBottom;
+
+  //tiles to draw with at each zoom level
+  private TileSet tileLevel[];
+  private int zoom;
+
+  //Transparency mask of each tile at each zoom level, built the
+  //first time it is needed.  For each row: the number of opaque runs
+  //followed by a (start, length) pair for each run.  Pixels with
+  //alpha 0 (the blue color key) are left out.
+  private int mask[][][];
+  private boolean opaque[][];   //tile has no transparent pixels
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  FrameBuffer                                      //
+  // Arguments:    w, h - size in pixels                            //
+  //               tiles - pixels of the tiles to draw with         //
+  ////////////////////////////////////////////////////////////////////
+  public FrameBuffer(int w, int h, TileSet tiles)
+  {
+    width = w;
+    height = h;
+    pixels = new int[w*h];
+    background = new int[w*h];
+    clipTop = 0;
+    clipBottom = h;
+    tileLevel = new TileSet[TileSet.ZOOM_LEVELS];
+    mask = new int[TileSet.ZOOM_LEVELS][][];
+    opaque = new boolean[TileSet.ZOOM_LEVELS][];
+    for(int level=0; level<TileSet.ZOOM_LEVELS; level++)
+    {
+      tileLevel[level] = tiles.getZoomLevel(level);
+      mask[level] = new int[tiles.getMaxTiles()][];
+      opaque[level] = new boolean[tiles.getMaxTiles()];
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  FrameBuffer                                      //
+  // Arguments:    parent - buffer to share pixels with             //
+  //               top, bottom - the rows this view may draw on     //
+  // Description:  Makes a view of a horizontal strip of another    //
+  //               buffer.  Views of separate strips can be drawn   //
+  //               on by separate threads at the same time.         //
+  ////////////////////////////////////////////////////////////////////
+  public FrameBuffer(FrameBuffer parent, int top, int bottom)
+  {
+    parent.prepareTiles();   //masks are shared, so build them now
+    width = parent.width;
+    height = parent.height;
+    pixels = parent.pixels;
+    background = parent.background;
+    clipTop = Math.max(top, 0);
+    clipBottom = Math.min(bottom, height);
+    tileLevel = parent.tileLevel;
+    zoom = parent.zoom;
+    mask = parent.mask;
+    opaque = parent.opaque;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getWidth                                         //
+  //               getHeight                                        //
+  //               getPixels - aarrggbb values, top row first       //
+  ////////////////////////////////////////////////////////////////////
+  public int   getWidth()
+  {
+    return width;
+  }
+  public int   getHeight()
+  {
+    return height;
+  }
+  public int[] getPixels()
+  {
+    return pixels;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getScreenWidth                                   //
+  //               getScreenHeight                                  //
+  //               setZoom                                          //
+  //               getZoom                                          //
+  ////////////////////////////////////////////////////////////////////
+  public int  getScreenWidth()
+  {
+    return width;
+  }
+  public int  getScreenHeight()
+  {
+    return height;
+  }
+  public void setZoom(int level)
+  {
+    zoom = Math.max(0, Math.min(level, TileSet.ZOOM_LEVELS-1));
+  }
+  public int  getZoom()
+  {
+    return zoom;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      cls                                              //
+  //               clearRect                                        //
+  //               fillRect                                         //
+  // Description:  Solid fills, clipped to the drawable rows        //
+  ////////////////////////////////////////////////////////////////////
+  public void cls(int r, int g, int b)
+  {
+    fillRect(0, 0, width, height, 0xff000000 | (r<<16) | (g<<8) | b);
+  }
+
+  public void clearRect(int x, int y, int w, int h)
+  {
+    fillRect(x, y, w, h, 0xff000000);
+  }
+
+  public void fillRect(int x, int y, int w, int h, int color)
+  {
+    int x1 = Math.min(x+w, width), y1 = Math.min(y+h, clipBottom);
+    if(x<0) x = 0;
+    if(y<clipTop) y = clipTop;
+    if(x>=x1) return;
+    int j, pos;
+    for(j=y; j<y1; j++)
+    {
+      pos = j*width;
+      java.util.Arrays.fill(pixels, pos+x, pos+x1, color);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       buildMask                                        //
+  // Arguments:    level - zoom level                               //
+  //               n - tile number                                  //
+  // Description:  Builds the run mask of a tile (see "mask")       //
+  ////////////////////////////////////////////////////////////////////
+  private void buildMask(int level, int n)
+  {
+    TileSet tiles = tileLevel[level];
+    int w = tiles.getWidth(n), h = tiles.getHeight(n);
+    int src[] = tiles.getPixels(n);
+
+    //worst case: alternating pixels on every row
+    int runs[] = new int[h * (1 + w + 1)];
+    int len = 0, i, j, k;
+    boolean allOpaque = true;
+    for(j=0; j<h; j++)
+    {
+      int countPos = len++;
+      int count = 0;
+      k = j*w;
+      i = 0;
+      while(i<w)
+      {
+        if((src[k+i] >>> 24) == 0)
+        {
+          allOpaque = false;
+          i++;
+          continue;
+        }
+        int start = i;
+        while(i<w && (src[k+i] >>> 24) != 0) i++;
+        runs[len++] = start;
+        runs[len++] = i - start;
+        count++;
+      }
+      runs[countPos] = count;
+    }
+
+    int trimmed[] = new int[len];
+    System.arraycopy(runs, 0, trimmed, 0, len);
+    opaque[level][n] = allOpaque;
+    mask[level][n] = trimmed;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       prepareTiles                                     //
+  // Description:  Builds the mask of every loaded tile up front    //
+  //               instead of on first use                          //
+  ////////////////////////////////////////////////////////////////////
+  public void prepareTiles()
+  {
+    int level, n;
+    for(level=0; level<mask.length; level++)
+    {
+      for(n=0; n<mask[level].length; n++)
+      {
+        if(mask[level][n]==null && tileLevel[level].getPixels(n)!=null)
+        {
+          buildMask(level, n);
+        }
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drawTile                                         //
+  // Arguments:    n - tile number                                  //
+  //               x, y - where to put the top left of the tile     //
+  // Description:  Fully opaque tiles are copied a row at a time;   //
+  //               the rest copy only the opaque runs of each row.  //
+  ////////////////////////////////////////////////////////////////////
+  public void drawTile(int n, int x, int y)
+  {
+    TileSet tiles = tileLevel[zoom];
+    int src[] = tiles.getPixels(n);
+    if(src==null) return;
+    if(mask[zoom][n]==null) buildMask(zoom, n);
+
+    int w = tiles.getWidth(n), h = tiles.getHeight(n);
+    if(x>=width || y>=clipBottom || x+w<=0 || y+h<=clipTop) return;
+
+    //rows and columns of the tile that land inside the drawable rows
+    int j0 = Math.max(0, clipTop - y), j1 = Math.min(h, clipBottom - y);
+    int i0 = Math.max(0, -x), i1 = Math.min(w, width - x);
+    int j;
+
+    if(opaque[zoom][n])
+    {
+      int cols = i1 - i0;
+      for(j=j0; j<j1; j++)
+      {
+        System.arraycopy(src, j*w + i0, pixels, (y+j)*width + x + i0, cols);
+      }
+      return;
+    }
+
+    int runs[] = mask[zoom][n];
+    int k = 0;
+    for(j=0; j<j1; j++)
+    {
+      int count = runs[k++];
+      if(j<j0)
+      {
+        k += count*2;   //row is clipped; skip its runs
+        continue;
+      }
+      int srcRow = j*w, dstRow = (y+j)*width + x;
+      while(count-- > 0)
+      {
+        int start = runs[k++];
+        int end = start + runs[k++];
+        if(start < i0) start = i0;
+        if(end > i1)   end = i1;
+        if(start < end)
+        {
+          System.arraycopy(src, srcRow + start, pixels, dstRow + start,
+                           end - start);
+        }
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drawPixels                                       //
+  // Description:  Copies a block of pixels a row at a time         //
+  ////////////////////////////////////////////////////////////////////
+  public void drawPixels(int pix[], int w, int h, int x, int y)
+  {
+    int j0 = Math.max(0, clipTop - y), j1 = Math.min(h, clipBottom - y);
+    int i0 = Math.max(0, -x), i1 = Math.min(w, width - x);
+    if(i0 >= i1) return;
+    int j;
+    for(j=j0; j<j1; j++)
+    {
+      System.arraycopy(pix, j*w + i0, pixels, (y+j)*width + x + i0, i1 - i0);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      copyBackground                                   //
+  //               restoreBackground                                //
+  // Description:  Only the drawable rows are copied                //
+  ////////////////////////////////////////////////////////////////////
+  public void copyBackground()
+  {
+    if(clipBottom <= clipTop) return;
+    System.arraycopy(pixels, clipTop*width, background, clipTop*width,
+                     (clipBottom - clipTop) * width);
+  }
+
+  public void restoreBackground()
+  {
+    if(clipBottom <= clipTop) return;
+    System.arraycopy(background, clipTop*width, pixels, clipTop*width,
+                     (clipBottom - clipTop) * width);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       writePPM                                         //
+  // Arguments:    out - stream to write to                         //
+  // Description:  Saves the picture as a binary (P6) PPM image     //
+  ////////////////////////////////////////////////////////////////////
+  public void writePPM(OutputStream out) throws IOException
+  {
+    BufferedOutputStream bufOut = new BufferedOutputStream(out, 65536);
+    bufOut.write(("P6\n" + width + " " + height + "\n255\n").getBytes());
+    int k;
+    for(k=0; k<pixels.length; k++)
+    {
+      int color = pixels[k];
+      bufOut.write(color >> 16);
+      bufOut.write(color >> 8);
+      bufOut.write(color);
+    }
+    bufOut.flush();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  // Arguments:    args[0] - file to save the frame to (.ppm)       //
+  //               args[1] - directory holding the tiles (optional) //
+  // Description:  Renders one frame of a random map without any    //
+  //               display, e.g. for thumbnails on a server.        //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[]) throws Exception
+  {
+    if(args.length < 1)
+    {
+      System.out.println("usage: java FrameBuffer out.ppm [tile dir]");
+      return;
+    }
+    File dir = new File(args.length > 1 ? args[1] : ".");
+
+    TileSet tiles = new TileSet(GameKit.MAX_TILES);
+    TileLoader loader = new TileLoader(dir.toURI().toURL(), tiles).start();
+    Map map = new Map(null);
+    map.randomize();
+    Throwable error = loader.await();
+    if(error != null) throw new IOException(error.toString());
+
+    FrameBuffer fb = new FrameBuffer(GameKit.HRES, GameKit.VRES, tiles);
+    map.setRenderTarget(fb);
+    map.setFullRedraw();
+    map.redraw();
+
+    FileOutputStream out = new FileOutputStream(args[0]);
+    try
+    {
+      fb.writePPM(out);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+}
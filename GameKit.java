@@ -15,40 +15,49 @@ import java.awt.event.*;
 import java.awt.image.*;
 import java.net.*;
 import java.io.*;
-import java.util.zip.*;
+import java.util.ArrayList;
 
-public class GameKit extends Applet
+public class GameKit extends Applet implements RenderTarget
 {
   /////////////////
   // definitions //
   /////////////////
-  final int MAX_TILES = 150;          //Maximum number of tile images
-  final int HRES = 640, VRES = 480;  //screen resolution
+  static final int MAX_TILES = 150;   //Maximum number of tile images
+  static final int HRES = 640, VRES = 480;  //default screen resolution
 
   ///////////////////////
   // private variables //
   ///////////////////////
-  private Image    logic_image;     //backbuffer image
-  private Graphics logic_graphics;  //graphics interface to bkbuffer
-  private Image    copy_image;
-  private Graphics copy_graphics;
+  private AwtFrame frame;           //backbuffer and its backup
+  private int      scrWidth, scrHeight;   //size of the buffers
 
 
   //pixels from bmp file will be stored here in 24-bit format
   private int bmData[];
-  private int bmPalette[] = new int[256];  //palette for 8-bit bmps
   private int bmWidth, bmHeight;
 
-  //gfx to draw map with.  These will still need to be initialized
-  //individually
-  private Image tile[] = new Image[MAX_TILES];
+  //gfx to draw map with, for each zoom level.  These will still
+  //need to be initialized individually
+  private Image tile[][] = new Image[TileSet.ZOOM_LEVELS][MAX_TILES];
 
-  //keycodes of current/next key presses
-  private int inkey = 0, nextkey = 0;
+  //raw pixels of each tile image
+  private TileSet tileSet = new TileSet(MAX_TILES);
+
+  //Key presses and mouse button changes from the AWT thread, in
+  //order.  Each checkEvents() takes the ones that have arrived and
+  //they stay readable through getEvent... until the next tick.
+  private InputQueue input = new InputQueue(256);
+  private int        numEvents;
+
+  //latest mouse position from the AWT thread, (x << 32) | y
+  private volatile long nextMousePos;
+
+  //keycode of first key press this tick
+  private int inkey = 0;
 
   //mouse stuff
-  int mouseX, mouseY, nextMouseX, nextMouseY;
-  boolean mouseB1, mouseB3, nextMouseB1, nextMouseB3;
+  int mouseX, mouseY;
+  boolean mouseB1, mouseB3;
   boolean mouseClickB1, mouseClickB3;
 
   // Foreman is a Runnable class that contains the actual game logic
@@ -59,21 +68,61 @@ public class GameKit extends Applet
   private Foreman foreman = new Foreman(this);
   private Thread thread;
 
-  // The log window is a place to send debugging messages to
+  // The log window is where the Log sends debugging messages.  It
+  // keeps only the last MAX_LOG_LINES of them.
+  static final int MAX_LOG_LINES = 500;
   private Frame logWindow = new Frame("Log Window");
   private List  logList   = new List();
 
   ///////////////////////////////////////////////////////////////
   // Method:       debugMesg                                   //
   // Arguments:    mesg - string to add to log window          //
-  // Description:  Adds the specified message to the log       //
-  //               window.  Useful for debugging.              //
+  // Description:  Logs the specified message for the GAME     //
+  //               subsystem.  Returns at once; the log window //
+  //               is updated in the background.               //
   ///////////////////////////////////////////////////////////////
   void debugMesg(String s)
   {
-    logList.add(s);
-    logList.makeVisible(logList.getItemCount()-1);
-    showStatus(s);
+    Log.log(Log.GAME, Log.INFO, s);
+  }
+
+  ///////////////////////////////////////////////////////////////
+  // Class:        LogWindowSink                               //
+  // Description:  Gets batches of messages from the Log's     //
+  //               thread and hands them to the AWT thread to  //
+  //               add to the log window.  The last message of //
+  //               a batch at INFO or above also goes in the   //
+  //               status bar, as debugMesg used to do.        //
+  ///////////////////////////////////////////////////////////////
+  private class LogWindowSink implements LogSink
+  {
+    private ArrayList<String> batch = new ArrayList<String>();
+    private String            status;
+
+    public void write(long time, int subsystem, int level, String text)
+    {
+      batch.add(text);
+      if(level <= Log.INFO) status = text;
+    }
+
+    public void flush()
+    {
+      final ArrayList<String> lines = batch;
+      final String            newStatus = status;
+      batch = new ArrayList<String>();
+      status = null;
+      EventQueue.invokeLater(new Runnable()
+      {
+        public void run()
+        {
+          int n = Math.max(0, lines.size() - MAX_LOG_LINES);
+          for(; n<lines.size(); n++) logList.add(lines.get(n));
+          while(logList.getItemCount() > MAX_LOG_LINES) logList.remove(0);
+          logList.makeVisible(logList.getItemCount()-1);
+          if(newStatus != null) showStatus(newStatus);
+        }
+      });
+    }
   }
 
   ///////////////////////////////////////////////////////////////
@@ -88,19 +137,40 @@ public class GameKit extends Applet
     Point p = getLocation();           //get browser's location
     logWindow.setBounds(0, p.y+480, 512, 128);  //set log
     //window's loc.
+    Log.addSink(new LogWindowSink());
+
+    //e.g. <param name="log" value="machine=trace,jobs=debug">
+    String logSpec = getParameter("log");
+    if(logSpec != null) Log.configure(logSpec);
     //create the back-buffer to draw on + its graphics interface
-    logic_image = createImage(HRES, VRES);
-    logic_graphics = logic_image.getGraphics();
-    copy_image = createImage(HRES, VRES);
-    copy_graphics = copy_image.getGraphics();
-    prepareImage(logic_image, this);
-    prepareImage(copy_image, this);
+    Dimension d = getSize();
+    if(d.width > 0 && d.height > 0) createBuffers(d.width, d.height);
+    else                            createBuffers(HRES, VRES);
 
     enableEvents(java.awt.AWTEvent.KEY_EVENT_MASK
                  | java.awt.AWTEvent.MOUSE_EVENT_MASK
                  | java.awt.AWTEvent.MOUSE_MOTION_EVENT_MASK);
   }
 
+  ////////////////////////////////////////////////////////////////////
+  // Method:       createBuffers                                    //
+  // Arguments:    w, h - size of the drawing area                  //
+  // Description:  (re)creates the back-buffer and the backup       //
+  //               buffer at the given size                         //
+  ////////////////////////////////////////////////////////////////////
+  private void createBuffers(int w, int h)
+  {
+    Image newLogic = createImage(w, h);
+    Image newCopy  = createImage(w, h);
+    prepareImage(newLogic, this);
+    prepareImage(newCopy, this);
+    AwtFrame newFrame = new AwtFrame(newLogic, newCopy, w, h, tile, this);
+    if(frame != null) newFrame.setZoom(frame.getZoom());
+    frame = newFrame;
+    scrWidth = w;
+    scrHeight = h;
+  }
+
   ////////////////////////////////////////////////////////////////////
   // Method:       start                                            //
   // Description:  called each time the applet restarts (eg the     //
@@ -148,7 +218,7 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void paint(Graphics g)
   {
-    g.drawImage(logic_image,0,0,this);
+    g.drawImage(frame.getImage(),0,0,this);
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -167,7 +237,8 @@ public class GameKit extends Applet
   // Description:  Updates information about the current key press, //
   //               etc.  Information from methods such as "getInkey"//
   //               will not change except after a call to           //
-  //               "checkEvents."                                   //
+  //               "checkEvents."  Every event queued since the     //
+  //               last call is kept for getEvent... (see above).   //
   ////////////////////////////////////////////////////////////////////
   public void checkEvents()
   {
@@ -183,17 +254,54 @@ public class GameKit extends Applet
     }
 
 
-    inkey = nextkey;
-    nextkey = 0;
+    //follow the applet if it has been resized (getSize() would make
+    //a new Dimension every tick)
+    int w = getWidth(), h = getHeight();
+    if(w > 0 && h > 0 && (w != scrWidth || h != scrHeight))
+    {
+      createBuffers(w, h);
+    }
 
-    mouseX = nextMouseX;
-    mouseY = nextMouseY;
-    if(mouseB1 && !nextMouseB1) mouseClickB1 = true;
-    else                        mouseClickB1 = false;
-    if(mouseB3 && !nextMouseB3) mouseClickB3 = true;
-    else                        mouseClickB3 = false;
-    mouseB1 = nextMouseB1;
-    mouseB3 = nextMouseB3;
+    //done with last tick's events; take the ones that came since
+    input.discard(numEvents);
+    numEvents = input.size();
+
+    long pos = nextMousePos;
+    mouseX = mouseXOf(pos);
+    mouseY = mouseYOf(pos);
+
+    //replay this tick's events for the simple getInkey/getMouse
+    //interface: first key, any button let go, final button state
+    inkey = 0;
+    mouseClickB1 = false;
+    mouseClickB3 = false;
+    int n;
+    for(n=0; n<numEvents; n++)
+    {
+      int type = input.getType(n), code = input.getCode(n);
+      if(type==InputQueue.KEY)
+      {
+        if(inkey==0) inkey = code;
+      }
+      else if(type==InputQueue.PRESS)
+      {
+        if(code==InputQueue.BUTTON1) mouseB1 = true;
+        else                         mouseB3 = true;
+      }
+      else if(type==InputQueue.RELEASE)
+      {
+        if(code==InputQueue.BUTTON1)
+        {
+          if(mouseB1) mouseClickB1 = true;
+          mouseB1 = false;
+        }
+        else
+        {
+          if(mouseB3) mouseClickB3 = true;
+          mouseB3 = false;
+        }
+      }
+    }
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -202,43 +310,132 @@ public class GameKit extends Applet
   //               processMouseMotion                               //
   // Arguments:    Event e - description of event                   //
   // Description:  Java calls one of these methods whenever the     //
-  //               input state of the mouse or keyboard changes     //
+  //               input state of the mouse or keyboard changes.    //
+  //               They run on the AWT thread and only add to the   //
+  //               input queue, which never waits.                  //
   ////////////////////////////////////////////////////////////////////
   protected void processKeyEvent(KeyEvent e)
   {
-    if(e.getID() != e.KEY_PRESSED) return;  //skip release events
-
-    if((nextkey = e.getKeyChar()) == 0)
+    //by key code alone: a character can share its number with an
+    //unrelated key ('&' with the up arrow, '(' with down)
+    int type;
+    switch(e.getID())
     {
-      nextkey = e.getKeyCode();
+    case KeyEvent.KEY_PRESSED:
+      type = InputQueue.KEY;
+      break;
+    case KeyEvent.KEY_RELEASED:
+      type = InputQueue.KEY_RELEASE;
+      break;
+    default:
+      return;
     }
+    input.add(type, e.getKeyCode(), mouseXOf(nextMousePos),
+              mouseYOf(nextMousePos), getFlags(e), e.getWhen());
   }
 
   protected void processMouseEvent(MouseEvent e)
   {
-    int  m = e.getModifiers();
+    int  type, button;
     switch(e.getID())
     {
-    case e.MOUSE_PRESSED:
-      if((m & e.BUTTON1_MASK)>0) nextMouseB1 = true;
-      if((m & e.BUTTON3_MASK)>0) nextMouseB3 = true;
+    case MouseEvent.MOUSE_PRESSED:
+      type = InputQueue.PRESS;
       break;
-    case e.MOUSE_RELEASED:
-      if((m & e.BUTTON1_MASK)>0) nextMouseB1 = false;
-      if((m & e.BUTTON3_MASK)>0) nextMouseB3 = false;
+    case MouseEvent.MOUSE_RELEASED:
+      type = InputQueue.RELEASE;
       break;
+    default:
+      return;
     }
+    switch(e.getButton())
+    {
+    case MouseEvent.BUTTON1:
+      button = InputQueue.BUTTON1;
+      break;
+    case MouseEvent.BUTTON3:
+      button = InputQueue.BUTTON3;
+      break;
+    default:
+      return;
+    }
+    nextMousePos = ((long) e.getX() << 32) | (e.getY() & 0xffffffffL);
+    input.add(type, button, e.getX(), e.getY(), getFlags(e), e.getWhen());
   }
 
   protected void processMouseMotionEvent(MouseEvent e)
   {
-    nextMouseX = e.getX();
-    nextMouseY = e.getY();
+    nextMousePos = ((long) e.getX() << 32) | (e.getY() & 0xffffffffL);
+
+    //the path of a drag is kept for lasso selection
+    if(e.getID()==MouseEvent.MOUSE_DRAGGED)
+    {
+      input.add(InputQueue.DRAG, 0, e.getX(), e.getY(), getFlags(e),
+                e.getWhen());
+    }
+  }
+
+  private static int getFlags(InputEvent e)
+  {
+    return e.isShiftDown() ? InputQueue.SHIFT : 0;
+  }
+
+  private static int mouseXOf(long pos)
+  {
+    return (int) (pos >> 32);
+  }
+  private static int mouseYOf(long pos)
+  {
+    return (int) pos;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getNumEvents - input events this tick            //
+  //               getEventType - InputQueue.KEY, KEY_RELEASE,      //
+  //                              PRESS, RELEASE or DRAG            //
+  //               getEventCode - KeyEvent.VK_ code or              //
+  //                              InputQueue.BUTTON1/3              //
+  //               getEventX    - mouse position at the time        //
+  //               getEventY                                        //
+  //               getEventFlags - InputQueue.SHIFT if held         //
+  //               getEventTime - in milliseconds                   //
+  // Arguments:    n - 0 for the oldest event this tick             //
+  // Description:  Every key and mouse button change since the     //
+  //               last tick, in the order they happened            //
+  ////////////////////////////////////////////////////////////////////
+  public int  getNumEvents()
+  {
+    return numEvents;
+  }
+  public int  getEventType(int n)
+  {
+    return input.getType(n);
+  }
+  public int  getEventCode(int n)
+  {
+    return input.getCode(n);
+  }
+  public int  getEventX(int n)
+  {
+    return input.getX(n);
+  }
+  public int  getEventY(int n)
+  {
+    return input.getY(n);
+  }
+  public int  getEventFlags(int n)
+  {
+    return input.getFlags(n);
+  }
+  public long getEventTime(int n)
+  {
+    return input.getWhen(n);
   }
 
   ////////////////////////////////////////////////////////////////////
   // Method:       getInkey                                         //
-  // Returns:      keycode of last key press; usually ASCII         //
+  // Returns:      KeyEvent.VK_ code of the first key press this    //
+  //               tick, or 0                                       //
   ////////////////////////////////////////////////////////////////////
   public int getInkey()
   {
@@ -278,6 +475,35 @@ public class GameKit extends Applet
     return mouseClickB3;
   }
 
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getScreenWidth                                   //
+  //               getScreenHeight                                  //
+  // Returns:      size of the drawing area in pixels               //
+  ////////////////////////////////////////////////////////////////////
+  public int getScreenWidth()
+  {
+    return scrWidth;
+  }
+  public int getScreenHeight()
+  {
+    return scrHeight;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      setZoom                                          //
+  //               getZoom                                          //
+  // Description:  selects the tile size drawTile uses; 0 is full   //
+  //               size, each further level is half the last        //
+  ////////////////////////////////////////////////////////////////////
+  public void setZoom(int level)
+  {
+    frame.setZoom(level);
+  }
+  public int  getZoom()
+  {
+    return frame.getZoom();
+  }
+
   ////////////////////////////////////////////////////////////////////
   // Method:       cls                                              //
   // Arguments:    int r, int g, int b                              //
@@ -286,8 +512,7 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void cls(int r, int g, int b)
   {
-    logic_graphics.setColor(new Color(r,g,b));
-    logic_graphics.fillRect(0,0,HRES,VRES);
+    frame.cls(r,g,b);
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -297,7 +522,7 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void setFont(Font font)
   {
-    logic_graphics.setFont(font);
+    frame.getGraphics().setFont(font);
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -313,8 +538,9 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void drawString(String s, int x, int y, int r, int g, int b)
   {
-    logic_graphics.setColor(new Color(r,g,b));
-    logic_graphics.drawString(s,x,y);
+    Graphics gfx = frame.getGraphics();
+    gfx.setColor(frame.getColor(r,g,b));
+    gfx.drawString(s,x,y);
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -325,34 +551,7 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void clearRect(int x, int y, int width, int height)
   {
-    logic_graphics.setColor(new Color(0,0,0));
-    logic_graphics.fillRect(x,y,width,height);
-  }
-
-  ////////////////////////////////////////////////////////////////////
-  // Methods:      readWord                                         //
-  //               readLong                                         //
-  // Arguments:    in - input stream to read from                   //
-  // Returns:      The next 16 or 32-bit value from the stream      //
-  // Description:  Reads in 2 or 4 bytes from the input stream and  //
-  //               returns their concatenated value.                //
-  // Note:         Assumes input is in lo-byte/hi-byte format       //
-  //               Primarily for use with loadBMPGZ()               //
-  ////////////////////////////////////////////////////////////////////
-  public int  readWord(InputStream in) throws IOException
-  {
-    int returnVal;
-    returnVal = in.read();
-    returnVal |= in.read() << 8;
-    return returnVal;
-  }
-
-  public int  readLong(InputStream in) throws IOException
-  {
-    int returnVal;
-    returnVal  = readWord(in);
-    returnVal |= readWord(in) << 16;
-    return returnVal;
+    frame.clearRect(x,y,width,height);
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -362,133 +561,33 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public boolean loadBMPGZ(String filename)
   {
-
     //////////////////////////////////////////////////////
-    //Attempt to open the filename as a DataInputStream //
+    //Attempt to open the filename as an InputStream    //
     //////////////////////////////////////////////////////
     URL myURL;
-    GZIPInputStream gzipInput;
+    InputStream input;
 
     try
     {
-      debugMesg("Opening " + filename + " for reading");
+      if(Log.isEnabled(Log.LOADER, Log.INFO))
+      {
+        Log.log(Log.LOADER, Log.INFO, "Opening " + filename + " for reading");
+      }
       myURL = new URL(getDocumentBase(), filename);
-      gzipInput = new GZIPInputStream(myURL.openStream());
+      input = myURL.openStream();
     }
     catch(Exception e)
     {
-      debugMesg("Error opening file: " + e.toString());
+      Log.log(Log.LOADER, Log.ERROR, "Error opening file: " + e.toString());
       return false;
     }
 
-    ////////////////////////////////
-    // Read in 54-byte bmp header //
-    ////////////////////////////////
     try
     {
-      boolean badFile = false;
-      if(gzipInput.read() != 'B') badFile = true;   //bytes 0,1 ID B,M
-      else if(gzipInput.read() != 'M') badFile = true;
-      if(badFile)
-      {
-        debugMesg("Invalid BMP file: " + filename);
-      }
-
-      //Read in extraneous stuff without saving values in order to get
-      //to the good stuff.
-      readLong(gzipInput);   //total file size
-      readLong(gzipInput);
-      int headerPlusPaletteSize = readLong(gzipInput);   //header + palette size
-      int paletteEntries = (headerPlusPaletteSize - 54) / 4;
-      readLong(gzipInput);
-      bmWidth  = readLong(gzipInput);  //store w&h in instance variable
-      bmHeight = readLong(gzipInput);
-      readWord(gzipInput);
-      int bpp = readWord(gzipInput);    //bits per pixel
-      int i, j, pos;
-      for(i=0; i<6; i++) readLong(gzipInput);  //skip remaining 24 bytes
-
-      ////////////////////////
-      // Read in the bitmap //
-      ////////////////////////
-      //place to store final image
-      bmData = new int[bmWidth * bmHeight];
-
-      //Note that I am using a single dimensional array to represent
-      //two dimensional information.  This is really the way the
-      //computer stores it anyways and 1D arrays end up being more
-      //flexible than their 2D counterparts.
-      //
-      //2D:    buffer[x][y] = 5;
-      //
-      //1D:    buffer[(y * array_width) + x] = 5;
-
-
-      if(bpp==8)
-      {
-        ///////////////
-        // 8-bit bmp //
-        ///////////////
-        //8 bits per pixel, next read in color palette as series of
-        //longs (4-byte b, g, r, 0 values)
-        for(i=0; i<paletteEntries; i++)
-        {
-          bmPalette[i] = readLong(gzipInput);
-        }
-
-        //now read in (width*height) number of bytes, using each byte
-        //as an index into the color table to get the actual color
-        //BMPs are stored from left-to-right (normal) and bottom-to-top
-        //(unusual) so we must skip around in our destination array
-        //to read in it correctly.
-        for(j=bmHeight-1; j>=0; j--)
-        {
-          pos = (j * bmWidth);  //start at left side, next row up
-          for(i=0; i<bmWidth; i++)
-          {
-            int color = bmPalette[gzipInput.read()];
-            if(color != 0xff)
-            {        //blue stays transparent
-              color |= 0xff000000;    //set alpha to opaque (ff)
-            }
-
-            bmData[pos++] = color;  //note that values are aarrggbb
-            //a=alpha, r=red, g=green, b=blue
-          }
-
-        }
-      }
-      else if(bpp==24)
-      {
-        ////////////////
-        // 24-bit bmp //
-        ////////////////
-        //For 24 bit pictures there is no indexed color palette.  We
-        //just load in raw r, g, b byte-triplets for each pixel.
-        for(j=bmHeight-1; j>=0; j--)
-        {
-          pos = (j * bmWidth);  //start at left side, next row up
-          for(i=0; i<bmWidth; i++)
-          {
-            int color = gzipInput.read();     //blue
-            color |= gzipInput.read() <<  8;  //green
-            color |= gzipInput.read() << 16;  //red
-            color |= 0xff000000;              //alpha; make opaque
-            bmData[pos++] = color;
-          }
-        }
-      }
-      else
-      {
-        debugMesg("Error:  bitmap " + filename + " must be 8 or "
-                  + "24 bpp!");
-      }
-
-      ///////////////////
-      //close the file //
-      ///////////////////
-      gzipInput.close();
-
+      Bitmap bm = Bitmap.readBMPGZ(input);
+      bmWidth  = bm.width;    //store w&h in instance variable
+      bmHeight = bm.height;
+      bmData   = bm.data;
 
       ////////////////////////////////////////////////////////////////
       // We've read in the bitmap, now create a temporary image     //
@@ -498,16 +597,67 @@ public class GameKit extends Applet
       Image tempImage = createImage(
                           new MemoryImageSource(bmWidth, bmHeight, bmData, 0, bmWidth));
       prepareImage(tempImage, this);
-      logic_graphics.drawImage(tempImage, 0, 0, this);
-
+      frame.getGraphics().drawImage(tempImage, 0, 0, this);
     }
     catch(Exception e)
     {
-      debugMesg("Error reading bitmap: " + e.toString());
+      Log.log(Log.LOADER, Log.ERROR,
+              "Error reading bitmap " + filename + ": " + e.toString());
       return false;
     }
 
-    debugMesg(filename + " successfully loaded");
+    if(Log.isEnabled(Log.LOADER, Log.INFO))
+    {
+      Log.log(Log.LOADER, Log.INFO, filename + " successfully loaded");
+    }
+    return true;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       startTileLoader                                  //
+  // Returns:      loader that is already busy in the background    //
+  // Description:  Begins loading every tile, from the asset pack   //
+  //               built by TileSet.main() if there is one or else  //
+  //               from the .bmp.gz sheets.  Pass the result to     //
+  //               finishTileLoader before drawing any tiles.       //
+  ////////////////////////////////////////////////////////////////////
+  public TileLoader startTileLoader()
+  {
+    return new TileLoader(getDocumentBase(), tileSet).start();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       finishTileLoader                                 //
+  // Arguments:    loader - as returned by startTileLoader          //
+  // Returns:      false if any tiles could not be loaded           //
+  // Description:  Waits for the loader and creates the drawable    //
+  //               image of every tile it loaded                    //
+  ////////////////////////////////////////////////////////////////////
+  public boolean finishTileLoader(TileLoader loader)
+  {
+    Throwable error = loader.await();
+
+    int level, n;
+    for(level=0; level<TileSet.ZOOM_LEVELS; level++)
+    {
+      TileSet tiles = tileSet.getZoomLevel(level);
+      for(n=0; n<MAX_TILES; n++)
+      {
+        if(tiles.getPixels(n) != null) createTileImage(level, n);
+      }
+    }
+
+    if(error != null)
+    {
+      Log.log(Log.LOADER, Log.ERROR, "Error loading tiles: " + error.toString());
+      return false;
+    }
+    if(Log.isEnabled(Log.LOADER, Log.INFO))
+    {
+      Log.log(Log.LOADER, Log.INFO, "Tiles loaded from "
+              + (loader.usedPack() ? TileSet.PACK_FILE : "tile sheets")
+              + " in " + loader.getElapsedTime() + " ms");
+    }
     return true;
   }
 
@@ -522,22 +672,31 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void grabTile(int n, int x, int y, int w, int h)
   {
-    int  buffer[] = new int[w*h];
-    int sx, sy, i, j;
-    sy = y;
-    for(j=0; j<h; j++)
-    {
-      sx = x;
-      for(i=0; i<w; i++)
-      {
-        buffer[j*w + i] = bmData[sy * bmWidth + sx];
-        sx++;
-      }
-      sy++;
-    }
-    tile[n] = createImage(
-                new MemoryImageSource(w, h, buffer, 0, w));
-    prepareImage(tile[n], this);
+    tileSet.grab(n, bmData, bmWidth, x, y, w, h);
+    createTileImage(0, n);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getTileSet                                       //
+  // Returns:      the pixels of every loaded tile, e.g. for use    //
+  //               with a FrameBuffer                               //
+  ////////////////////////////////////////////////////////////////////
+  public TileSet getTileSet()
+  {
+    return tileSet;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       createTileImage                                  //
+  // Arguments:    int level - the zoom level                       //
+  //               int n - the number of the tile                   //
+  // Description:  Makes the drawable image for a tile from its     //
+  //               pixels in the tile set                           //
+  ////////////////////////////////////////////////////////////////////
+  private void createTileImage(int level, int n)
+  {
+    tile[level][n] = AwtFrame.createTileImage(tileSet.getZoomLevel(level), n);
+    prepareImage(tile[level][n], this);
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -549,7 +708,16 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void drawTile(int n, int x, int y)
   {
-    logic_graphics.drawImage(tile[n], x, y, this);
+    frame.drawTile(n, x, y);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drawPixels                                       //
+  // Description:  See AwtFrame.drawPixels                          //
+  ////////////////////////////////////////////////////////////////////
+  public void drawPixels(int pix[], int w, int h, int x, int y)
+  {
+    frame.drawPixels(pix, w, h, x, y);
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -560,12 +728,11 @@ public class GameKit extends Applet
   ////////////////////////////////////////////////////////////////////
   public void copyBackground()
   {
-    copy_graphics.drawImage(logic_image, 0, 0, this);
+    frame.copyBackground();
   }
 
   public void restoreBackground()
   {
-    logic_graphics.drawImage(copy_image, 0, 0, this);
+    frame.restoreBackground();
   }
 }
-
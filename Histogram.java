@@ -0,0 +1,121 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Histogram.java                                        //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Counts how often values of each size were seen, so    //
+//            percentiles can be read off later.  Values 0-7 each   //
+//            get a bucket of their own; above that each power of   //
+//            two is split into 8 buckets, so a percentile is off   //
+//            by at most 1/8th.  Recording is a few atomic adds and //
+//            never blocks, and any thread may read while another   //
+//            records (a read taken mid-record may be one behind).  //
+//////////////////////////////////////////////////////////////////////
+
+import java.util.concurrent.atomic.*;
+
+class Histogram
+{
+  static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+  static final int BUCKETS = SUB + (63 - SUB_BITS) * SUB;
+
+  private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private AtomicLong count = new AtomicLong();
+  private AtomicLong sum = new AtomicLong();
+  private AtomicLong max = new AtomicLong();
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getBucket                                        //
+  //               getBucketLow - smallest value in a bucket        //
+  ////////////////////////////////////////////////////////////////////
+  static int  getBucket(long value)
+  {
+    if(value < SUB) return (int) value;
+    int exp = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB - 1);
+    return SUB + (exp - SUB_BITS) * SUB + sub;
+  }
+  static long getBucketLow(int bucket)
+  {
+    if(bucket < SUB) return bucket;
+    int k = bucket - SUB;
+    int exp = k / SUB + SUB_BITS;
+    return (long) (SUB + k % SUB) << (exp - SUB_BITS);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       record                                           //
+  // Arguments:    value - anything below 0 counts as 0             //
+  ////////////////////////////////////////////////////////////////////
+  public void record(long value)
+  {
+    if(value < 0) value = 0;
+    counts.incrementAndGet(getBucket(value));
+    sum.addAndGet(value);
+    count.incrementAndGet();
+
+    long m = max.get();
+    while(value > m && !max.compareAndSet(m, value)) m = max.get();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getCount                                         //
+  //               getSum                                           //
+  //               getMax                                           //
+  //               getMean                                          //
+  ////////////////////////////////////////////////////////////////////
+  public long   getCount()
+  {
+    return count.get();
+  }
+  public long   getSum()
+  {
+    return sum.get();
+  }
+  public long   getMax()
+  {
+    return max.get();
+  }
+  public double getMean()
+  {
+    long n = count.get();
+    return n==0 ? 0 : (double) sum.get() / n;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getPercentile                                    //
+  // Arguments:    p - 0 to 100                                     //
+  // Returns:      a value that about p% of the values were at or   //
+  //               below (the low end of its bucket, or the max)    //
+  ////////////////////////////////////////////////////////////////////
+  public long getPercentile(double p)
+  {
+    long total = 0;
+    int b;
+    for(b=0; b<BUCKETS; b++) total += counts.get(b);
+    if(total==0) return 0;
+
+    long rank = (long) Math.ceil(total * p / 100.0);
+    if(rank < 1) rank = 1;
+    long seen = 0;
+    for(b=0; b<BUCKETS; b++)
+    {
+      seen += counts.get(b);
+      if(seen >= rank) return Math.min(getBucketLow(b), max.get());
+    }
+    return max.get();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getBucketCounts                                  //
+  // Returns:      a copy of the count in each bucket               //
+  ////////////////////////////////////////////////////////////////////
+  public long[] getBucketCounts()
+  {
+    long copy[] = new long[BUCKETS];
+    for(int b=0; b<BUCKETS; b++) copy[b] = counts.get(b);
+    return copy;
+  }
+}
@@ -0,0 +1,177 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     InputQueue.java                                       //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  A fixed-size ring of timestamped key and mouse button //
+//            events.  The AWT thread adds events and the game      //
+//            thread takes them off once a tick, so a burst of      //
+//            clicks between two ticks is kept in order instead of  //
+//            each one overwriting the last.                        //
+//                                                                  //
+//            Exactly one thread may add and one thread may take.   //
+//            Neither side ever waits for the other: the adder only //
+//            writes "tail" and the taker only writes "head", and   //
+//            both are volatile, so an event's fields are visible   //
+//            to the taker once it sees the new tail.               //
+//                                                                  //
+//            When the ring is nearly full, new events are dropped  //
+//            before a mouse button's RELEASE can be: a slot is     //
+//            kept for the release of every button whose press was  //
+//            let in, so a button is never left down.               //
+//////////////////////////////////////////////////////////////////////
+
+class InputQueue
+{
+  //event types; KEY is a key pressed (again each time it repeats)
+  //and DRAG is the mouse moving with a button held
+  static final int KEY = 1, PRESS = 2, RELEASE = 3, DRAG = 4,
+                   KEY_RELEASE = 5;
+
+  //mouse buttons for PRESS and RELEASE events
+  static final int BUTTON1 = 1, BUTTON3 = 3;
+
+  //flags: modifier keys held at the time
+  static final int SHIFT = 1;
+
+  private int mask;             //capacity - 1
+  private int type[], code[], x[], y[], flags[];
+  private long when[];
+
+  //Events are numbered from the first one ever added.  Event k is
+  //stored at slot (k & mask); head is the oldest one not yet
+  //discarded and tail is the number of the next one to add.
+  private volatile long head, tail;
+
+  //events thrown away because the ring was full; adder only
+  private volatile int dropped;
+
+  //a bit (1 << button) for each button pressed and not yet
+  //released, as added; adder only
+  private int buttonsDown;
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  InputQueue                                       //
+  // Arguments:    capacity - number of events held; rounded up to  //
+  //                          a power of 2                          //
+  ////////////////////////////////////////////////////////////////////
+  public InputQueue(int capacity)
+  {
+    int size = 1;
+    while(size < capacity) size <<= 1;
+    mask = size - 1;
+    type = new int[size];
+    code = new int[size];
+    x = new int[size];
+    y = new int[size];
+    flags = new int[size];
+    when = new long[size];
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       add                                              //
+  // Arguments:    _type - KEY, KEY_RELEASE, PRESS, RELEASE or DRAG //
+  //               _code - key code or mouse button (0 for DRAG)    //
+  //               _x, _y - mouse position at the time              //
+  //               _flags - SHIFT if held                           //
+  //               _when - time of the event in milliseconds        //
+  // Returns:      false if the ring was full and the event was     //
+  //               dropped (never the RELEASE of a button whose     //
+  //               PRESS was added)                                 //
+  // Description:  Called by the adding thread only                 //
+  ////////////////////////////////////////////////////////////////////
+  public boolean add(int _type, int _code, int _x, int _y, int _flags,
+                     long _when)
+  {
+    long t = tail;
+    int down = buttonsDown;
+    if(_type==PRESS)        down |= 1 << _code;
+    else if(_type==RELEASE) down &= ~(1 << _code);
+
+    //leave room for the releases of the buttons still down after it
+    int room = mask + 1 - (int) (t - head);
+    if(room <= Integer.bitCount(down))
+    {
+      dropped++;
+      return false;
+    }
+    buttonsDown = down;
+    int slot = (int) t & mask;
+    type[slot] = _type;
+    code[slot] = _code;
+    x[slot] = _x;
+    y[slot] = _y;
+    flags[slot] = _flags;
+    when[slot] = _when;
+    tail = t + 1;     //publishes the event
+    return true;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       size                                             //
+  // Returns:      number of events waiting.  Events 0 to size()-1  //
+  //               stay put until discarded, however many more are  //
+  //               added meanwhile.                                 //
+  // Description:  This and the methods below are for the taking    //
+  //               thread only                                      //
+  ////////////////////////////////////////////////////////////////////
+  public int  size()
+  {
+    return (int) (tail - head);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getType                                          //
+  //               getCode                                          //
+  //               getX                                             //
+  //               getY                                             //
+  //               getFlags                                         //
+  //               getWhen                                          //
+  // Arguments:    n - which waiting event; 0 is the oldest         //
+  ////////////////////////////////////////////////////////////////////
+  public int  getType(int n)
+  {
+    return type[(int) (head + n) & mask];
+  }
+  public int  getCode(int n)
+  {
+    return code[(int) (head + n) & mask];
+  }
+  public int  getX(int n)
+  {
+    return x[(int) (head + n) & mask];
+  }
+  public int  getY(int n)
+  {
+    return y[(int) (head + n) & mask];
+  }
+  public int  getFlags(int n)
+  {
+    return flags[(int) (head + n) & mask];
+  }
+  public long getWhen(int n)
+  {
+    return when[(int) (head + n) & mask];
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       discard                                          //
+  // Arguments:    n - number of the oldest events to throw away,   //
+  //                   making room for new ones                     //
+  ////////////////////////////////////////////////////////////////////
+  public void discard(int n)
+  {
+    head = head + n;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getDropped                                       //
+  // Returns:      how many events were lost to a full ring         //
+  ////////////////////////////////////////////////////////////////////
+  public int  getDropped()
+  {
+    return dropped;
+  }
+}
@@ -0,0 +1,158 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     JobCheck.java                                         //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Checks the bookkeeping around jobs on a small         //
+//            headless map, one case at a time:                     //
+//                                                                  //
+//              java JobCheck                                       //
+//                                                                  //
+//            Each case prints what it found; it exits with status  //
+//            1 if any was wrong.                                   //
+//////////////////////////////////////////////////////////////////////
+
+class JobCheck
+{
+  static int failures;
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       check                                            //
+  // Arguments:    ok - whether it was right                        //
+  //               what - what was checked                          //
+  ////////////////////////////////////////////////////////////////////
+  static void check(boolean ok, String what)
+  {
+    System.out.println((ok ? "ok      " : "FAILED  ") + what);
+    if(!ok) failures++;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       makeMap                                          //
+  // Returns:      a new random 21x21 map with nothing queued       //
+  ////////////////////////////////////////////////////////////////////
+  static Map makeMap()
+  {
+    Map map = new Map(null, Map.DEFAULT_WIDTH, Map.DEFAULT_HEIGHT);
+    map.setSeed(1);
+    map.randomize();
+    return map;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       changeTile                                       //
+  // Arguments:    map - the site                                   //
+  //               i, j - tile to give a new Terrain, as a finished //
+  //                      job does                                  //
+  ////////////////////////////////////////////////////////////////////
+  static void changeTile(Map map, int i, int j)
+  {
+    map.setTerrain(i, j, Terrain.create("Dirt", i, j));
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       checkBlockedReuse                                //
+  // Description:  A blocked job let go through one tile, finished  //
+  //               and reused elsewhere isn't let go again by a     //
+  //               change to another tile it once waited on         //
+  ////////////////////////////////////////////////////////////////////
+  static void checkBlockedReuse()
+  {
+    Map map = makeMap();
+    JobQ jobQ = map.getJobQ();
+    BlockedJobs blocked = map.getBlockedJobs();
+
+    //a machine takes a fill and finds no dirt around it
+    JobItem fill = jobQ.claimJob(jobQ.addJob(JobQ.JOB_FILL, 5, 5, -1));
+    blocked.block(fill, 4, 4, 6, 6);
+    check(fill.blocked && blocked.getNumJobs()==1,
+          "fill at 5,5 held on the 3x3 tiles around it");
+
+    changeTile(map, 4, 4);
+    check(!fill.blocked && blocked.getNumJobs()==0
+          && jobQ.getNumJobs()==1,
+          "fill let go by a change at 4,4");
+    jobQ.finishJob(jobQ.claimJob(fill));
+
+    //the same JobItem comes back for a cut elsewhere, also held
+    JobItem cut = jobQ.claimJob(jobQ.addJob(JobQ.JOB_CUT, 15, 15, -1));
+    check(cut==fill, "finished fill's JobItem reused for a cut");
+    blocked.block(cut, 14, 14, 16, 16);
+
+    changeTile(map, 6, 6);
+    check(cut.blocked && blocked.getNumJobs()==1
+          && jobQ.getNumJobs()==0,
+          "cut at 15,15 still held after a change at 6,6");
+
+    changeTile(map, 16, 16);
+    check(!cut.blocked && blocked.getNumJobs()==0
+          && jobQ.getNumJobs()==1,
+          "cut let go by a change at 16,16");
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       checkBlockedCancel                               //
+  // Description:  A blocked job that is cancelled lets go of all   //
+  //               of its tiles, and can be reused                  //
+  ////////////////////////////////////////////////////////////////////
+  static void checkBlockedCancel()
+  {
+    Map map = makeMap();
+    JobQ jobQ = map.getJobQ();
+    BlockedJobs blocked = map.getBlockedJobs();
+
+    JobItem fill = jobQ.claimJob(jobQ.addJob(JobQ.JOB_FILL, 5, 5, -1));
+    blocked.block(fill, 4, 4, 6, 6);
+    check(map.cancelJobsAt(5, 5)==1 && !fill.blocked
+          && blocked.getNumJobs()==0,
+          "held fill at 5,5 cancelled");
+
+    JobItem cut = jobQ.claimJob(jobQ.addJob(JobQ.JOB_CUT, 15, 15, -1));
+    check(cut==fill, "cancelled fill's JobItem reused for a cut");
+    blocked.block(cut, 14, 14, 16, 16);
+
+    changeTile(map, 4, 6);
+    check(cut.blocked && blocked.getNumJobs()==1
+          && jobQ.getNumJobs()==0,
+          "cut at 15,15 still held after a change at 4,6");
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       checkRequeueAging                                //
+  // Description:  A job taken and put back keeps its place ahead   //
+  //               of jobs queued after it first was                //
+  ////////////////////////////////////////////////////////////////////
+  static void checkRequeueAging()
+  {
+    JobQ jobQ = makeMap().getJobQ();
+    JobItem old = jobQ.addJob(JobQ.JOB_FILL, 5, 5, -1);
+    long rank = old.rank, seq = old.seq;
+    int n;
+    for(n=0; n<10; n++) jobQ.nextTick();
+    JobItem young = jobQ.addJob(JobQ.JOB_FILL, 15, 15, -1);
+
+    jobQ.addJob(jobQ.claimJob(jobQ.findBestJob(JobQ.JOB_FILL)));
+    check(old.rank==rank && old.seq==seq,
+          "requeued fill kept the rank and order it was queued with");
+    check(jobQ.findBestJob(JobQ.JOB_FILL)==old
+          && jobQ.findBestJob(JobQ.JOB_FILL)!=young,
+          "requeued fill still ahead of one queued 10 ticks later");
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[])
+  {
+    checkBlockedReuse();
+    checkBlockedCancel();
+    checkRequeueAging();
+    if(failures > 0)
+    {
+      System.out.println(failures + " failed");
+      System.exit(1);
+    }
+  }
+}
@@ -18,6 +18,34 @@ class JobItem
   private int type, loc_i, loc_j, param;
   private JobItem nextItem;
 
+  //JobQ tick the job was last queued and taken on (see JobMetrics)
+  long queuedTick, claimedTick;
+
+  //JobScheduler step the job is part of, or null
+  PlanStep step;
+
+  //how soon JobQ hands it out (see JobQ.addJob); its place in the Q's
+  //heap for its type (-1 while not queued) and the job before it
+  int     priority;
+  long    deadline = -1;
+  long    rank, seq;
+  int     heapIndex = -1;
+  JobItem prevItem;
+
+  //true while held by BlockedJobs, with the tiles it waits on and
+  //the jobs before and after it in BlockedJobs' list
+  boolean blocked;
+  int     block_i0, block_j0, block_i1, block_j1;
+  JobItem blockedPrev, blockedNext;
+
+  //for a JOB_WAIT, the Hoe's load the truck is to take
+  Rendezvous rendezvous;
+
+  //JobQ's list of the jobs on the same tile, queued or taken; tile
+  //is j*width+i, or -1 while not listed
+  int     tile = -1;
+  JobItem tilePrev, tileNext;
+
   ////////////////////////////////////////////////////////////////////
   //  Constructor:  JobItem                                         //
   ////////////////////////////////////////////////////////////////////
@@ -31,7 +59,12 @@ class JobItem
 
   ////////////////////////////////////////////////////////////////////
   //  get/set methods                                               //
+  //  (getNextOnTile - next job on the same tile, see JobQ.getJobAt)//
   ////////////////////////////////////////////////////////////////////
+  public JobItem getNextOnTile()
+  {
+    return tileNext;
+  }
   public void setType(int n)
   {
     type = n;
@@ -75,38 +108,48 @@ class JobItem
   }
 
   ////////////////////////////////////////////////////////////////////
-  //  Method:       getDescription                                  //
+  //  Methods:      getDescription                                  //
+  //                appendDescription                               //
+  //  Arguments:    buf - where to append the description           //
   //  Returns:      String containing a description of this job     //
+  //  Description:  appendDescription makes no new String, for      //
+  //                callers that build the same text over and over  //
   ////////////////////////////////////////////////////////////////////
   public String getDescription()
   {
-    String st = new String();
+    StringBuffer buf = new StringBuffer(32);
+    appendDescription(buf);
+    return buf.toString();
+  }
+
+  public void appendDescription(StringBuffer buf)
+  {
     switch(type)
     {
     case JOB_CLEAR:
-      st += "JOB_CLEAR ";
+      buf.append("JOB_CLEAR ");
       break;
     case JOB_FILL:
-      st += "JOB_FILL ";
+      buf.append("JOB_FILL ");
       break;
     case JOB_CUT:
-      st += "JOB_CUT ";
+      buf.append("JOB_CUT ");
       break;
     case JOB_PAVE:
-      st += "JOB_PAVE ";
+      buf.append("JOB_PAVE ");
       break;
     case JOB_WAIT:
-      st += "JOB_WAIT ";
+      buf.append("JOB_WAIT ");
       break;
     case JOB_LEVEL:
-      st += "JOB_LEVEL ";
+      buf.append("JOB_LEVEL ");
       break;
     case JOB_ROLL:
-      st += "JOB_ROLL ";
+      buf.append("JOB_ROLL ");
       break;
     }
-    st += "(" + loc_i + ", " + loc_j + ") " + param;
-    return st;
+    buf.append('(').append(loc_i).append(", ").append(loc_j).append(") ");
+    buf.append(param);
   }
 }
 
@@ -0,0 +1,243 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     JobMetrics.java                                       //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Running totals for each kind of job in a JobQ, to     //
+//            show which kind the site is waiting on:               //
+//                                                                  //
+//              depth    - jobs of the kind in the queue, sampled   //
+//                         every tick                               //
+//              wait     - ticks from being queued to a machine     //
+//                         taking it                                //
+//              service  - ticks from being taken to being done     //
+//              requeues - jobs a machine took but couldn't start   //
+//                         (e.g. a fill with no flat dirt beside    //
+//                         it), put back once the ground around     //
+//                         them changed (see BlockedJobs)           //
+//                                                                  //
+//            The queue's thread records; anything else may read    //
+//            at any time.  Times are in ticks (1/10th second).     //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+class JobMetrics
+{
+  //job kinds, in bit order of the JobQ values
+  static final int TYPES = 7;
+  static final String TYPE_NAME[] =
+  {
+    "CLEAR", "FILL", "CUT", "PAVE", "ROLL", "WAIT", "LEVEL"
+  };
+
+  //machine that does each kind
+  static final String SERVED_BY[] =
+  {
+    "Grader", "Truck", "Hoe", "Truck", "Roller", "Truck", "Dozer"
+  };
+
+  private Histogram depth[]   = new Histogram[TYPES];
+  private Histogram wait[]    = new Histogram[TYPES];
+  private Histogram service[] = new Histogram[TYPES];
+  private AtomicLongArray curDepth  = new AtomicLongArray(TYPES);
+  private AtomicLongArray enqueued  = new AtomicLongArray(TYPES);
+  private AtomicLongArray completed = new AtomicLongArray(TYPES);
+  private AtomicLongArray requeued  = new AtomicLongArray(TYPES);
+  private AtomicLong      ticks     = new AtomicLong();
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  JobMetrics                                       //
+  ////////////////////////////////////////////////////////////////////
+  public JobMetrics()
+  {
+    for(int t=0; t<TYPES; t++)
+    {
+      depth[t] = new Histogram();
+      wait[t] = new Histogram();
+      service[t] = new Histogram();
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getIndex                                         //
+  // Arguments:    type - one JobQ job value, e.g. JobQ.JOB_FILL    //
+  // Returns:      0 to TYPES-1                                     //
+  ////////////////////////////////////////////////////////////////////
+  static int getIndex(int type)
+  {
+    return Integer.numberOfTrailingZeros(type) % TYPES;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      jobAdded                                         //
+  //               jobRequeued                                      //
+  //               jobRemoved                                       //
+  //               jobClaimed                                       //
+  //               jobCompleted                                     //
+  //               sampleDepth - called once a tick                 //
+  // Description:  Called by JobQ as jobs go through it             //
+  ////////////////////////////////////////////////////////////////////
+  void jobAdded(int type)
+  {
+    int t = getIndex(type);
+    enqueued.incrementAndGet(t);
+    curDepth.incrementAndGet(t);
+  }
+  void jobRequeued(int type)
+  {
+    int t = getIndex(type);
+    requeued.incrementAndGet(t);
+    curDepth.incrementAndGet(t);
+  }
+  void jobRemoved(int type)
+  {
+    curDepth.decrementAndGet(getIndex(type));
+  }
+  void jobClaimed(int type, long waitTicks)
+  {
+    wait[getIndex(type)].record(waitTicks);
+  }
+  void jobCompleted(int type, long serviceTicks)
+  {
+    int t = getIndex(type);
+    completed.incrementAndGet(t);
+    service[t].record(serviceTicks);
+  }
+  void sampleDepth()
+  {
+    for(int t=0; t<TYPES; t++) depth[t].record(curDepth.get(t));
+    ticks.incrementAndGet();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getDepth - histogram of the sampled depth        //
+  //               getWait                                          //
+  //               getService                                       //
+  //               getCurrentDepth                                  //
+  //               getEnqueued                                      //
+  //               getCompleted                                     //
+  //               getRequeued                                      //
+  //               getTicks - number of depth samples               //
+  // Arguments:    t - 0 to TYPES-1 (see getIndex)                  //
+  ////////////////////////////////////////////////////////////////////
+  public Histogram getDepth(int t)
+  {
+    return depth[t];
+  }
+  public Histogram getWait(int t)
+  {
+    return wait[t];
+  }
+  public Histogram getService(int t)
+  {
+    return service[t];
+  }
+  public long getCurrentDepth(int t)
+  {
+    return curDepth.get(t);
+  }
+  public long getEnqueued(int t)
+  {
+    return enqueued.get(t);
+  }
+  public long getCompleted(int t)
+  {
+    return completed.get(t);
+  }
+  public long getRequeued(int t)
+  {
+    return requeued.get(t);
+  }
+  public long getTicks()
+  {
+    return ticks.get();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getBottleneck                                    //
+  // Returns:      the kind with the most jobs waiting on average,  //
+  //               or -1 if nothing has waited.  By Little's law    //
+  //               that's where extra machines would help most.     //
+  ////////////////////////////////////////////////////////////////////
+  public int getBottleneck()
+  {
+    int best = -1;
+    double bestDepth = 0;
+    for(int t=0; t<TYPES; t++)
+    {
+      double d = depth[t].getMean();
+      if(d > bestDepth)
+      {
+        best = t;
+        bestDepth = d;
+      }
+    }
+    return best;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       write                                            //
+  // Arguments:    out - where to print the table                   //
+  // Description:  One line per kind of job that has been seen,     //
+  //               with the median / 95th percentile / max of each  //
+  //               histogram, then the bottleneck.  A bottleneck    //
+  //               whose jobs keep being requeued needs the ground  //
+  //               made ready rather than more machines.            //
+  ////////////////////////////////////////////////////////////////////
+  public void write(PrintStream out)
+  {
+    out.println("job    queued  done requeue  depth now/mean/max  "
+                + "wait p50/p95/max  service p50/p95/max");
+    for(int t=0; t<TYPES; t++)
+    {
+      if(enqueued.get(t)==0 && requeued.get(t)==0) continue;
+      out.println(pad(TYPE_NAME[t], 6)
+                  + padLeft(enqueued.get(t), 7)
+                  + padLeft(completed.get(t), 6)
+                  + padLeft(requeued.get(t), 8)
+                  + padLeft(curDepth.get(t), 7) + " "
+                  + pad(format(depth[t].getMean()) + "/"
+                        + depth[t].getMax(), 11)
+                  + pad(percentiles(wait[t]), 18)
+                  + percentiles(service[t]));
+    }
+    int b = getBottleneck();
+    if(b >= 0)
+    {
+      //requeued jobs are stuck, not short of machines
+      out.println("bottleneck: " + TYPE_NAME[b] + " (done by "
+                  + SERVED_BY[b] + ")"
+                  + (requeued.get(b) > completed.get(b)
+                     ? ", mostly requeued: can't be started" : ""));
+    }
+  }
+
+  static String percentiles(Histogram h)
+  {
+    return h.getPercentile(50) + "/" + h.getPercentile(95) + "/"
+           + h.getMax();
+  }
+
+  static String format(double d)
+  {
+    return Double.toString(Math.round(d * 10) / 10.0);
+  }
+
+  static String pad(String s, int width)
+  {
+    StringBuffer buf = new StringBuffer(s);
+    while(buf.length() < width) buf.append(' ');
+    return buf.toString();
+  }
+
+  static String padLeft(long n, int width)
+  {
+    StringBuffer buf = new StringBuffer(Long.toString(n));
+    while(buf.length() < width) buf.insert(0, ' ');
+    return buf.toString();
+  }
+}
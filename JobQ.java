@@ -9,18 +9,65 @@
 //            tail.  Machines will search through the Q to find     //
 //            the first job they can manage and then remove that    //
 //            job from the queue.                                   //
+//                                                                  //
+//            Each job also has a rank, and the jobs of each type   //
+//            are kept in a heap by rank so findBestJob can give a  //
+//            machine the most pressing job it can do without       //
+//            walking the Q.  The rank is the tick the job was      //
+//            queued on less AGING_TICKS for each level of          //
+//            priority, so a high priority job goes ahead of the    //
+//            last 30 seconds' worth of normal ones but no further: //
+//            a job waits at most AGING_TICKS per level above it    //
+//            however many urgent jobs keep coming.  A job with a   //
+//            deadline ranks by its deadline tick at least as if it //
+//            were urgent.  Jobs of the same rank go first come     //
+//            first served.                                         //
 //////////////////////////////////////////////////////////////////////
 
 class JobQ
 {
   static final int JOB_CLEAR=1, JOB_FILL=2, JOB_CUT=4, JOB_PAVE=8,
                                          JOB_ROLL=16, JOB_WAIT=32, JOB_LEVEL=64;
+  //the game calls nextTick() every 1/10th second
+  static final int TICKS_PER_SECOND = 10;
   static final int JOB_ANY =
     JOB_CLEAR | JOB_FILL | JOB_CUT | JOB_PAVE | JOB_ROLL | JOB_WAIT
     | JOB_LEVEL;
+
+  //priorities, and the head start in ticks each level gives a job
+  static final int PRIORITY_NORMAL = 0, PRIORITY_HIGH = 1,
+                   PRIORITY_URGENT = 2;
+  static final int AGING_TICKS = 30 * TICKS_PER_SECOND;
+
   private JobItem head, tail;
   private int numItems;
 
+  //jobs of each type (see JobMetrics.getIndex) by rank, best first
+  private JobItem heap[][] = new JobItem[JobMetrics.TYPES][16];
+  private int     heapSize[] = new int[JobMetrics.TYPES];
+  private long    nextSeq;
+
+  //idle machines parked on each type of job, most recent last.  A
+  //machine woken through one type stays on the others' lists until
+  //they are next woken (its waitBits keep it from being listed twice).
+  private Machine waiting[][] = new Machine[JobMetrics.TYPES][8];
+  private int     numWaiting[] = new int[JobMetrics.TYPES];
+
+  //new jobs of each type since beginBatch(), or null if not in one
+  private int     batchAdded[];
+
+  //finished jobs kept for reuse, linked through their nextItem
+  private JobItem freeList;
+
+  //the jobs on each tile from being added until they're finished,
+  //by j*width+i (see setMapSize); null if not set up
+  private JobItem tileJobs[];
+  private int     mapWidth, mapHeight;
+
+  //ticks counted by nextTick(); times in the metrics are in ticks
+  private long tick;
+  private JobMetrics metrics = new JobMetrics();
+
   ////////////////////////////////////////////////////////////////////
   //  Constructor:  JobQ                                            //
   ////////////////////////////////////////////////////////////////////
@@ -30,9 +77,24 @@ class JobQ
     numItems = 0;
   }
 
+  ////////////////////////////////////////////////////////////////////
+  //  Method:       setMapSize                                      //
+  //  Arguments:    width, height - of the map, in tiles            //
+  //  Description:  Sets up the index of jobs by tile, for getJobAt //
+  //                and the rest.  Jobs already queued aren't in it.//
+  ////////////////////////////////////////////////////////////////////
+  public void setMapSize(int width, int height)
+  {
+    mapWidth = width;
+    mapHeight = height;
+    tileJobs = new JobItem[width * height];
+  }
+
   ////////////////////////////////////////////////////////////////////
   //  Methods:      getFirstJob                                     //
   //                getNumJobs                                      //
+  //                getTick                                         //
+  //                getMetrics                                      //
   ////////////////////////////////////////////////////////////////////
   public JobItem getFirstJob()
   {
@@ -42,47 +104,196 @@ class JobQ
   {
     return numItems;
   }
+  public long    getTick()
+  {
+    return tick;
+  }
+  public JobMetrics getMetrics()
+  {
+    return metrics;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Method:       nextTick                                        //
+  //  Description:  Called once a tick by the map; counts the tick  //
+  //                and samples the queue depth                     //
+  ////////////////////////////////////////////////////////////////////
+  public void nextTick()
+  {
+    tick++;
+    metrics.sampleDepth();
+  }
 
   ////////////////////////////////////////////////////////////////////
   //  Method:       addJob                                          //
   //  Arguments:    type, i, j, param - parameters of job           //
-  //                OR job - new job object                         //
+  //                priority - PRIORITY_NORMAL, _HIGH or _URGENT    //
+  //                deadline - tick it should be started by, or -1  //
+  //                OR job - job being put back, keeping its        //
+  //                priority, deadline and the rank it was first    //
+  //                queued with, so its time out of the Q (taken,   //
+  //                blocked) still counts towards its aging         //
   //  Returns:      JobItem object that was added to Queue          //
   //  Description:  Creates a new JobItem object from the parameters//
   //                and adds it to end of Q.                        //
   ////////////////////////////////////////////////////////////////////
   public JobItem addJob(int type, int i, int j, int param)
   {
-    JobItem newItem = new JobItem(type, i, j, param);
-    if(head==null)
-    {
-      head = tail = newItem;
-    }
-    else
-    {
-      tail.setNextItem(newItem);
-      tail = newItem;
-    }
-    numItems++;
+    return addJob(type, i, j, param, PRIORITY_NORMAL, -1);
+  }
+
+  public JobItem addJob(int type, int i, int j, int param,
+                        int priority, long deadline)
+  {
+    JobItem newItem = newJob(type, i, j, param);
+    newItem.priority = priority;
+    newItem.deadline = deadline;
+    index(newItem);
+    link(newItem, tail);
+    rank(newItem);
+    metrics.jobAdded(type);
+    Events.jobEnqueued(newItem, false, numItems);
     return newItem;
   }
 
   public JobItem addJob(JobItem job)
   {
-    job.setNextItem(null);
-    if(head==null)
+    job.queuedTick = tick;
+    link(job, tail);
+    heapAdd(job);
+    metrics.jobRequeued(job.getType());
+    Events.jobEnqueued(job, true, numItems);
+    return job;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      beginBatch                                      //
+  //                endBatch                                        //
+  //  Description:  Jobs added between these (e.g. for an area the  //
+  //                player selected) go in as one batch: rather    //
+  //                than each waking a parked machine as it's      //
+  //                added, endBatch wakes as many for each type as //
+  //                there are new jobs of it, at most.  A new job  //
+  //                ranks behind everything already queued, so it  //
+  //                goes on the bottom of its heap without moving  //
+  //                and a batch of n jobs takes O(n).              //
+  ////////////////////////////////////////////////////////////////////
+  public void beginBatch()
+  {
+    batchAdded = new int[JobMetrics.TYPES];
+  }
+
+  public void endBatch()
+  {
+    int added[] = batchAdded;
+    batchAdded = null;
+    if(added==null) return;
+    for(int t=0; t<JobMetrics.TYPES; t++)
     {
-      head = tail = job;
+      for(int k=0; k<added[t] && numWaiting[t]>0; k++) wake(t);
     }
-    else
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      addJobOnce                                      //
+  //                getJobAt                                        //
+  //                findJobAt                                       //
+  //  Arguments:    type - a job type (any of them ORed for         //
+  //                       findJobAt)                               //
+  //                i, j - a tile                                   //
+  //                param - as for addJob                           //
+  //  Returns:      addJobOnce: the new job, or null if the tile    //
+  //                      already has one of that type              //
+  //                getJobAt: the first job on the tile, queued or  //
+  //                      taken by a machine (or held in            //
+  //                      BlockedJobs); JobItem.getNextOnTile gives //
+  //                      the rest                                  //
+  //                findJobAt: the first of those of the types      //
+  //  Description:  Looked up by tile, not by walking the Q; only   //
+  //                works once setMapSize has been called           //
+  ////////////////////////////////////////////////////////////////////
+  public JobItem addJobOnce(int type, int i, int j, int param)
+  {
+    if(findJobAt(type, i, j) != null) return null;
+    return addJob(type, i, j, param);
+  }
+
+  public JobItem getJobAt(int i, int j)
+  {
+    if(tileJobs==null || i<0 || i>=mapWidth || j<0 || j>=mapHeight)
     {
-      tail.setNextItem(job);
-      tail = job;
+      return null;
     }
-    numItems++;
+    return tileJobs[j*mapWidth + i];
+  }
+
+  public JobItem findJobAt(int type, int i, int j)
+  {
+    JobItem job = getJobAt(i, j);
+    while(job != null && (job.getType() & type) == 0) job = job.tileNext;
     return job;
   }
 
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      cancelJob                                       //
+  //                dropJob                                         //
+  //  Arguments:    job - a job still in the Q (cancelJob) or one   //
+  //                      BlockedJobs is letting go of (dropJob)    //
+  //  Returns:      cancelJob: false if it wasn't in the Q          //
+  //  Description:  Gives up on a job no machine has started.  A    //
+  //                JobScheduler step it was part of is counted as  //
+  //                done rather than tried again.  A job calling a  //
+  //                truck for a Hoe's load (see Rendezvous) is left //
+  //                alone; the Hoe is waiting on it.  A job given   //
+  //                up on is freed to be reused.                    //
+  ////////////////////////////////////////////////////////////////////
+  public boolean cancelJob(JobItem job)
+  {
+    if(job.rendezvous != null || removeJob(job) == null) return false;
+    dropJob(job);
+    return true;
+  }
+
+  void dropJob(JobItem job)
+  {
+    Log.log(Log.JOBS, Log.DEBUG, "JobQ", "cancelled job",
+            job.getI(), job.getJ());
+    JobScheduler.jobCancelled(job);
+    freeJob(job);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      index                                           //
+  //                unindex                                         //
+  //  Arguments:    job - new job, or one that's finished with      //
+  //  Description:  Put the job on the front of its tile's list or  //
+  //                take it off                                     //
+  ////////////////////////////////////////////////////////////////////
+  private void index(JobItem job)
+  {
+    int i = job.getI(), j = job.getJ();
+    if(tileJobs==null || i<0 || i>=mapWidth || j<0 || j>=mapHeight)
+    {
+      return;
+    }
+    int n = j*mapWidth + i;
+    job.tile = n;
+    job.tilePrev = null;
+    job.tileNext = tileJobs[n];
+    if(tileJobs[n] != null) tileJobs[n].tilePrev = job;
+    tileJobs[n] = job;
+  }
+
+  private void unindex(JobItem job)
+  {
+    if(job.tile < 0) return;
+    if(job.tilePrev == null) tileJobs[job.tile] = job.tileNext;
+    else                     job.tilePrev.tileNext = job.tileNext;
+    if(job.tileNext != null) job.tileNext.tilePrev = job.tilePrev;
+    job.tile = -1;
+    job.tilePrev = job.tileNext = null;
+  }
+
   ////////////////////////////////////////////////////////////////////
   //  Method:       insertJob                                       //
   //  Arguments:    afterItem - item to insert new job after        //
@@ -90,6 +301,8 @@ class JobQ
   //  Returns:      reference to inserted JobItem                   //
   //  Description:  Creates a new JobItem object from the           //
   //                parameters, inserts it after specified item in Q//
+  //                and ranks it level with that item.  (A priority //
+  //                on addJob is the better way to hurry a job.)    //
   ////////////////////////////////////////////////////////////////////
   public JobItem insertJob(JobItem afterItem, int type, int i, int j,
                            int param)
@@ -100,13 +313,194 @@ class JobQ
       return tail;
     }
 
-    JobItem newItem = new JobItem(type, i, j, param);
-    newItem.setNextItem(afterItem.getNextItem());
-    afterItem.setNextItem(newItem);
-    if(tail==afterItem) tail = newItem;
+    JobItem newItem = newJob(type, i, j, param);
+    newItem.priority = afterItem.priority;
+    newItem.deadline = afterItem.deadline;
+    index(newItem);
+    link(newItem, afterItem);
+    newItem.queuedTick = tick;
+    newItem.rank = afterItem.rank;
+    newItem.seq = afterItem.seq;
+    heapAdd(newItem);
+    metrics.jobAdded(type);
+    Events.jobEnqueued(newItem, false, numItems);
+    return newItem;
+  }
 
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      link                                            //
+  //                unlink                                          //
+  //                rank                                            //
+  //                setRank                                         //
+  //  Arguments:    job - job going into or out of the Q            //
+  //                prev - job to put it after, or null for head    //
+  //  Description:  link and unlink keep the list of jobs in queue  //
+  //                order; rank works out a new job's rank (setRank)//
+  //                and puts it in the heap for its type            //
+  ////////////////////////////////////////////////////////////////////
+  private void link(JobItem job, JobItem prev)
+  {
+    JobItem next = (prev==null) ? head : prev.getNextItem();
+    job.prevItem = prev;
+    job.setNextItem(next);
+    if(prev==null) head = job;
+    else           prev.setNextItem(job);
+    if(next==null) tail = job;
+    else           next.prevItem = job;
     numItems++;
-    return newItem;
+  }
+
+  private void unlink(JobItem job)
+  {
+    JobItem prev = job.prevItem, next = job.getNextItem();
+    if(prev==null) head = next;
+    else           prev.setNextItem(next);
+    if(next==null) tail = prev;
+    else           next.prevItem = prev;
+    job.prevItem = null;
+    job.setNextItem(null);
+    numItems--;
+  }
+
+  private void rank(JobItem job)
+  {
+    setRank(job);
+    heapAdd(job);
+  }
+
+  private void setRank(JobItem job)
+  {
+    job.queuedTick = tick;
+    job.rank = tick - (long) job.priority * AGING_TICKS;
+    if(job.deadline >= 0)
+    {
+      job.rank = Math.min(job.rank,
+                          job.deadline - PRIORITY_URGENT * AGING_TICKS);
+    }
+    job.seq = nextSeq++;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      heapAdd - and wakes a machine for it            //
+  //                heapRemove                                      //
+  //                siftUp                                          //
+  //                siftDown                                        //
+  //                isBefore - a goes ahead of b                    //
+  //  Description:  A binary heap of each type's jobs, best at 0.   //
+  //                Each job keeps its index so it can be taken out //
+  //                of the middle.                                  //
+  ////////////////////////////////////////////////////////////////////
+  private void heapAdd(JobItem job)
+  {
+    int t = JobMetrics.getIndex(job.getType());
+    JobItem h[] = heap[t];
+    if(heapSize[t]==h.length)
+    {
+      JobItem bigger[] = new JobItem[h.length*2];
+      System.arraycopy(h, 0, bigger, 0, h.length);
+      h = heap[t] = bigger;
+    }
+    int n = heapSize[t]++;
+    h[n] = job;
+    job.heapIndex = n;
+    siftUp(h, n);
+    if(batchAdded != null) batchAdded[t]++;
+    else                   wake(t);
+  }
+
+  private void heapRemove(JobItem job)
+  {
+    int t = JobMetrics.getIndex(job.getType());
+    JobItem h[] = heap[t];
+    int n = job.heapIndex;
+    int last = --heapSize[t];
+    job.heapIndex = -1;
+    if(n != last)
+    {
+      h[n] = h[last];
+      h[n].heapIndex = n;
+      h[last] = null;
+      siftDown(h, n, last);
+      siftUp(h, n);
+    }
+    else
+    {
+      h[last] = null;
+    }
+  }
+
+  private static void siftUp(JobItem h[], int n)
+  {
+    JobItem job = h[n];
+    while(n > 0)
+    {
+      int parent = (n-1) >> 1;
+      if(!isBefore(job, h[parent])) break;
+      h[n] = h[parent];
+      h[n].heapIndex = n;
+      n = parent;
+    }
+    h[n] = job;
+    job.heapIndex = n;
+  }
+
+  private static void siftDown(JobItem h[], int n, int size)
+  {
+    JobItem job = h[n];
+    for(;;)
+    {
+      int child = 2*n + 1;
+      if(child >= size) break;
+      if(child+1 < size && isBefore(h[child+1], h[child])) child++;
+      if(!isBefore(h[child], job)) break;
+      h[n] = h[child];
+      h[n].heapIndex = n;
+      n = child;
+    }
+    h[n] = job;
+    job.heapIndex = n;
+  }
+
+  static boolean isBefore(JobItem a, JobItem b)
+  {
+    if(a.rank != b.rank) return a.rank < b.rank;
+    return a.seq < b.seq;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      newJob                                          //
+  //                freeJob                                         //
+  //  Arguments:    type, i, j, param - parameters of job           //
+  //                job - a job that is finished with               //
+  //  Description:  newJob reuses a job given to freeJob if there   //
+  //                is one.  Only free a job once nothing refers to //
+  //                it any more (see Machine.finishJob).            //
+  ////////////////////////////////////////////////////////////////////
+  public JobItem newJob(int type, int i, int j, int param)
+  {
+    JobItem job = freeList;
+    if(job==null) return new JobItem(type, i, j, param);
+
+    freeList = job.getNextItem();
+    job.setNextItem(null);
+    job.step = null;
+    job.priority = PRIORITY_NORMAL;
+    job.deadline = -1;
+    job.blocked = false;
+    job.rendezvous = null;
+    job.setType(type);
+    job.setI(i);
+    job.setJ(j);
+    job.setParam(param);
+    return job;
+  }
+
+  public void freeJob(JobItem job)
+  {
+    if(job==null) return;
+    unindex(job);
+    job.setNextItem(freeList);
+    freeList = job;
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -133,6 +527,113 @@ class JobQ
     return null;
   }
 
+  ////////////////////////////////////////////////////////////////////
+  //  Method:       findBestJob                                     //
+  //  Arguments:    type - collection of one or more job types ORed //
+  //                       together                                 //
+  //  Returns:      the best ranked job of those types, or null     //
+  //  Description:  Looks only at the top of each type's heap       //
+  ////////////////////////////////////////////////////////////////////
+  public JobItem findBestJob(int type)
+  {
+    JobItem best = null;
+    for(int t=0; t<JobMetrics.TYPES; t++)
+    {
+      if((type & (1 << t)) == 0 || heapSize[t]==0) continue;
+      JobItem job = heap[t][0];
+      if(best==null || isBefore(job, best)) best = job;
+    }
+    return best;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      park                                            //
+  //                passOn                                          //
+  //                wake                                            //
+  //  Arguments:    m - idle machine that found nothing to do       //
+  //                type - job types it can do (park, passOn), or   //
+  //                       index of the type of a job just added    //
+  //                       (wake)                                   //
+  //  Description:  Idle machines park rather than search the Q     //
+  //                every tick; each job added wakes one machine    //
+  //                parked on its type.  If another machine takes   //
+  //                the job first, the woken one just parks again.  //
+  //                A machine taking a job calls passOn, which      //
+  //                wakes another for each of its types that still  //
+  //                has jobs (it may have been woken for one job    //
+  //                and taken another).                             //
+  ////////////////////////////////////////////////////////////////////
+  public void park(Machine m, int type)
+  {
+    m.parked = true;
+    m.parkTypes = type;
+    for(int t=0; t<JobMetrics.TYPES; t++)
+    {
+      int bit = 1 << t;
+      if((type & bit)==0 || (m.waitBits & bit)!=0) continue;
+      if(numWaiting[t]==waiting[t].length)
+      {
+        Machine bigger[] = new Machine[waiting[t].length*2];
+        System.arraycopy(waiting[t], 0, bigger, 0, waiting[t].length);
+        waiting[t] = bigger;
+      }
+      waiting[t][numWaiting[t]++] = m;
+      m.waitBits |= bit;
+    }
+  }
+
+  public void passOn(int type)
+  {
+    for(int t=0; t<JobMetrics.TYPES; t++)
+    {
+      if((type & (1 << t))!=0 && heapSize[t] > 0) wake(t);
+    }
+  }
+
+  private void wake(int t)
+  {
+    Machine list[] = waiting[t];
+    int n = numWaiting[t];
+    while(n > 0)
+    {
+      Machine m = list[--n];
+      list[n] = null;
+      m.waitBits &= ~(1 << t);
+      if(m.parked)
+      {
+        m.parked = false;
+        break;
+      }
+    }
+    numWaiting[t] = n;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Method:       findParked                                      //
+  //  Arguments:    type - a job type                               //
+  //                i, j - where the job is                         //
+  //  Returns:      the machine parked looking for that type of job //
+  //                that's closest to (i,j), or null if none are    //
+  ////////////////////////////////////////////////////////////////////
+  public Machine findParked(int type, int i, int j)
+  {
+    int t = JobMetrics.getIndex(type);
+    Machine best = null;
+    int bestTicks = 0;
+    for(int n=0; n<numWaiting[t]; n++)
+    {
+      Machine m = waiting[t][n];
+      if(!m.parked || (m.parkTypes & type)==0) continue;
+      int ticks = m.getTravelTicks(i, j);
+      if(best==null || ticks < bestTicks)
+      {
+        best = m;
+        bestTicks = ticks;
+      }
+    }
+    return best;
+  }
+
   ////////////////////////////////////////////////////////////////////
   //  Method:       removeJob                                       //
   //  Arguments:    item - JobItem object to remove from Q          //
@@ -141,32 +642,50 @@ class JobQ
   ////////////////////////////////////////////////////////////////////
   public JobItem removeJob(JobItem item)
   {
-    JobItem cur, prev=null;
-    for(cur=head; cur!=null; cur=cur.getNextItem())
-    {
-      if(cur==item)
-      {  //found the one to remove
-        if(cur==head)
-        {
-          head = head.getNextItem();
-          if(head==null) tail = null;
-        }
-        else if(cur==tail)
-        {
-          tail = prev;
-          tail.setNextItem(null);
-        }
-        else
-        {
-          //removing from middle of list
-          prev.setNextItem(cur.getNextItem());
-        }
-        numItems--;
-        return cur;
-      }
-      prev = cur;
-    }
-    return null;
+    if(item==null || item.heapIndex < 0) return null;   //not queued
+    unlink(item);
+    heapRemove(item);
+    metrics.jobRemoved(item.getType());
+    return item;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  //  Methods:      claimJob                                        //
+  //                finishJob                                       //
+  //                withdrawJob                                     //
+  //  Arguments:    job - job a machine is taking (from findJob,    //
+  //                      may be null) or has finished, or one in   //
+  //                      the Q that isn't wanted any more          //
+  //  Returns:      claimJob: the job, now out of the Q             //
+  //                withdrawJob: false if it wasn't in the Q        //
+  //  Description:  claimJob removes the job and records its wait;  //
+  //                finishJob records its service time, tells the   //
+  //                JobScheduler if it was planned, and frees it.   //
+  //                withdrawJob does the same for a job no machine  //
+  //                took, which has no service time to record.      //
+  ////////////////////////////////////////////////////////////////////
+  public JobItem claimJob(JobItem job)
+  {
+    if(removeJob(job)==null) return null;
+    job.claimedTick = tick;
+    metrics.jobClaimed(job.getType(), tick - job.queuedTick);
+    return job;
+  }
+
+  public void finishJob(JobItem job)
+  {
+    if(job==null) return;
+    metrics.jobCompleted(job.getType(), tick - job.claimedTick);
+    JobScheduler.jobFinished(job);
+    freeJob(job);
+  }
+
+  public boolean withdrawJob(JobItem job)
+  {
+    if(removeJob(job)==null) return false;
+    JobScheduler.jobFinished(job);
+    freeJob(job);
+    return true;
   }
 
   ////////////////////////////////////////////////////////////////////
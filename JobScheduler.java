@@ -0,0 +1,509 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     JobScheduler.java                                     //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Turns "make this tile (or area) a road" into all the  //
+//            jobs it takes and feeds them to the JobQ as soon as   //
+//            the jobs they depend on are done, so the player only  //
+//            has to ask once and the stages of different tiles     //
+//            overlap across the fleet.                             //
+//                                                                  //
+//            For each tile a plan makes a chain of PlanSteps:      //
+//                                                                  //
+//              CUT    if a corner is high                          //
+//              FILL   if a corner is low; done when the Dozer's    //
+//                     LEVEL is                                     //
+//              CLEAR  after the cut and fill                       //
+//              PAVE   (road only) after the clear; done when the   //
+//                     Roller's ROLL is                             //
+//                                                                  //
+//            A fill dumps its dirt on flat dirt next to the tile,  //
+//            so it also waits for the clears of flat neighbors in  //
+//            the plan (or clears one outside it if there are       //
+//            none), and a pave waits for the fills of its          //
+//            neighbors in case dirt was dumped on it.  Dirt only   //
+//            comes from cuts, so if the area has more low corners  //
+//            than high ones the plan also cuts the nearest high    //
+//            ground outside it (and fills the nearest low ground   //
+//            if it has more high).                                 //
+//                                                                  //
+//            A step's jobs and the jobs machines add on from them  //
+//            (a Hoe's WAIT, a Truck's LEVEL and ROLL) are linked   //
+//            to it.  When the last of them finishes the step is    //
+//            done unless the tile still needs it (a fill raises    //
+//            one corner at a time), in which case its job is       //
+//            queued again.  A step that isn't needed any more by   //
+//            the time it is released (say a neighbor's fill raised //
+//            the corner) is done at once without a job.            //
+//                                                                  //
+//            Steps on tiles next to the Depot or a road are queued //
+//            at high priority: every paving Truck comes from the   //
+//            Depot, so the road out of it is on the critical path  //
+//            of the whole plan.                                    //
+//////////////////////////////////////////////////////////////////////
+
+import java.util.ArrayList;
+
+class JobScheduler
+{
+  //what a plan should leave a tile as
+  static final int GOAL_DIRT = 1;   //level, cleared ground
+  static final int GOAL_ROAD = 2;   //paved and rolled
+
+  private Map  map;
+  private JobQ jobQ;
+  private int  numSteps;            //made but not yet done
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  JobScheduler                                     //
+  ////////////////////////////////////////////////////////////////////
+  public JobScheduler(Map _map, JobQ _jobQ)
+  {
+    map = _map;
+    jobQ = _jobQ;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getNumSteps                                      //
+  // Returns:      steps planned that aren't done yet               //
+  ////////////////////////////////////////////////////////////////////
+  public int getNumSteps()
+  {
+    return numSteps;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      planTile                                         //
+  //               planArea                                         //
+  // Arguments:    i, j - tile                                      //
+  //               i0, j0, i1, j1 - opposite corners of an area     //
+  //               goal - GOAL_DIRT or GOAL_ROAD                    //
+  // Description:  Plans the work and releases the first steps      //
+  ////////////////////////////////////////////////////////////////////
+  public void planTile(int i, int j, int goal)
+  {
+    planArea(i, j, i, j, goal);
+  }
+
+  public void planArea(int i0, int j0, int i1, int j1, int goal)
+  {
+    int iMin = Math.max(0, Math.min(i0, i1));
+    int iMax = Math.min(map.WIDTH-1, Math.max(i0, i1));
+    int jMin = Math.max(0, Math.min(j0, j1));
+    int jMax = Math.min(map.HEIGHT-1, Math.max(j0, j1));
+    if(iMin > iMax || jMin > jMax) return;
+    int w = iMax - iMin + 1, h = jMax - jMin + 1;
+
+    //steps of each tile in the area (null where not needed)
+    PlanStep cut[][]   = new PlanStep[w][h];
+    PlanStep fill[][]  = new PlanStep[w][h];
+    PlanStep clear[][] = new PlanStep[w][h];
+    ArrayList<PlanStep> made = new ArrayList<PlanStep>();
+    int i, j, di, dj;
+
+    //cut, fill and clear of each tile
+    for(j=0; j<h; j++)
+    {
+      for(i=0; i<w; i++)
+      {
+        Terrain t = map.getTerrain(iMin+i, jMin+j);
+        if(t.getType()=="Depot") continue;
+        if(countCorners(iMin+i, jMin+j, 2) > 0)
+        {
+          cut[i][j] = newStep(made, JobQ.JOB_CUT, iMin+i, jMin+j);
+        }
+        if(countCorners(iMin+i, jMin+j, 0) > 0)
+        {
+          //the Dozer raises whichever corner of the tile is low, so
+          //tiles sharing a corner take turns; that way no load goes
+          //on a corner another fill has already raised
+          fill[i][j] = newStep(made, JobQ.JOB_FILL, iMin+i, jMin+j);
+          if(i>0)        fill[i][j].dependOn(fill[i-1][j]);
+          if(j>0)
+          {
+            if(i>0)      fill[i][j].dependOn(fill[i-1][j-1]);
+            fill[i][j].dependOn(fill[i][j-1]);
+            if(i<w-1)    fill[i][j].dependOn(fill[i+1][j-1]);
+          }
+        }
+        if(t.getType()=="Grass" || cut[i][j]!=null || fill[i][j]!=null)
+        {
+          clear[i][j] = newStep(made, JobQ.JOB_CLEAR, iMin+i, jMin+j);
+          clear[i][j].dependOn(cut[i][j]);
+          clear[i][j].dependOn(fill[i][j]);
+        }
+      }
+    }
+
+    //fills wait for somewhere to dump: the clears of flat neighbors
+    for(j=0; j<h; j++)
+    {
+      for(i=0; i<w; i++)
+      {
+        if(fill[i][j] == null) continue;
+        boolean dumpSite = false;
+        for(dj=-1; dj<=1; dj++)
+        {
+          for(di=-1; di<=1; di++)
+          {
+            if(di==0 && dj==0) continue;
+            int ni = i+di, nj = j+dj;
+            Terrain n = map.getTerrain(iMin+ni, jMin+nj);
+            if(n==null || !n.isFlat()) continue;
+            if(ni>=0 && ni<w && nj>=0 && nj<h && clear[ni][nj]!=null)
+            {
+              fill[i][j].dependOn(clear[ni][nj]);
+              dumpSite = true;
+            }
+            else if(n.getType()=="Dirt")
+            {
+              dumpSite = true;
+            }
+          }
+        }
+        if(!dumpSite)
+        {
+          fill[i][j].dependOn(clearOutside(made, iMin+i, jMin+j));
+        }
+      }
+    }
+
+    balance(made, iMin, jMin, iMax, jMax);
+
+    //paves follow the clear and any dirt dumped from next door
+    if(goal==GOAL_ROAD)
+    {
+      int numMade = made.size();
+      for(j=0; j<h; j++)
+      {
+        for(i=0; i<w; i++)
+        {
+          Terrain t = map.getTerrain(iMin+i, jMin+j);
+          if(t.getType()=="Depot" || t.getType()=="Road") continue;
+          PlanStep pave = newStep(made, JobQ.JOB_PAVE, iMin+i, jMin+j);
+          pave.dependOn(clear[i][j]);
+          for(int n=0; n<numMade; n++)
+          {
+            PlanStep f = made.get(n);
+            if(f.type==JobQ.JOB_FILL && Math.abs(f.i - pave.i) <= 1
+                && Math.abs(f.j - pave.j) <= 1)
+            {
+              pave.dependOn(f);
+            }
+          }
+        }
+      }
+    }
+
+    for(int n=0; n<made.size(); n++)
+    {
+      PlanStep step = made.get(n);
+      if(isNextToAccess(step.i, step.j))
+      {
+        step.priority = JobQ.PRIORITY_HIGH;
+      }
+    }
+
+    numSteps += made.size();
+    Log.log(Log.JOBS, Log.DEBUG, "JobScheduler", "planned steps",
+            made.size(), goal);
+
+    //the first steps are picked out before any is released: one that
+    //isn't needed is done at once and releases its dependents, which
+    //would otherwise be seen waiting on nothing and released again
+    ArrayList<PlanStep> first = new ArrayList<PlanStep>();
+    for(int n=0; n<made.size(); n++)
+    {
+      PlanStep step = made.get(n);
+      if(step.waitingOn==0) first.add(step);
+    }
+    for(int n=0; n<first.size(); n++) release(first.get(n));
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       newStep                                          //
+  // Arguments:    made - list of the plan's steps to add it to     //
+  //               type, i, j - the job                             //
+  ////////////////////////////////////////////////////////////////////
+  private PlanStep newStep(ArrayList<PlanStep> made, int type, int i, int j)
+  {
+    PlanStep step = new PlanStep(this, type, i, j);
+    made.add(step);
+    return step;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       clearOutside                                     //
+  // Arguments:    i, j - tile to be filled                         //
+  // Returns:      a step clearing a flat grassy neighbor for the   //
+  //               fill to dump on, or null if there isn't one      //
+  ////////////////////////////////////////////////////////////////////
+  private PlanStep clearOutside(ArrayList<PlanStep> made, int i, int j)
+  {
+    Terrain n = findGrass(i, j);
+    if(n==null) return null;
+    return newStep(made, JobQ.JOB_CLEAR, n.getI(), n.getJ());
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       balance                                          //
+  // Arguments:    made - the plan's steps so far                   //
+  //               iMin, jMin, iMax, jMax - the area                //
+  // Description:  Each high corner cut gives a Truck one load and  //
+  //               each low corner takes one, and a loaded Truck    //
+  //               with nowhere to dump (or a fill with no loaded   //
+  //               Truck) waits forever.  So if the area's corners  //
+  //               don't balance, cuts or fills are added on the    //
+  //               nearest grass or dirt outside it until they do.  //
+  ////////////////////////////////////////////////////////////////////
+  private void balance(ArrayList<PlanStep> made, int iMin, int jMin,
+                       int iMax, int jMax)
+  {
+    boolean used[][] = new boolean[map.WIDTH+1][map.HEIGHT+1];
+    int loads = 0, ci, cj;
+    for(cj=jMin; cj<=jMax+1; cj++)
+    {
+      for(ci=iMin; ci<=iMax+1; ci++)
+      {
+        used[ci][cj] = true;
+        loads += getLoads(ci, cj);
+      }
+    }
+
+    int maxR = Math.max(map.WIDTH, map.HEIGHT);
+    for(int r=1; loads!=0 && r<maxR; r++)
+    {
+      for(int j=jMin-r; loads!=0 && j<=jMax+r; j++)
+      {
+        for(int i=iMin-r; loads!=0 && i<=iMax+r; i++)
+        {
+          //tiles r away from the area
+          if(j>jMin-r && j<jMax+r && i>iMin-r && i<iMax+r) continue;
+          Terrain t = map.getTerrain(i, j);
+          if(t==null
+              || (t.getType()!="Grass" && t.getType()!="Dirt"))
+          {
+            continue;
+          }
+
+          //only take tiles that all go the way that's needed and no
+          //further, and whose corners aren't already counted
+          int gain = 0;
+          boolean fits = true;
+          for(cj=j; cj<=j+1; cj++)
+          {
+            for(ci=i; ci<=i+1; ci++)
+            {
+              int l = getLoads(ci, cj);
+              if(l==0) continue;
+              if(used[ci][cj] || (l>0) == (loads>0)) fits = false;
+              gain += l;
+            }
+          }
+          if(!fits || gain==0 || Math.abs(gain) > Math.abs(loads))
+          {
+            continue;
+          }
+          if(gain < 0 && !hasDumpSite(i, j) && findGrass(i, j)==null)
+          {
+            continue;
+          }
+
+          for(cj=j; cj<=j+1; cj++)
+          {
+            for(ci=i; ci<=i+1; ci++) used[ci][cj] = true;
+          }
+          loads += gain;
+          if(gain > 0)
+          {
+            newStep(made, JobQ.JOB_CUT, i, j);
+          }
+          else
+          {
+            PlanStep f = newStep(made, JobQ.JOB_FILL, i, j);
+            if(!hasDumpSite(i, j)) f.dependOn(clearOutside(made, i, j));
+          }
+        }
+      }
+    }
+
+    if(loads != 0)
+    {
+      Log.log(Log.JOBS, Log.WARN, "JobScheduler",
+              "can't balance cut and fill; loads over", loads, 0);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getLoads                                         //
+  // Returns:      loads of dirt corner (i,j) gives if cut (1),     //
+  //               takes if filled (-1), or 0 if it's level         //
+  ////////////////////////////////////////////////////////////////////
+  private int getLoads(int i, int j)
+  {
+    int e = map.getElevation(i, j);
+    return (e==2) ? 1 : (e==0) ? -1 : 0;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      hasDumpSite - flat dirt next to tile (i,j)?      //
+  //               findGrass - flat grass next to it, or null       //
+  ////////////////////////////////////////////////////////////////////
+  private boolean hasDumpSite(int i, int j)
+  {
+    for(int dj=-1; dj<=1; dj++)
+    {
+      for(int di=-1; di<=1; di++)
+      {
+        Terrain n = map.getTerrain(i+di, j+dj);
+        if((di!=0 || dj!=0) && n!=null && n.isFlat()
+            && n.getType()=="Dirt")
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private Terrain findGrass(int i, int j)
+  {
+    for(int dj=-1; dj<=1; dj++)
+    {
+      for(int di=-1; di<=1; di++)
+      {
+        Terrain n = map.getTerrain(i+di, j+dj);
+        if(n!=null && n.isFlat() && n.getType()=="Grass") return n;
+      }
+    }
+    return null;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       isNextToAccess                                   //
+  // Returns:      true if tile (i,j) touches the Depot or a road   //
+  ////////////////////////////////////////////////////////////////////
+  private boolean isNextToAccess(int i, int j)
+  {
+    for(int dj=-1; dj<=1; dj++)
+    {
+      for(int di=-1; di<=1; di++)
+      {
+        Terrain n = map.getTerrain(i+di, j+dj);
+        if((di!=0 || dj!=0) && n!=null
+            && (n.getType()=="Depot" || n.getType()=="Road"))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       countCorners                                     //
+  // Returns:      how many corners of tile (i,j) are at height e   //
+  ////////////////////////////////////////////////////////////////////
+  private int countCorners(int i, int j, int e)
+  {
+    int n = 0;
+    if(map.getElevation(i,   j)   == e) n++;
+    if(map.getElevation(i+1, j)   == e) n++;
+    if(map.getElevation(i+1, j+1) == e) n++;
+    if(map.getElevation(i,   j+1) == e) n++;
+    return n;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       isNeeded                                         //
+  // Returns:      false if the step's work is done, whether by its //
+  //               own jobs or some other way                       //
+  ////////////////////////////////////////////////////////////////////
+  private boolean isNeeded(PlanStep step)
+  {
+    Terrain t = map.getTerrain(step.i, step.j);
+    switch(step.type)
+    {
+    case JobQ.JOB_CUT:
+      return countCorners(step.i, step.j, 2) > 0;
+    case JobQ.JOB_FILL:
+      return countCorners(step.i, step.j, 0) > 0;
+    case JobQ.JOB_CLEAR:
+      return t.getType()=="Grass";
+    case JobQ.JOB_PAVE:
+      return t.getType()=="Dirt" && t.isFlat();
+    }
+    return false;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       release                                          //
+  // Description:  Queues the job of a step whose prerequisites are //
+  //               all done, or finishes it if it isn't needed      //
+  ////////////////////////////////////////////////////////////////////
+  private void release(PlanStep step)
+  {
+    if(!isNeeded(step))
+    {
+      stepDone(step);
+      return;
+    }
+    link(jobQ.addJob(step.type, step.i, step.j, -1, step.priority, -1),
+         step);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      link                                             //
+  //               jobFinished                                      //
+  //               jobCancelled                                     //
+  // Arguments:    job - a job of a step (or added on from one)     //
+  // Description:  JobQ calls jobFinished as each linked job is     //
+  //               done; with the last one the step is released     //
+  //               again, which finishes it if it's all done        //
+  //               (jobCancelled as each is given up on; with the   //
+  //               last one the step is counted done, not retried)  //
+  ////////////////////////////////////////////////////////////////////
+  static void link(JobItem job, PlanStep step)
+  {
+    if(step == null) return;
+    job.step = step;
+    step.pending++;
+  }
+
+  static void jobFinished(JobItem job)
+  {
+    PlanStep step = job.step;
+    job.step = null;
+    if(step != null && --step.pending == 0)
+    {
+      step.owner.release(step);
+    }
+  }
+
+  static void jobCancelled(JobItem job)
+  {
+    PlanStep step = job.step;
+    job.step = null;
+    if(step != null && --step.pending == 0)
+    {
+      step.owner.stepDone(step);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       stepDone                                         //
+  // Description:  Releases each step that was waiting only on this //
+  ////////////////////////////////////////////////////////////////////
+  private void stepDone(PlanStep step)
+  {
+    numSteps--;
+    for(int n=0; n<step.dependents.size(); n++)
+    {
+      PlanStep d = step.dependents.get(n);
+      if(--d.waitingOn == 0) release(d);
+    }
+  }
+}
@@ -0,0 +1,374 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Log.java                                              //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Debug logging that any thread can call without       //
+//            waiting.  Messages go into a fixed ring and a         //
+//            background thread passes them on to the LogSinks      //
+//            (the log window, a file) a batch at a time.  If the   //
+//            ring fills up, new messages are counted and dropped   //
+//            rather than holding up the caller.  The thread starts //
+//            with the class, and until a sink is added (as in the  //
+//            headless tools) messages go to System.err.            //
+//                                                                  //
+//            Each subsystem has its own level, so e.g. machine     //
+//            tracing can be turned on by itself with               //
+//            Log.configure("machine=trace").  Messages below the   //
+//            level cost one array lookup.  The forms that take     //
+//            two ints build no strings unless the message is       //
+//            actually written out; callers that build a message    //
+//            themselves check isEnabled() first.                   //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.*;
+
+class Log
+{
+  //levels; a message is kept if its level <= its subsystem's level
+  static final int OFF = -1, ERROR = 0, WARN = 1, INFO = 2, DEBUG = 3,
+                   TRACE = 4;
+  static final String LEVEL_NAME[] =
+  {
+    "error", "warn", "info", "debug", "trace"
+  };
+
+  //subsystems
+  static final int GAME = 0, MAP = 1, MACHINE = 2, JOBS = 3, LOADER = 4,
+                   RENDER = 5, INPUT = 6;
+  static final String SUBSYSTEM_NAME[] =
+  {
+    "game", "map", "machine", "jobs", "loader", "render", "input"
+  };
+
+  //number of messages the ring holds
+  static final int CAPACITY = 4096;
+
+  //how often the drain thread wakes up, in milliseconds
+  static final int DRAIN_INTERVAL = 50;
+
+  //current level of each subsystem
+  private static volatile int level[] = new int[SUBSYSTEM_NAME.length];
+
+  //The ring.  Message k goes in slot (k & MASK).  A slot's sequence
+  //number is k while it is free for message k, becomes k+1 once
+  //message k is written, and k+CAPACITY once it has been read.
+  private static final int MASK = CAPACITY - 1;
+  private static AtomicLongArray sequence = new AtomicLongArray(CAPACITY);
+  private static long    time[]      = new long[CAPACITY];
+  private static int     subsystem[] = new int[CAPACITY];
+  private static int     msgLevel[]  = new int[CAPACITY];
+  private static String  who[]       = new String[CAPACITY];
+  private static String  text[]      = new String[CAPACITY];
+  private static boolean hasArgs[]   = new boolean[CAPACITY];
+  private static int     argA[]      = new int[CAPACITY];
+  private static int     argB[]      = new int[CAPACITY];
+
+  private static AtomicLong    tail = new AtomicLong();   //next to claim
+  private static long          head;                      //next to read
+  private static AtomicInteger dropped = new AtomicInteger();
+  private static int           droppedReported;
+
+  private static ArrayList<LogSink> sinks = new ArrayList<LogSink>();
+  private static Thread             drainThread;
+
+  //where messages go while there are no sinks
+  private static ArrayList<LogSink> stderr = new ArrayList<LogSink>();
+
+  static
+  {
+    int n;
+    for(n=0; n<CAPACITY; n++) sequence.set(n, n);
+    for(n=0; n<level.length; n++) level[n] = INFO;
+    stderr.add(new LogFile(new OutputStreamWriter(System.err)));
+    startDrain();
+
+    //settings from the command line, if we are allowed to look
+    try
+    {
+      String spec = System.getProperty("foreman.log");
+      if(spec != null) configure(spec);
+      String file = System.getProperty("foreman.logfile");
+      if(file != null) addSink(new LogFile(file));
+    }
+    catch(SecurityException e)
+    {
+      //running as an applet
+    }
+    catch(IOException e)
+    {
+      log(GAME, ERROR, "Can't open log file: " + e);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      setLevel                                         //
+  //               getLevel                                         //
+  //               isEnabled                                        //
+  // Arguments:    _subsystem - GAME, MAP, etc.                     //
+  //               _level - OFF, ERROR ... TRACE                    //
+  ////////////////////////////////////////////////////////////////////
+  static public synchronized void setLevel(int _subsystem, int _level)
+  {
+    int newLevel[] = level.clone();
+    newLevel[_subsystem] = _level;
+    level = newLevel;
+  }
+  static public int  getLevel(int _subsystem)
+  {
+    return level[_subsystem];
+  }
+  static public boolean isEnabled(int _subsystem, int _level)
+  {
+    return _level <= level[_subsystem];
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       configure                                        //
+  // Arguments:    spec - e.g. "machine=trace,jobs=debug" or        //
+  //                      "all=warn"; unknown names are ignored     //
+  ////////////////////////////////////////////////////////////////////
+  static public void configure(String spec)
+  {
+    java.util.StringTokenizer st = new java.util.StringTokenizer(spec, ",");
+    while(st.hasMoreTokens())
+    {
+      String item = st.nextToken().trim().toLowerCase();
+      int eq = item.indexOf('=');
+      if(eq < 0) continue;
+      String name = item.substring(0, eq).trim();
+      String value = item.substring(eq+1).trim();
+
+      int newLevel = OFF - 1, n;
+      if(value.equals("off")) newLevel = OFF;
+      for(n=0; n<LEVEL_NAME.length; n++)
+      {
+        if(value.equals(LEVEL_NAME[n])) newLevel = n;
+      }
+      if(newLevel < OFF) continue;
+
+      for(n=0; n<SUBSYSTEM_NAME.length; n++)
+      {
+        if(name.equals("all") || name.equals(SUBSYSTEM_NAME[n]))
+        {
+          setLevel(n, newLevel);
+        }
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       startDrain                                       //
+  // Description:  Starts the drain thread, and drains once more as //
+  //               the JVM exits if we are allowed to ask           //
+  ////////////////////////////////////////////////////////////////////
+  private static void startDrain()
+  {
+    drainThread = new Thread("Log")
+    {
+      public void run()
+      {
+        while(true)
+        {
+          try
+          {
+            Thread.sleep(DRAIN_INTERVAL);
+          }
+          catch(InterruptedException e)
+          {
+            //drain early
+          }
+          drain();
+        }
+      }
+    };
+    drainThread.setDaemon(true);
+    drainThread.start();
+
+    try
+    {
+      Runtime.getRuntime().addShutdownHook(new Thread("Log")
+      {
+        public void run()
+        {
+          drain();
+        }
+      });
+    }
+    catch(SecurityException e)
+    {
+      //running as an applet
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      addSink                                          //
+  //               removeSink                                       //
+  // Description:  Once there is a sink, messages stop going to     //
+  //               System.err                                       //
+  ////////////////////////////////////////////////////////////////////
+  static public synchronized void addSink(LogSink sink)
+  {
+    sinks.add(sink);
+  }
+  static public synchronized void removeSink(LogSink sink)
+  {
+    sinks.remove(sink);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      log                                              //
+  // Arguments:    _subsystem, _level - see above                   //
+  //               msg - the message                                //
+  //               _who - what it's about, e.g. Machine.getType()   //
+  //               a, b - numbers to add, e.g. a tile's (i,j)       //
+  // Description:  The second form comes out as "who msg (a,b)"     //
+  ////////////////////////////////////////////////////////////////////
+  static public void log(int _subsystem, int _level, String msg)
+  {
+    if(_level > level[_subsystem]) return;
+    add(_subsystem, _level, null, msg, false, 0, 0);
+  }
+
+  static public void log(int _subsystem, int _level, String _who,
+                         String msg, int a, int b)
+  {
+    if(_level > level[_subsystem]) return;
+    add(_subsystem, _level, _who, msg, true, a, b);
+  }
+
+  private static void add(int _subsystem, int _level, String _who,
+                          String msg, boolean args, int a, int b)
+  {
+    long pos;
+    int slot;
+    while(true)
+    {
+      pos = tail.get();
+      slot = (int) pos & MASK;
+      long diff = sequence.get(slot) - pos;
+      if(diff < 0)
+      {
+        dropped.incrementAndGet();   //ring is full
+        return;
+      }
+      if(diff == 0 && tail.compareAndSet(pos, pos+1)) break;
+    }
+    time[slot] = System.currentTimeMillis();
+    subsystem[slot] = _subsystem;
+    msgLevel[slot] = _level;
+    who[slot] = _who;
+    text[slot] = msg;
+    hasArgs[slot] = args;
+    argA[slot] = a;
+    argB[slot] = b;
+    sequence.set(slot, pos+1);      //publishes the message
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drain                                            //
+  // Description:  Passes every waiting message to the sinks.       //
+  //               Called by the drain thread; call it directly to  //
+  //               make sure everything so far is written, e.g.     //
+  //               before exiting.                                  //
+  ////////////////////////////////////////////////////////////////////
+  static public synchronized void drain()
+  {
+    ArrayList<LogSink> sinks = Log.sinks.isEmpty() ? stderr : Log.sinks;
+    int n, count = 0;
+    while(true)
+    {
+      int slot = (int) head & MASK;
+      if(sequence.get(slot) != head+1) break;   //nothing more written
+
+      String line = text[slot];
+      if(who[slot] != null) line = who[slot] + " " + line;
+      if(hasArgs[slot]) line += " (" + argA[slot] + "," + argB[slot] + ")";
+      for(n=0; n<sinks.size(); n++)
+      {
+        sinks.get(n).write(time[slot], subsystem[slot], msgLevel[slot],
+                           line);
+      }
+      who[slot] = null;
+      text[slot] = null;
+      sequence.set(slot, head + CAPACITY);   //free for reuse
+      head++;
+      count++;
+    }
+
+    int lost = dropped.get();
+    if(lost != droppedReported)
+    {
+      String line = (lost - droppedReported) + " log messages dropped";
+      for(n=0; n<sinks.size(); n++)
+      {
+        sinks.get(n).write(System.currentTimeMillis(), GAME, WARN, line);
+      }
+      droppedReported = lost;
+      count++;
+    }
+
+    if(count > 0)
+    {
+      for(n=0; n<sinks.size(); n++) sinks.get(n).flush();
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getDropped                                       //
+  // Returns:      number of messages lost to a full ring so far    //
+  ////////////////////////////////////////////////////////////////////
+  static public int getDropped()
+  {
+    return dropped.get();
+  }
+}
+
+//////////////////////////////////////////////////////////////////////
+//  Class:    LogFile                                               //
+//  Purpose:  A LogSink that appends every message to a text file   //
+//            (or a stream, such as System.err)                     //
+//////////////////////////////////////////////////////////////////////
+class LogFile implements LogSink
+{
+  private Writer out;
+
+  public LogFile(String filename) throws IOException
+  {
+    this(new FileWriter(filename, true));
+  }
+
+  public LogFile(Writer _out)
+  {
+    out = new BufferedWriter(_out, 65536);
+  }
+
+  public void write(long time, int subsystem, int level, String text)
+  {
+    try
+    {
+      out.write(time + " " + Log.LEVEL_NAME[level] + " "
+                + Log.SUBSYSTEM_NAME[subsystem] + ": " + text);
+      out.write('\n');
+    }
+    catch(IOException e)
+    {
+      //nowhere left to report it
+    }
+  }
+
+  public void flush()
+  {
+    try
+    {
+      out.flush();
+    }
+    catch(IOException e)
+    {
+    }
+  }
+}
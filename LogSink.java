@@ -0,0 +1,28 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     LogSink.java                                          //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Somewhere the Log sends its messages, e.g. the log    //
+//            window or a file.  Only ever called from the Log's    //
+//            own drain thread, one message at a time.              //
+//////////////////////////////////////////////////////////////////////
+
+interface LogSink
+{
+  ////////////////////////////////////////////////////////////////////
+  // Method:       write                                            //
+  // Arguments:    time - when it was logged (System millis)        //
+  //               subsystem, level - see Log                       //
+  //               text - the message                               //
+  ////////////////////////////////////////////////////////////////////
+  void write(long time, int subsystem, int level, String text);
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       flush                                            //
+  // Description:  Called after each batch of writes                //
+  ////////////////////////////////////////////////////////////////////
+  void flush();
+}
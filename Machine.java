@@ -18,6 +18,14 @@ abstract class Machine
   final int ACTION_NONE=0, ACTION_MOVE=1;
   final int MOVE_DECIDE=0, MOVE_TO_EDGE=1, MOVE_TO_CENTER=2,
                                         TURN_45_CW=3, TURN_45_CCW=4;
+  //ticks to cross one tile (to the edge and on to the center) and
+  //to make one 45 degree turn, at 10% of the way per tick
+  static final int TICKS_PER_TILE = 20, TICKS_PER_TURN = 10;
+  //most jobs a Grader or Roller takes on one sweep, and how far from
+  //the first the others may be
+  static final int SWEEP_STOPS = 16, SWEEP_RANGE = 4;
+  static final String TYPES[] =
+                        { "Hoe", "Dozer", "Roller", "Grader", "Truck" };
   static protected GameKit gk;
   static protected Random randomGen = new Random();
 
@@ -29,6 +37,15 @@ abstract class Machine
   protected int moveType, movePercent;
   protected JobItem curJob;
   protected int     jobStep;
+  protected long    jobStartTime;   //System.nanoTime() curJob was taken
+
+  //set while idle with nothing in the JobQ to do; JobQ.park() lists
+  //the machine under each job type in waitBits and clears "parked"
+  //when a job of one of them is added.  parkTypes are the types it
+  //parked looking for this time.
+  boolean parked;
+  int     waitBits;
+  int     parkTypes;
 
   ////////////////////////////////////////////////////////////////////
   // Constructor:  Machine                                          //
@@ -40,15 +57,21 @@ abstract class Machine
     facing = java.lang.Math.abs(randomGen.nextInt()) % 8;
     actionType = ACTION_NONE;
     curJob = null;
+    ObjList.reserve(2);
   }
 
   ////////////////////////////////////////////////////////////////////
-  // Method:       setGK                                            //
+  // Methods:      setGK                                            //
+  //               setSeed - for repeatable runs                    //
   ////////////////////////////////////////////////////////////////////
   static public void setGK(GameKit gkInit)
   {
     gk = gkInit;
   }
+  static public void setSeed(long seed)
+  {
+    randomGen.setSeed(seed);
+  }
 
   ////////////////////////////////////////////////////////////////////
   // Methods:      setFacing                                        //
@@ -57,6 +80,7 @@ abstract class Machine
   //               getFrame                                         //
   //               getJob                                           //
   //               getType                                          //
+  //               getMapColor - 0xrrggbb marker color on minimap   //
   ////////////////////////////////////////////////////////////////////
   public void setFacing(int n)
   {
@@ -82,6 +106,23 @@ abstract class Machine
   {
     return "";
   }
+  public int     getMapColor()
+  {
+    return 0xffd200;   //construction yellow
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getTravelTicks                                   //
+  // Arguments:    i, j - tile to go to                             //
+  // Returns:      about how many ticks it'd take to drive there    //
+  //               (the turns along the way aren't counted)         //
+  ////////////////////////////////////////////////////////////////////
+  public int getTravelTicks(int i, int j)
+  {
+    int di = Math.abs(i - terrain.getI());
+    int dj = Math.abs(j - terrain.getJ());
+    return Math.max(di, dj) * TICKS_PER_TILE;
+  }
 
   ////////////////////////////////////////////////////////////////////
   // Method:       create                                           //
@@ -121,19 +162,157 @@ abstract class Machine
     }
   }
 
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getTypeIndex                                     //
+  // Arguments:    type - "Hoe", "truck", etc. (any case)           //
+  // Returns:      index of the type in TYPES, or -1                //
+  ////////////////////////////////////////////////////////////////////
+  static public int getTypeIndex(String type)
+  {
+    for(int t=0; t<TYPES.length; t++)
+    {
+      if(TYPES[t].equalsIgnoreCase(type)) return t;
+    }
+    return -1;
+  }
+
   ////////////////////////////////////////////////////////////////////
   // Method:       findJob                                          //
   // Arguments:    jobTypes - ORed set of job values this machine   //
   //               can handle                                       //
-  // Description:  Finds the next appropriate job for a machine.    //
+  // Description:  Takes the best ranked job this machine can do.   //
   //               Sets instance variables curJob and/or            //
-  //               bestJobDistance.                                 //
+  //               bestJobDistance.  If there's none the machine    //
+  //               parks and doesn't look again until a job it can  //
+  //               do is added.                                     //
   ////////////////////////////////////////////////////////////////////
   public void findJob(int jobTypes)
   {
+    if(parked) return;
     JobQ jobQ = terrain.getMap().getJobQ();
-    curJob = jobQ.findJob(jobTypes, null);
-    jobQ.removeJob(curJob);
+    Events.JobClaimed search = Events.beginClaim();
+    JobItem job = jobQ.findBestJob(jobTypes);
+    if(job == null)
+    {
+      jobQ.park(this, jobTypes);
+      return;
+    }
+    takeJob(job, search);
+    if(curJob != null) jobQ.passOn(jobTypes);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       takeJob                                          //
+  // Arguments:    job - a job in the JobQ                          //
+  //               search - timing of the search that found it (see //
+  //                        Events.beginClaim)                      //
+  // Description:  Claims the job as this machine's current one and //
+  //               starts it from the first step.  Also how another //
+  //               machine sends this one a job (see Hoe).          //
+  ////////////////////////////////////////////////////////////////////
+  public void takeJob(JobItem job)
+  {
+    takeJob(job, null);
+  }
+
+  protected void takeJob(JobItem job, Events.JobClaimed search)
+  {
+    JobQ jobQ = Terrain.getMap().getJobQ();
+    curJob = jobQ.claimJob(job);
+    if(curJob == null) return;
+    parked = false;
+    jobStep = 0;
+    jobStartTime = System.nanoTime();
+    Events.jobClaimed(search, this, curJob,
+                      jobQ.getTick() - curJob.queuedTick, jobQ.getNumJobs());
+    Log.log(Log.MACHINE, Log.DEBUG, getType(), "took job",
+            curJob.getI(), curJob.getJ());
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       truckArrived                                     //
+  // Arguments:    load - a Rendezvous this machine posted          //
+  // Description:  Called when the truck for the load gets to the   //
+  //               site.  Only a Hoe posts loads.                   //
+  ////////////////////////////////////////////////////////////////////
+  public void truckArrived(Rendezvous load)
+  {
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      planRoute                                        //
+  //               nextStop                                         //
+  // Arguments:    route - emptied, then given the current job and  //
+  //                       the ones of its type queued nearest it   //
+  //                       (no more than range tiles away), as many //
+  //                       as it holds                              //
+  //               i, j - where the route starts from               //
+  // Description:  planRoute claims the jobs and orders them;       //
+  //               nextStop makes the next one the current job and  //
+  //               heads for it                                     //
+  ////////////////////////////////////////////////////////////////////
+  protected void planRoute(Route route, int range, int i, int j)
+  {
+    JobQ jobQ = Terrain.getMap().getJobQ();
+    int type = curJob.getType();
+    int ci = curJob.getI();
+    int cj = curJob.getJ();
+    route.clear();
+    route.add(curJob);
+    JobItem job = jobQ.findJob(type, null);
+    for(; job!=null; job=jobQ.findJob(type, job))
+    {
+      int d = Route.getDistance(ci, cj, job.getI(), job.getJ());
+      if(d <= range) route.offer(job, d);
+    }
+    for(int n=1; n<route.getNumStops(); n++)
+    {
+      job = jobQ.claimJob(route.getStop(n));
+      Events.jobClaimed(null, this, job, jobQ.getTick() - job.queuedTick,
+                        jobQ.getNumJobs());
+    }
+    route.plan(i, j);
+  }
+
+  protected void nextStop(Route route)
+  {
+    curJob = route.next();
+    jobStartTime = System.nanoTime();
+    moveTo(curJob.getI(), curJob.getJ());
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       finishJob                                        //
+  // Description:  Called when the current job is done.  Hands the  //
+  //               JobItem back to the queue to be reused.          //
+  ////////////////////////////////////////////////////////////////////
+  public void finishJob()
+  {
+    if(curJob==null) return;
+    Log.log(Log.MACHINE, Log.DEBUG, getType(), "finished job",
+            curJob.getI(), curJob.getJ());
+    Events.jobCompleted(this, curJob, System.nanoTime() - jobStartTime);
+    Terrain.getMap().getJobQ().finishJob(curJob);
+    curJob = null;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       addFollowUp                                      //
+  // Arguments:    type, i, j, param - job that the current one     //
+  //               leads to (e.g. a ROLL after a PAVE)              //
+  // Returns:      the job                                          //
+  // Description:  Queues it with the current job's priority and    //
+  //               deadline, as part of the same JobScheduler step  //
+  //               if that was planned                              //
+  ////////////////////////////////////////////////////////////////////
+  public JobItem addFollowUp(int type, int i, int j, int param)
+  {
+    JobQ jobQ = Terrain.getMap().getJobQ();
+    if(curJob==null) return jobQ.addJob(type, i, j, param);
+    JobItem job = jobQ.addJob(type, i, j, param, curJob.priority,
+                              curJob.deadline);
+    JobScheduler.link(job, curJob.step);
+    return job;
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -261,6 +440,7 @@ abstract class Machine
         terrain.removeMachine(this);
         terrain = terrain.getMap().getTerrain(map_i, map_j);
         terrain.addMachine(this);
+        Log.log(Log.MACHINE, Log.TRACE, getType(), "moved to", map_i, map_j);
         moveType = MOVE_TO_CENTER;
         movePercent = 0;
       }
@@ -374,9 +554,10 @@ abstract class Machine
 
   ////////////////////////////////////////////////////////////////////
   // Method:       draw                                             //
-  // Arguments:    x, y:  top-left corner of isotile machine is on. //
+  // Arguments:    rt:  where to draw                               //
+  //               x, y:  top-left corner of isotile machine is on. //
   ////////////////////////////////////////////////////////////////////
-  public void draw(int x, int y)
+  public void draw(RenderTarget rt, int x, int y)
   {
     //empty function, overridden
   }
@@ -459,6 +640,11 @@ class Hoe extends Machine
 {
   protected int digDir;
 
+  //the load being dug now and the next one, each of which a truck
+  //may be on its way to
+  protected Rendezvous rendezvous = new Rendezvous(this);
+  protected Rendezvous nextLoad = new Rendezvous(this);
+
   public Hoe(Terrain _terrain)
   {
     super(_terrain);
@@ -469,27 +655,164 @@ class Hoe extends Machine
     return "Hoe";
   }
 
-  public void draw(int x, int y)
+  public void draw(RenderTarget rt, int x, int y)
   {
-    gk.drawTile(frame*8 + facing, x+getOffsetX(), y+getOffsetY());
+    rt.drawTile(frame*8 + facing, x+(getOffsetX()>>rt.getZoom()),
+                y+(getOffsetY()>>rt.getZoom()));
   }
 
   //request that an empty truck come over to receive dirt
-  //request is for NW of Hoe unless on boundary
   public void callTruck()
   {
+    if(rendezvous.isPosted()) return;   //one is already coming
+    postLoad(rendezvous, null);
+  }
+
+  //the truck comes to the NW of the job site unless it's on the
+  //boundary
+  protected int getTruckI()
+  {
+    int i = curJob.getI();
+    return (i==0) ? 1 : i-1;
+  }
+  protected int getTruckJ()
+  {
+    int j = curJob.getJ();
+    return (j==0) ? 1 : j-1;
+  }
+
+  //post a load at the job site and, if given one, send that truck
+  protected void postLoad(Rendezvous load, Machine truck)
+  {
+    JobItem job = addFollowUp(JobQ.JOB_WAIT, getTruckI(), getTruckJ(),
+                              -1);
+    load.post(job);
+    if(truck == null) return;
+    truck.takeJob(job);
+    if(truck.getJob() == job) load.claim(truck);
+  }
+
+  //how many loads are left to dig at the job site
+  protected int getLoadsLeft()
+  {
+    Map map = Terrain.getMap();
+    int i = curJob.getI();
+    int j = curJob.getJ();
+    int n = 0;
+    if(map.getElevation(i, j)==2)     n++;
+    if(map.getElevation(i+1, j)==2)   n++;
+    if(map.getElevation(i+1, j+1)==2) n++;
+    if(map.getElevation(i, j+1)==2)   n++;
+    return n;
+  }
+
+  //Sends the nearest empty truck that's idle for the next load the
+  //job needs once it would only just get there in time: for the
+  //first load, by the time the Hoe reaches the site; for the one
+  //after, by the time the truck already coming for this one does.
+  //So the trucks drive while the Hoe digs rather than after.
+  //Without an idle truck, callTruck() queues the load as usual when
+  //the Hoe's ready for it.
+  protected void dispatchTrucks()
+  {
+    Rendezvous load;
+    int needIn;
+    if(!rendezvous.isPosted())
+    {
+      if(getLoadsLeft() < 1) return;
+      load = rendezvous;
+      needIn = getTravelTicks(curJob.getI(), curJob.getJ());
+    }
+    else if(!nextLoad.isPosted())
+    {
+      needIn = rendezvous.getArrivalTicks();
+      if(needIn < 0 || getLoadsLeft() < 2) return;
+      load = nextLoad;
+    }
+    else return;
+
+    int i = getTruckI();
+    int j = getTruckJ();
+    JobQ jobQ = Terrain.getMap().getJobQ();
+    Machine truck = jobQ.findParked(JobQ.JOB_WAIT, i, j);
+    if(truck == null || truck.getTravelTicks(i, j) < needIn) return;
+    postLoad(load, truck);
+  }
+
+  //let go of any trucks sent for loads there turned out not to be
+  protected void cancelLoads()
+  {
+    JobQ jobQ = Terrain.getMap().getJobQ();
+    rendezvous.cancel(jobQ);
+    nextLoad.cancel(jobQ);
+  }
+
+  //called by the rendezvous when the truck gets to the site, so
+  //loading can start on this tick; a truck sent early for the next
+  //load waits its turn
+  public void truckArrived(Rendezvous load)
+  {
+    if(load==rendezvous && curJob!=null && jobStep==5
+       && actionType==ACTION_NONE)
+    {
+      loadTruck();
+    }
+  }
+
+  //turn to the truck that has come for the load and put the dirt
+  //in it
+  protected void loadTruck()
+  {
+    Machine m = rendezvous.getTruck();
     int i = terrain.getI();
     int j = terrain.getJ();
-    JobQ jobQ = terrain.getMap().getJobQ();
-    if(i==0) i = 1;
-    else     i--;
-    if(j==0) j = 1;
-    else     j--;
-    jobQ.addJob(JobQ.JOB_WAIT, i, j, -1);
+    int ti = m.terrain.getI();
+    int tj = m.terrain.getJ();
+
+    //turn to face truck
+    int desiredDir = facing;
+    if(ti!=i || tj!=j) desiredDir = getDesiredDir(i, j, ti, tj);
+    if(!turnTo(desiredDir)) return;  //try until okay
+
+    frame = 0;
+    m.setFrame(1);   //"put dirt" in truck
+    rendezvous.done();
+
+    //the next load's truck (if one's coming) is for this load now
+    Rendezvous used = rendezvous;
+    rendezvous = nextLoad;
+    nextLoad = used;
+
+    //lower corner we were just digging at
+    int di=0, dj=0;
+    switch(digDir)
+    {
+    case DIR_NW:
+      di=0;
+      dj=0;
+      break;
+    case DIR_NE:
+      di=1;
+      dj=0;
+      break;
+    case DIR_SE:
+      di=1;
+      dj=1;
+      break;
+    case DIR_SW:
+      di=0;
+      dj=1;
+      break;
+    }
+    terrain = terrain.createFromCurrent("Dirt");
+    Terrain.getMap().setElevation(i+di,j+dj,1);
+
+    jobStep = 1;     //go back to checking corners
   }
 
   public void check()
   {
+    if(curJob != null) dispatchTrucks();
     switch(actionType)
     {
     case ACTION_NONE:
@@ -557,25 +880,12 @@ class Hoe extends Machine
             jobStep = 5;
             return;
           }
-          curJob = null;   //all done!
+          cancelLoads();
+          finishJob();   //all done!
           break;
         case 5:  //dug up a load.  Wait for empty dump truck adj
           //to this machine to dump load into
-          int di, dj, desiredDir=4;
-          Machine m = null;
-          for(dj=-1; dj<=1; dj++)
-          {
-            for(di=-1; di<=1; di++)
-            {
-              Terrain t = terrain.getMap().getTerrain(i+di,j+dj);
-              if(t == null) continue;
-              m = t.findMachine("Truck", JobQ.JOB_WAIT);
-              desiredDir = (dj+1) * 3 + (di+1);
-              if(m != null) break;
-            }
-            if(m != null) break;
-          }
-          if(m == null)
+          if(rendezvous.getTruck() == null)
           {
             movePercent += 10;
             if(movePercent >= 100)
@@ -583,73 +893,9 @@ class Hoe extends Machine
               movePercent = 0;
               frame ^= 1;
             }
-            return;   //look again next time
-          }
-
-          //turn to face truck
-
-          switch(desiredDir)
-          {
-          case 0:
-            desiredDir = DIR_NW;
-            break;
-          case 1:
-            desiredDir = DIR_N;
-            break;
-          case 2:
-            desiredDir = DIR_NE;
-            break;
-          case 3:
-            desiredDir = DIR_W;
-            break;
-          case 4:
-            desiredDir = facing;
-            break;
-          case 5:
-            desiredDir = DIR_E;
-            break;
-          case 6:
-            desiredDir = DIR_SW;
-            break;
-          case 7:
-            desiredDir = DIR_S;
-            break;
-          case 8:
-            desiredDir = DIR_SE;
-            break;
-          }
-          if(!turnTo(desiredDir)) return;  //try until okay
-
-          frame = 0;
-          m.setFrame(1);   //"put dirt" in truck
-
-          //lower corner we were just digging at
-          di=0;
-          dj=0;
-          switch(digDir)
-          {
-          case DIR_NW:
-            di=0;
-            dj=0;
-            break;
-          case DIR_NE:
-            di=1;
-            dj=0;
-            break;
-          case DIR_SE:
-            di=1;
-            dj=1;
-            break;
-          case DIR_SW:
-            di=0;
-            dj=1;
-            break;
+            return;   //the rendezvous calls when it's here
           }
-          terrain = terrain.createFromCurrent("Dirt");
-          terrain.getMap().setElevation(i+di,j+dj,1);
-
-          jobStep = 1;     //go back to checking corners
-
+          loadTruck();
           break;
         }
       }
@@ -673,10 +919,10 @@ class Dozer extends Machine
     return "Dozer";
   }
 
-  public void draw(int x, int y)
+  public void draw(RenderTarget rt, int x, int y)
   {
-    gk.drawTile(16 + frame*8 + facing, x+getOffsetX(),
-                y+getOffsetY());
+    rt.drawTile(16 + frame*8 + facing,
+                x+(getOffsetX()>>rt.getZoom()), y+(getOffsetY()>>rt.getZoom()));
   }
 
   public void check()
@@ -763,7 +1009,7 @@ class Dozer extends Machine
             map.setElevation(i,j+1,1);
           }
           terrain = terrain.createFromCurrent("Dirt");
-          curJob = null;
+          finishJob();
           break;
         }
       }
@@ -777,6 +1023,9 @@ class Dozer extends Machine
 
 class Roller extends Machine
 {
+  //jobs still to do on this sweep (curJob is the one at hand)
+  protected Route route = new Route(SWEEP_STOPS);
+
   public Roller(Terrain _terrain)
   {
     super(_terrain);
@@ -787,10 +1036,10 @@ class Roller extends Machine
     return "Roller";
   }
 
-  public void draw(int x, int y)
+  public void draw(RenderTarget rt, int x, int y)
   {
-    gk.drawTile(24 + frame*8 + facing, x+getOffsetX(),
-                y+getOffsetY());
+    rt.drawTile(24 + frame*8 + facing,
+                x+(getOffsetX()>>rt.getZoom()), y+(getOffsetY()>>rt.getZoom()));
   }
 
   public void check()
@@ -807,15 +1056,15 @@ class Roller extends Machine
       {
         switch(jobStep)
         {
-        case 0:
-          moveTo(curJob.getI(),curJob.getJ());
+        case 0:  //take the jobs nearby along and go to the first
+          planRoute(route, SWEEP_RANGE, terrain.getI(), terrain.getJ());
+          nextStop(route);
           jobStep++;
           break;
         case 1:
-          int i = terrain.getI();
-          int j = terrain.getJ();
           terrain = terrain.createFromCurrent("Road");
-          curJob = null;
+          finishJob();
+          if(route.hasNext()) nextStop(route);
           break;
         }
       }
@@ -829,6 +1078,9 @@ class Roller extends Machine
 
 class Grader extends Machine
 {
+  //jobs still to do on this sweep (curJob is the one at hand)
+  protected Route route = new Route(SWEEP_STOPS);
+
   public Grader(Terrain _terrain)
   {
     super(_terrain);
@@ -839,10 +1091,10 @@ class Grader extends Machine
     return "Grader";
   }
 
-  public void draw(int x, int y)
+  public void draw(RenderTarget rt, int x, int y)
   {
-    gk.drawTile(32 + frame*8 + facing, x+getOffsetX(),
-                y+getOffsetY());
+    rt.drawTile(32 + frame*8 + facing,
+                x+(getOffsetX()>>rt.getZoom()), y+(getOffsetY()>>rt.getZoom()));
   }
 
   public void check()
@@ -859,15 +1111,15 @@ class Grader extends Machine
       {
         switch(jobStep)
         {
-        case 0:
-          moveTo(curJob.getI(),curJob.getJ());
+        case 0:  //take the jobs nearby along and go to the first
+          planRoute(route, SWEEP_RANGE, terrain.getI(), terrain.getJ());
+          nextStop(route);
           jobStep++;
           break;
         case 1:
-          int i = terrain.getI();
-          int j = terrain.getJ();
           terrain = terrain.createFromCurrent("Dirt");
-          curJob = null;
+          finishJob();
+          if(route.hasNext()) nextStop(route);
           break;
         }
       }
@@ -881,20 +1133,33 @@ class Grader extends Machine
 
 class Truck extends Machine
 {
+  //loads of asphalt a truck carries from the depot, and how far
+  //from the first PAVE job the others it takes along may be
+  static final int ASPHALT_LOADS = 4;
+  static final int TRIP_RANGE = 3;
+
+  //PAVE jobs still to do on this trip (curJob is the one at hand)
+  protected Route route = new Route(ASPHALT_LOADS);
+
   public Truck(Terrain _terrain)
   {
     super(_terrain);
   }
 
+
   public String  getType()
   {
     return "Truck";
   }
+  public int     getMapColor()
+  {
+    return 0xff8000;
+  }
 
-  public void draw(int x, int y)
+  public void draw(RenderTarget rt, int x, int y)
   {
-    gk.drawTile(40 + frame*8 + facing, x+getOffsetX(),
-                y+getOffsetY());
+    rt.drawTile(40 + frame*8 + facing,
+                x+(getOffsetX()>>rt.getZoom()), y+(getOffsetY()>>rt.getZoom()));
   }
 
   public void check()
@@ -914,13 +1179,18 @@ class Truck extends Machine
         {
           switch(jobStep)
           {
-          case 0:  //go to the depot
-            moveTo(0, 0);
+          case 0:  //go to the depot nearest the job
+            Terrain depot = Terrain.getMap().getDepotIndex()
+                              .findNearest(curJob.getI(), curJob.getJ());
+            int di = (depot==null) ? 0 : depot.getI();
+            int dj = (depot==null) ? 0 : depot.getJ();
+            planRoute(route, TRIP_RANGE, di, dj);
+            moveTo(di, dj);
             jobStep++;
             break;
-          case 1:  //get a load of asphalt, head to the job site
+          case 1:  //get a load of asphalt, head to the first stop
             frame = 3;
-            moveTo(curJob.getI(), curJob.getJ());
+            nextStop(route);
             jobStep++;
             break;
           case 2:  //at the job site, begin dump animation
@@ -935,10 +1205,19 @@ class Truck extends Machine
               int i = terrain.getI();
               int j = terrain.getJ();
               terrain = terrain.createFromCurrent("AsphaltPile");
-              terrain.getMap().getJobQ().addJob(
-                JobQ.JOB_ROLL,i,j,-1);
-              frame = 0;
-              curJob = null;
+              addFollowUp(JobQ.JOB_ROLL,i,j,-1);
+              finishJob();
+              if(route.hasNext())
+              {
+                //asphalt left; on to the next stop
+                frame = 3;
+                nextStop(route);
+                jobStep = 2;
+              }
+              else
+              {
+                frame = 0;
+              }
             }
             break;
           }
@@ -948,14 +1227,24 @@ class Truck extends Machine
           switch(jobStep)
           {
           case 0:  //move to site
+            if(curJob.rendezvous != null) curJob.rendezvous.claim(this);
             moveTo(curJob.getI(), curJob.getJ());
             jobStep++;
             break;
-          case 1:  //wait for load until frame gets set
+          case 1:  //at the site; let the Hoe know, which may load
+            //the truck straight away
+            jobStep = 2;
+            if(curJob.rendezvous != null) curJob.rendezvous.arrive(this);
+            if(frame==1)
+            {
+              finishJob();
+            }
+            break;
+          case 2:  //wait for load until frame gets set
             //to 1 by the Hoe
             if(frame==1)
             {
-              curJob = null;
+              finishJob();
             }
             break;
           }
@@ -989,9 +1278,10 @@ class Truck extends Machine
               }
             }
 
-            //nowhere to put dirt; replace job on end of queue
-            map.getJobQ().addJob(curJob);
-            curJob = null;
+            //nowhere to put dirt; hold the job until one of the
+            //tiles around the site changes
+            map.getBlockedJobs().block(curJob, i-1, j-1, i+1, j+1);
+            curJob = null;   //blocked; not finished
             break;
           case 1:
             //dump load of dirt
@@ -1004,12 +1294,11 @@ class Truck extends Machine
             if(movePercent >= 100)
             {
               terrain = terrain.createFromCurrent("DirtPile");
-              terrain.getMap().getJobQ().addJob(
-                JobQ.JOB_LEVEL, i, j,
-                getDesiredDir(i, j,
-                              curJob.getI(), curJob.getJ()));
+              addFollowUp(JobQ.JOB_LEVEL, i, j,
+                          getDesiredDir(i, j,
+                                        curJob.getI(), curJob.getJ()));
               frame = 0;
-              curJob = null;
+              finishJob();
             }
             break;
           }
@@ -8,53 +8,166 @@
 //  Purpose:  Map contains and manipulates the terrain map          //
 //////////////////////////////////////////////////////////////////////
 
+import java.awt.event.KeyEvent;
+import java.io.*;
+import java.util.ArrayList;
 import java.util.Random;
+import java.util.StringTokenizer;
 
 class Map
 {
+  //default tiled width & height
+  static final int DEFAULT_WIDTH = 21, DEFAULT_HEIGHT = 21;
+
+  //randomize() puts a Depot every so many tiles each way from (0,0)
+  static final int DEPOT_SPACING = 32;
+
   //tiled width & height
-  final int WIDTH = 21, HEIGHT = 21;
+  final int WIDTH, HEIGHT;
 
   //width and height of elevation data points
-  final int ELEV_WIDTH = WIDTH+1, ELEV_HEIGHT = HEIGHT+1;
+  final int ELEV_WIDTH, ELEV_HEIGHT;
 
-  //size (in tiles) of viewport (visible subset of the larger map)
-  final int VP_WIDTH = 10, VP_HEIGHT = 10;
+  //size (in tiles) of viewport (visible subset of the larger map);
+  //worked out from the screen size and zoom level
+  private int vpWidth = 10, vpHeight = 10;
 
-  private GameKit gk;
+  private GameKit gk;        //input & status; null when headless
+  private RenderTarget rt;   //where the map gets drawn
 
   private Random randomGen = new Random();
-  private int elevation[][] = new int[ELEV_WIDTH][ELEV_HEIGHT];
-  private Terrain terrain[][] = new Terrain[WIDTH][HEIGHT];
+  private int elevation[][];
+  private Terrain terrain[][];
   private JobQ jobQ = new JobQ();
+  private JobScheduler scheduler = new JobScheduler(this, jobQ);
+  private BlockedJobs blockedJobs;
+  private DepotIndex depotIndex;
+
+  //told about every change to the map
+  private ArrayList<MapListener> listeners = new ArrayList<MapListener>();
+
+  //what the status bar was last set to by showSelection: tile,
+  //height, and type, i, j, param and status of the job there (type
+  //-1 if none).  The text is rebuilt in statusBuf only when these
+  //change.
+  private int          shown[] = new int[8];
+  private boolean      statusShown;
+  private StringBuffer statusBuf = new StringBuffer(64);
+
+  //overview of the whole map, drawn in a corner of the screen
+  private MiniMap miniMap;
+  private boolean showMiniMap = true;
 
   //redraw the whole map or just reuse the background from last time?
   private boolean needsFullRedraw;
+  private boolean lastFrameFull;   //what the last frame did
 
   //offset should range from (0,0) (top left of map is displayed)
-  //to (WIDTH - VP_WIDTH, HEIGHT - VP_HEIGHT)
+  //to (WIDTH - vpWidth, HEIGHT - vpHeight)
   //(e.g. 11, 11, bottom right)
   private int offset_x, offset_y;
 
+  //zoom level; tiles are drawn at 1/(2^zoom) of their full size
+  private int zoom;
+
+  //Screen layout of the current frame, set up by computeView.  Tile
+  //(offset_x, offset_y) has its top left corner at (originX,originY)
+  //and each step along i or j moves stepX across and stepY down.
+  //Tiles whose i-j is outside uMin..uMax or whose i+j is outside
+  //vMin..vMax (relative to the offset) are off-screen.  viewWidth
+  //and viewHeight are the screen size it was worked out for.
+  private int originX, originY, stepX, stepY;
+  private int uMin, uMax, vMin, vMax;
+  private int viewWidth, viewHeight;
+
   //Information about the currently highlighted terrain tile
   private int selTileNum, selTile_x, selTile_y, selTileStage;
   private int selTile_i, selTile_j, selTile_height;
 
+  //a left button drag: the tile it started on (dragStart_i -1 if
+  //none) and, for a lasso (shift held), the tiles it went over
+  private int     dragStart_i = -1, dragStart_j;
+  private boolean dragLasso;
+  private int     lasso_i[] = new int[64], lasso_j[] = new int[64];
+  private int     numLasso;
+
+  //a right button drag: the tile it started on (-1 if none)
+  private int     planStart_i = -1, planStart_j;
+
   ///////////////////////////
   // Constructor:  Map     //
   ///////////////////////////
   public Map(GameKit gkInit)
   {
+    this(gkInit, DEFAULT_WIDTH, DEFAULT_HEIGHT);
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Constructor:  Map                                      //
+  // Arguments:    width, height - size in tiles; at least  //
+  //               10 across for randomize() to place the   //
+  //               machines                                 //
+  ////////////////////////////////////////////////////////////
+  public Map(GameKit gkInit, int width, int height)
+  {
+    WIDTH = width;
+    HEIGHT = height;
+    ELEV_WIDTH = WIDTH+1;
+    ELEV_HEIGHT = HEIGHT+1;
+    elevation = new int[ELEV_WIDTH][ELEV_HEIGHT];
+    terrain = new Terrain[WIDTH][HEIGHT];
+    jobQ.setMapSize(WIDTH, HEIGHT);
+    blockedJobs = new BlockedJobs(this, jobQ);
+    depotIndex = new DepotIndex(this);
+
     gk = gkInit;
+    rt = gkInit;
     offset_x = 0;
     offset_y = 0;
     Terrain.setGK(gk);
     Terrain.setMap(this);
     Machine.setGK(gk);
     ObjList.setGK(gk);
+    miniMap = new MiniMap(this, MiniMap.getDefaultScale(WIDTH, HEIGHT),
+                          MiniMap.getDefaultBlock(WIDTH, HEIGHT));
     needsFullRedraw = true;
   }
 
+  ////////////////////////////////////////////////////////////
+  // Methods:      addMapListener                           //
+  //               removeMapListener                        //
+  ////////////////////////////////////////////////////////////
+  public void addMapListener(MapListener l)
+  {
+    listeners.add(l);
+  }
+  public void removeMapListener(MapListener l)
+  {
+    listeners.remove(l);
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       machinesChanged                          //
+  // Arguments:    i, j - tile a machine arrived at or left //
+  // Description:  called by Terrain; passes it on to the   //
+  //               listeners                                //
+  ////////////////////////////////////////////////////////////
+  public void machinesChanged(int i, int j)
+  {
+    for(int n=0; n<listeners.size(); n++)
+    {
+      listeners.get(n).machinesChanged(i, j);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       getMiniMap                               //
+  ////////////////////////////////////////////////////////////
+  public MiniMap getMiniMap()
+  {
+    return miniMap;
+  }
+
   /////////////////////////////////////////////////////////////
   // Method:       setFullRedraw                             //
   // Description:  informs the map that it needs to be fully //
@@ -66,6 +179,27 @@ class Map
     needsFullRedraw = true;
   }
 
+  ////////////////////////////////////////////////////////////
+  // Method:       wasFullRedraw                            //
+  // Returns:      true if the last frame redrew the whole  //
+  //               map rather than reusing the background   //
+  ////////////////////////////////////////////////////////////
+  public boolean wasFullRedraw()
+  {
+    return lastFrameFull;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       setRenderTarget                          //
+  // Arguments:    target - where to draw the map from now  //
+  //                        on, e.g. a FrameBuffer          //
+  ////////////////////////////////////////////////////////////
+  public void setRenderTarget(RenderTarget target)
+  {
+    rt = target;
+    needsFullRedraw = true;
+  }
+
   ////////////////////////////////////////////////////////////
   // Method:       getTerrain                               //
   // Arguments:    i, j:  index of location to get terrain  //
@@ -90,6 +224,10 @@ class Map
     if(i<0 || i>=WIDTH || j<0 || j>=HEIGHT) return;
 
     terrain[i][j] = newTerrain;
+    for(int n=0; n<listeners.size(); n++)
+    {
+      listeners.get(n).terrainChanged(i, j);
+    }
   }
 
   ////////////////////////////////////////////////////////////
@@ -114,7 +252,34 @@ class Map
   public void setElevation(int x, int y, int _elevation)
   {
     if(x<0 || x>=ELEV_WIDTH || y<0 || y>=ELEV_HEIGHT) return;
+    if(elevation[x][y] == _elevation) return;
     elevation[x][y] = _elevation;
+    for(int n=0; n<listeners.size(); n++)
+    {
+      listeners.get(n).elevationChanged(x, y);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       getMachines                              //
+  // Arguments:    list - emptied, then filled with every   //
+  //                      machine on the map                //
+  ////////////////////////////////////////////////////////////
+  public void getMachines(ArrayList<Machine> list)
+  {
+    list.clear();
+    int i, j;
+    for(j=0; j<HEIGHT; j++)
+    {
+      for(i=0; i<WIDTH; i++)
+      {
+        ObjItem item = terrain[i][j].objList.getHead();
+        for(; item!=null; item=item.getNextItem())
+        {
+          list.add(item.getMachine());
+        }
+      }
+    }
   }
 
   ////////////////////////////////////////////////////////////
@@ -125,6 +290,38 @@ class Map
     return jobQ;
   }
 
+  ////////////////////////////////////////////////////////////
+  // Methods:      getScheduler                             //
+  //               getBlockedJobs                           //
+  //               getDepotIndex                            //
+  ////////////////////////////////////////////////////////////
+  public JobScheduler getScheduler()
+  {
+    return scheduler;
+  }
+  public BlockedJobs  getBlockedJobs()
+  {
+    return blockedJobs;
+  }
+  public DepotIndex   getDepotIndex()
+  {
+    return depotIndex;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       setSeed                                  //
+  // Arguments:    seed - starts the random numbers of the  //
+  //               map, terrain and machines over, so that  //
+  //               randomize() and everything after it come //
+  //               out the same each time                   //
+  ////////////////////////////////////////////////////////////
+  public void setSeed(long seed)
+  {
+    randomGen.setSeed(seed);
+    Terrain.setSeed(seed + 1);
+    Machine.setSeed(seed + 2);
+  }
+
   ////////////////////////////////////////////////////////////
   // Method:       randomize                                //
   // Description:  Fills in the elevation map with random   //
@@ -208,7 +405,13 @@ class Map
       }
 
     }
-    terrain[0][0] = Terrain.create("Depot",0,0);
+    for(j=0; j<HEIGHT; j+=DEPOT_SPACING)
+    {
+      for(i=0; i<WIDTH; i+=DEPOT_SPACING)
+      {
+        terrain[i][j] = Terrain.create("Depot",i,j);
+      }
+    }
     terrain[WIDTH-1][HEIGHT-1] = Terrain.create("Road",
                                  WIDTH-1, HEIGHT-1);
 
@@ -220,6 +423,12 @@ class Map
     terrain[6][0].addMachine(Machine.create("Truck",terrain[6][0]));
     terrain[7][0].addMachine(Machine.create("Truck",terrain[7][0]));
     terrain[8][0].addMachine(Machine.create("Truck",terrain[8][0]));
+
+    //the arrays were filled in directly, so listeners start over
+    for(int n=0; n<listeners.size(); n++)
+    {
+      listeners.get(n).mapChanged();
+    }
   }
 
   ////////////////////////////////////////////////////////////
@@ -229,108 +438,552 @@ class Map
   ////////////////////////////////////////////////////////////
   public void check()
   {
-    if(gk.getMouseClickB1() && selTileStage>0)
+    //no machine list is being walked now
+    ObjList.recycleRemoved();
+    jobQ.nextTick();
+
+    if(gk != null) checkInput();
+
+    //call each of the terrain obj's check methods
+    int i, j;
+    for(j=0; j<HEIGHT; j++)
     {
-      //check to see if all 4 corners are elevation 1
-      int height = 0, i=selTile_i, j=selTile_j;
-      int e1 = getElevation(i,   j);
-      int e2 = getElevation(i+1, j);
-      int e3 = getElevation(i+1, j+1);
-      int e4 = getElevation(i,   j+1);
-      if(e1==1 && e2==1 && e3==1 && e4==1)
-      {
-        height = 0;
-      }
-      else if(e1==0 || e2==0 || e3==0 || e4==0)
+      for(i=0; i<WIDTH; i++)
       {
-        height = -1;
+        terrain[i][j].check();
       }
-      else
+    }
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       checkInput                               //
+  // Description:  Goes through every key press and mouse   //
+  //               click since the last tick in order.      //
+  //               Clicks become jobs on the tile under the //
+  //               click (a right click plans every job to  //
+  //               make it road); dragging with the left    //
+  //               button selects a rectangle of tiles, or  //
+  //               with shift held a lasso around them, and //
+  //               queues each tile's job, and dragging     //
+  //               with the right plans a rectangle of road //
+  //               as one area; keys scroll, zoom, etc.     //
+  ////////////////////////////////////////////////////////////
+  private void checkInput()
+  {
+    //lay out the view as it was on screen when clicked
+    computeView(rt);
+
+    int n;
+    for(n=0; n<gk.getNumEvents(); n++)
+    {
+      int type = gk.getEventType(n);
+      if(type==InputQueue.KEY)
       {
-        height = 1;
+        checkKey(gk.getEventCode(n));
       }
-      if(height < 0)
+      else if(type==InputQueue.PRESS
+              && gk.getEventCode(n)==InputQueue.BUTTON1)
       {
-        jobQ.addJob(JobQ.JOB_FILL, i, j, -1);
+        pickTerrain(gk.getEventX(n), gk.getEventY(n));
+        dragStart_i = -1;
+        if(selTileStage>0)
+        {
+          dragStart_i = selTile_i;
+          dragStart_j = selTile_j;
+          dragLasso = (gk.getEventFlags(n) & InputQueue.SHIFT) != 0;
+          clearLasso();
+          addLassoPoint(selTile_i, selTile_j);
+        }
       }
-      else if(height > 0)
+      else if(type==InputQueue.DRAG)
       {
-        jobQ.addJob(JobQ.JOB_CUT, i, j, -1);
+        if(dragStart_i < 0 || !dragLasso) continue;
+        pickTerrain(gk.getEventX(n), gk.getEventY(n));
+        if(selTileStage>0) addLassoPoint(selTile_i, selTile_j);
       }
-      else
+      else if(type==InputQueue.RELEASE
+              && gk.getEventCode(n)==InputQueue.BUTTON1)
       {
-        //ground is flat at elevation 1
-        if(terrain[i][j].getType() == "Grass")
+        pickTerrain(gk.getEventX(n), gk.getEventY(n));
+        if(selTileStage>0)
         {
-          jobQ.addJob(JobQ.JOB_CLEAR, i, j, -1);
+          if(dragLasso && dragStart_i >= 0)
+          {
+            addLassoPoint(selTile_i, selTile_j);
+          }
+          if(dragStart_i < 0 || (dragLasso ? numLasso < 3
+                                 : (dragStart_i==selTile_i
+                                    && dragStart_j==selTile_j)))
+          {
+            addJobAt(selTile_i, selTile_j);
+          }
+          else if(dragLasso)
+          {
+            addJobsInLasso();
+          }
+          else
+          {
+            addJobsIn(dragStart_i, dragStart_j, selTile_i, selTile_j);
+          }
         }
-        else if(terrain[i][j].getType() == "Dirt")
+        dragStart_i = -1;
+      }
+      else if(type==InputQueue.PRESS
+              && gk.getEventCode(n)==InputQueue.BUTTON3)
+      {
+        pickTerrain(gk.getEventX(n), gk.getEventY(n));
+        planStart_i = (selTileStage>0) ? selTile_i : -1;
+        planStart_j = selTile_j;
+      }
+      else if(type==InputQueue.RELEASE
+              && gk.getEventCode(n)==InputQueue.BUTTON3)
+      {
+        pickTerrain(gk.getEventX(n), gk.getEventY(n));
+        if(selTileStage>0)
         {
-          jobQ.addJob(JobQ.JOB_PAVE, i, j, -1);
+          if(planStart_i < 0)
+          {
+            scheduler.planTile(selTile_i, selTile_j,
+                               JobScheduler.GOAL_ROAD);
+          }
+          else
+          {
+            scheduler.planArea(planStart_i, planStart_j,
+                               selTile_i, selTile_j,
+                               JobScheduler.GOAL_ROAD);
+          }
         }
+        planStart_i = -1;
       }
     }
+  }
 
-    if(gk.getInkey()==38 && offset_y > 0)
+  ////////////////////////////////////////////////////////////
+  // Method:       addJobAt                                 //
+  // Arguments:    i, j - tile that was clicked on          //
+  // Description:  queues the next job the tile needs, as  //
+  //               if the player had clicked on it, unless  //
+  //               it's already been asked for              //
+  ////////////////////////////////////////////////////////////
+  public void addJobAt(int i, int j)
+  {
+    int type = getJobFor(i, j);
+    if(type != 0) jobQ.addJobOnce(type, i, j, -1);
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       getJobFor                                //
+  // Arguments:    i, j - a tile                            //
+  // Returns:      the next job the tile needs: FILL if a   //
+  //               corner is low, CUT if one is high, then  //
+  //               CLEAR for grass and PAVE for dirt; or 0  //
+  ////////////////////////////////////////////////////////////
+  public int getJobFor(int i, int j)
+  {
+    //check to see if all 4 corners are elevation 1
+    int height = 0;
+    int e1 = getElevation(i,   j);
+    int e2 = getElevation(i+1, j);
+    int e3 = getElevation(i+1, j+1);
+    int e4 = getElevation(i,   j+1);
+    if(e1==1 && e2==1 && e3==1 && e4==1)
     {
-      offset_y--;
-      needsFullRedraw = true;
+      height = 0;
     }
-    else if(gk.getInkey()==39 && offset_x + VP_WIDTH < WIDTH)
+    else if(e1==0 || e2==0 || e3==0 || e4==0)
     {
-      offset_x++;
-      needsFullRedraw = true;
+      height = -1;
     }
-    else if(gk.getInkey()==40 && offset_y + VP_HEIGHT < HEIGHT)
+    else
     {
-      offset_y++;
-      needsFullRedraw = true;
+      height = 1;
     }
-    else if(gk.getInkey()==37 && offset_x > 0)
+    if(height < 0)
     {
-      offset_x--;
-      needsFullRedraw = true;
+      return JobQ.JOB_FILL;
+    }
+    else if(height > 0)
+    {
+      return JobQ.JOB_CUT;
+    }
+    else
+    {
+      //ground is flat at elevation 1
+      if(terrain[i][j].getType() == "Grass")
+      {
+        return JobQ.JOB_CLEAR;
+      }
+      else if(terrain[i][j].getType() == "Dirt")
+      {
+        return JobQ.JOB_PAVE;
+      }
     }
+    return 0;
+  }
 
-    //call each of the terrain obj's check methods
-    int i, j;
-    for(j=0; j<HEIGHT; j++)
+  ////////////////////////////////////////////////////////////
+  // Methods:      addJobsIn                                //
+  //               addJobsInLasso                           //
+  // Arguments:    i0, j0, i1, j1 - opposite corners of a   //
+  //               rectangle of tiles                       //
+  // Returns:      number of jobs queued                    //
+  // Description:  queue the job each tile in the rectangle //
+  //               (or inside the lasso drawn, see          //
+  //               addLassoPoint) needs, as one batch       //
+  ////////////////////////////////////////////////////////////
+  public int addJobsIn(int i0, int j0, int i1, int j1)
+  {
+    int i, j, n = 0;
+    jobQ.beginBatch();
+    for(j=Math.max(0, Math.min(j0, j1));
+        j<=Math.min(HEIGHT-1, Math.max(j0, j1)); j++)
     {
-      for(i=0; i<WIDTH; i++)
+      for(i=Math.max(0, Math.min(i0, i1));
+          i<=Math.min(WIDTH-1, Math.max(i0, i1)); i++)
       {
-        terrain[i][j].check();
+        n += addToBatch(i, j);
+      }
+    }
+    jobQ.endBatch();
+    return n;
+  }
+
+  public int addJobsInLasso()
+  {
+    int i, j, n;
+    closeLasso();
+    int iMin = WIDTH, iMax = -1, jMin = HEIGHT, jMax = -1;
+    for(n=0; n<numLasso; n++)
+    {
+      iMin = Math.min(iMin, lasso_i[n]);
+      iMax = Math.max(iMax, lasso_i[n]);
+      jMin = Math.min(jMin, lasso_j[n]);
+      jMax = Math.max(jMax, lasso_j[n]);
+    }
+    int count = 0;
+    jobQ.beginBatch();
+    for(j=jMin; j<=jMax; j++)
+    {
+      for(i=iMin; i<=iMax; i++)
+      {
+        if(isInLasso(i, j)) count += addToBatch(i, j);
       }
     }
+    jobQ.endBatch();
+    return count;
+  }
+
+  private int addToBatch(int i, int j)
+  {
+    int type = getJobFor(i, j);
+    if(type == 0 || jobQ.addJobOnce(type, i, j, -1) == null) return 0;
+    return 1;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Methods:      cancelJobsAt                             //
+  //               cancelJobsIn                             //
+  // Arguments:    i, j - a tile                            //
+  //               i0, j0, i1, j1 - opposite corners of a   //
+  //               rectangle of tiles                       //
+  // Returns:      number of jobs cancelled                 //
+  // Description:  gives up on the jobs on the tiles that   //
+  //               are still queued or blocked; ones a      //
+  //               machine is working on are left to finish //
+  ////////////////////////////////////////////////////////////
+  public int cancelJobsAt(int i, int j)
+  {
+    int n = 0;
+    JobItem job = jobQ.getJobAt(i, j);
+    while(job != null)
+    {
+      JobItem next = job.getNextOnTile();
+      if(blockedJobs.cancel(job) || jobQ.cancelJob(job)) n++;
+      job = next;
+    }
+    return n;
+  }
+
+  public int cancelJobsIn(int i0, int j0, int i1, int j1)
+  {
+    int i, j, n = 0;
+    for(j=Math.max(0, Math.min(j0, j1));
+        j<=Math.min(HEIGHT-1, Math.max(j0, j1)); j++)
+    {
+      for(i=Math.max(0, Math.min(i0, i1));
+          i<=Math.min(WIDTH-1, Math.max(i0, i1)); i++)
+      {
+        n += cancelJobsAt(i, j);
+      }
+    }
+    return n;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Methods:      clearLasso                               //
+  //               addLassoPoint                            //
+  //               isInLasso                                //
+  // Arguments:    i, j - a tile                            //
+  // Description:  The lasso is the loop through the tiles  //
+  //               added, closed back to the first.  A fast //
+  //               drag skips tiles, so each new point is   //
+  //               joined to the last by a line of tiles    //
+  //               (and the last to the first on closing);  //
+  //               a tile is in the lasso if the loop runs  //
+  //               through it or its center is inside       //
+  //               (even-odd rule)                          //
+  ////////////////////////////////////////////////////////////
+  public void clearLasso()
+  {
+    numLasso = 0;
+  }
+
+  public void addLassoPoint(int i, int j)
+  {
+    if(numLasso==0) addLassoTile(i, j);
+    else addLassoLine(i, j, true);
+  }
+
+  private void closeLasso()
+  {
+    if(numLasso>1) addLassoLine(lasso_i[0], lasso_j[0], false);
+  }
+
+  //steps from the last tile on the loop to (i1,j1) (Bresenham),
+  //adding each tile on the way; the end tile only if _withEnd
+  private void addLassoLine(int i1, int j1, boolean _withEnd)
+  {
+    int i = lasso_i[numLasso-1], j = lasso_j[numLasso-1];
+    int di = Math.abs(i1 - i), dj = -Math.abs(j1 - j);
+    int si = (i < i1) ? 1 : -1, sj = (j < j1) ? 1 : -1;
+    int err = di + dj;
+    while(i!=i1 || j!=j1)
+    {
+      int e2 = 2*err;
+      if(e2 >= dj)
+      {
+        err += dj;
+        i += si;
+      }
+      if(e2 <= di)
+      {
+        err += di;
+        j += sj;
+      }
+      if(_withEnd || i!=i1 || j!=j1) addLassoTile(i, j);
+    }
+  }
+
+  private void addLassoTile(int i, int j)
+  {
+    if(numLasso>0 && lasso_i[numLasso-1]==i && lasso_j[numLasso-1]==j)
+    {
+      return;   //still on the same tile
+    }
+    if(numLasso==lasso_i.length)
+    {
+      int bigger_i[] = new int[numLasso*2], bigger_j[] = new int[numLasso*2];
+      System.arraycopy(lasso_i, 0, bigger_i, 0, numLasso);
+      System.arraycopy(lasso_j, 0, bigger_j, 0, numLasso);
+      lasso_i = bigger_i;
+      lasso_j = bigger_j;
+    }
+    lasso_i[numLasso] = i;
+    lasso_j[numLasso] = j;
+    numLasso++;
+  }
+
+  private boolean isInLasso(int i, int j)
+  {
+    //count the edges crossed going from the tile's center in +i;
+    //the center is nudged by less than a tile ("+ 1" in units of
+    //1/4 tile below) so it's never level with a corner of the loop
+    boolean inside = false;
+    int py = 4*j + 1;
+    int k, m;
+    for(k=0, m=numLasso-1; k<numLasso; m=k++)
+    {
+      if(lasso_i[k]==i && lasso_j[k]==j) return true;
+      int yk = 4*lasso_j[k], ym = 4*lasso_j[m];
+      if((yk > py) == (ym > py)) continue;
+      //where the edge crosses row py, against the tile's 4*i
+      long xCross = (long) 4*lasso_i[k] * (ym - yk)
+                  + (long) 4*(lasso_i[m] - lasso_i[k]) * (py - yk);
+      long px = (long) 4*i * (ym - yk);
+      if(ym > yk ? px < xCross : px > xCross) inside = !inside;
+    }
+    return inside;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       checkKey                                 //
+  // Arguments:    key - KeyEvent.VK_ code of a key press   //
+  // Description:  arrow keys scroll, +/- zoom, m toggles   //
+  //               the minimap, j logs the job metrics, c   //
+  //               cancels the jobs on the tile under the   //
+  //               mouse                                    //
+  ////////////////////////////////////////////////////////////
+  private void checkKey(int key)
+  {
+    switch(key)
+    {
+    case KeyEvent.VK_UP:
+      if(offset_y <= 0) return;
+      offset_y--;
+      needsFullRedraw = true;
+      break;
+    case KeyEvent.VK_RIGHT:
+      if(offset_x + vpWidth >= WIDTH) return;
+      offset_x++;
+      needsFullRedraw = true;
+      break;
+    case KeyEvent.VK_DOWN:
+      if(offset_y + vpHeight >= HEIGHT) return;
+      offset_y++;
+      needsFullRedraw = true;
+      break;
+    case KeyEvent.VK_LEFT:
+      if(offset_x <= 0) return;
+      offset_x--;
+      needsFullRedraw = true;
+      break;
+    case KeyEvent.VK_EQUALS:     //'+' is shift and '=' on most keyboards
+    case KeyEvent.VK_PLUS:
+    case KeyEvent.VK_ADD:
+      if(zoom <= 0) return;
+      setZoom(zoom - 1);
+      break;
+    case KeyEvent.VK_MINUS:
+    case KeyEvent.VK_SUBTRACT:
+      if(zoom >= TileSet.ZOOM_LEVELS-1) return;
+      setZoom(zoom + 1);
+      break;
+    case KeyEvent.VK_M:
+      showMiniMap = !showMiniMap;
+      needsFullRedraw = true;   //erase it from the screen
+      break;
+    case KeyEvent.VK_J:
+      logJobMetrics();
+      return;
+    case KeyEvent.VK_C:
+      if(selTileStage > 0) cancelJobsAt(selTile_i, selTile_j);
+      return;
+    default:
+      return;
+    }
+
+    //later clicks this tick land on the new view
+    computeView(rt);
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       logJobMetrics                            //
+  // Description:  writes the job queue's metrics table to  //
+  //               the log, a line at a time                //
+  ////////////////////////////////////////////////////////////
+  private void logJobMetrics()
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    jobQ.getMetrics().write(new PrintStream(bytes));
+    StringTokenizer lines = new StringTokenizer(bytes.toString(), "\n");
+    while(lines.hasMoreTokens())
+    {
+      Log.log(Log.JOBS, Log.INFO, lines.nextToken());
+    }
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Methods:      setZoom                                  //
+  //               getZoom                                  //
+  // Description:  0 shows tiles at full size; each level   //
+  //               up to TileSet.ZOOM_LEVELS-1 halves them  //
+  ////////////////////////////////////////////////////////////
+  public void setZoom(int level)
+  {
+    zoom = Math.max(0, Math.min(level, TileSet.ZOOM_LEVELS-1));
+    needsFullRedraw = true;
+  }
+  public int  getZoom()
+  {
+    return zoom;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       computeView                              //
+  // Arguments:    target - what the frame is drawn on      //
+  // Description:  works out where tiles go on the screen   //
+  //               and which ones can be seen at all, for   //
+  //               the screen size and zoom level.  A new   //
+  //               size (the applet was resized) means the  //
+  //               saved background is empty and in the     //
+  //               wrong place, so the map is redrawn       //
+  ////////////////////////////////////////////////////////////
+  private void computeView(RenderTarget target)
+  {
+    int w = target.getScreenWidth(), h = target.getScreenHeight();
+    if(w != viewWidth || h != viewHeight)
+    {
+      viewWidth = w;
+      viewHeight = h;
+      needsFullRedraw = true;
+    }
+    stepX = 32 >> zoom;
+    stepY = 16 >> zoom;
+    originX = w/2 - stepX;
+    originY = (h*3) / 10;
+
+    //a tile reaches 2 steps to the right of its corner; terrain is
+    //raised by up to 2 steps, machines up to 1 more, and both reach
+    //4 steps below their corner
+    uMin = Math.floorDiv(-originX, stepX) - 2;
+    uMax = Math.floorDiv(w - originX, stepX) + 1;
+    vMin = Math.floorDiv(-originY, stepY) - 5;
+    vMax = Math.floorDiv(h - originY, stepY) + 4;
+
+    //about how many tiles fit on screen, for scrolling
+    vpWidth = vpHeight = Math.max(1, (h << zoom) / 48);
   }
 
   ////////////////////////////////////////////////////////////
-  // Method:       drawTerrainTile                          //
-  // Arguments:    num - number of tile to draw             //
-  //               x, y - position to draw top left corner  //
+  // Methods:      getFirstVisible                          //
+  //               getLastVisible                           //
+  // Arguments:    l - row of the map                       //
+  // Returns:      first/last column of row l that can be   //
+  //               on-screen; first > last if none can      //
+  ////////////////////////////////////////////////////////////
+  private int getFirstVisible(int l)
+  {
+    int b = l - offset_y;
+    return Math.max(0, offset_x + Math.max(uMin + b, vMin - b));
+  }
+  private int getLastVisible(int l)
+  {
+    int b = l - offset_y;
+    return Math.min(WIDTH-1, offset_x + Math.min(uMax + b, vMax - b));
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       pickTerrainTile                          //
+  // Arguments:    mx, my - point being picked              //
+  //               num - number of tile drawn               //
+  //               x, y - position of its top left corner   //
   //               i, j - index of tile in map              //
   //               height - lowest elevation (0-2) of any   //
   //                        corner of tile                  //
-  // Description:  draws tiles and remembers which one was  //
-  //               under the mouse cursor                   //
+  // Description:  remembers which tile was under the point //
   ////////////////////////////////////////////////////////////
-  public void drawTerrainTile(int num, int x, int y,
-                              int i, int j, int height)
+  private void pickTerrainTile(int mx, int my, int num, int x, int y,
+                               int i, int j, int height)
   {
-    //draw the actual tile if need be, otherwise skip that and
-    //just check the drawing coordinates in relation to the mouse
-    if(needsFullRedraw) gk.drawTile(num, x, y);
-
     if(selTileStage==2) return;   //already found best match
 
-    int mx = gk.getMouseX();
-    int my = gk.getMouseY();
-
     //return if not even a rough match
-    if(mx < x || my < y+16 || mx >= x+64 || my >= y+48) return;
+    if(mx < x || my < y+(16>>zoom) || mx >= x+(64>>zoom)
+        || my >= y+(48>>zoom)) return;
 
     //do we have a "precise" match?
-    if((mx >= x + 16) && (my >= y + 24)
-        && (mx < x + 48) && (my < y + 40))
+    if((mx >= x + (16>>zoom)) && (my >= y + (24>>zoom))
+        && (mx < x + (48>>zoom)) && (my < y + (40>>zoom)))
     {
       selTileStage = 2;
     }
@@ -351,134 +1004,261 @@ class Map
 
   ////////////////////////////////////////////////////////////
   // Method:       redraw                                   //
-  // Description:  redraws a 10x10 tile portion of the map  //
+  // Description:  redraws the visible portion of the map   //
   ////////////////////////////////////////////////////////////
   public void redraw()
   {
+    beginFrame(rt);
+    drawFrame(rt, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    endFrame();
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Methods:      beginFrame                               //
+  //               drawFrame                                //
+  //               endFrame                                 //
+  // Arguments:    target - where to draw; beginFrame lays  //
+  //                        the frame out for its size      //
+  //               top, bottom - rows of the target being   //
+  //                             drawn; tiles outside them  //
+  //                             are skipped                //
+  // Description:  The three parts of redraw().  drawFrame  //
+  //               only reads the map, so StripRenderer can //
+  //               run it on several strips of a frame at   //
+  //               once between the other two.              //
+  ////////////////////////////////////////////////////////////
+  public void beginFrame(RenderTarget target)
+  {
+    computeView(target);
+    selTileStage = 0;
+    if(gk != null) pickTerrain(gk.getMouseX(), gk.getMouseY());
+  }
+
+  public void drawFrame(RenderTarget target, int top, int bottom)
+  {
+    target.setZoom(zoom);
     if(needsFullRedraw)
     {
-      gk.cls(0,0,128);
-      drawTerrain();
-      gk.copyBackground();
-      needsFullRedraw = false;
+      target.cls(0,0,128);
+      drawTerrain(target, top, bottom);
+      target.copyBackground();
     }
     else
     {
-      gk.restoreBackground();
-      drawTerrain();
+      target.restoreBackground();
     }
-    highlightTerrain();
-    drawMachines();
+    highlightTerrain(target);
+    drawMachines(target, top, bottom);
+    if(showMiniMap) miniMap.draw(target);
+  }
+
+  public void endFrame()
+  {
+    lastFrameFull = needsFullRedraw;
+    needsFullRedraw = false;
+    showSelection();
   }
 
   ////////////////////////////////////////////////////////////
-  // Method:       drawTerrain                              //
-  // Description:  draws a 10x10 tile portion of land only  //
+  // Method:       getTileHeight                            //
+  // Arguments:    k, l - index of tile in map              //
+  // Returns:      minimum height of the tile's 4 corners   //
   ////////////////////////////////////////////////////////////
-  public void drawTerrain()
+  private int getTileHeight(int k, int l)
   {
-    int dx, dy, dxStart, dyStart;
-    int i, j;
+    int myHeight = getElevation(k, l);
+    if(getElevation(k+1, l) < myHeight)   myHeight--;
+    if(getElevation(k+1, l+1) < myHeight) myHeight--;
+    if(getElevation(k, l+1) < myHeight)   myHeight--;
+    return myHeight;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       getTerrainTileNum                        //
+  // Arguments:    k, l - index of tile in map              //
+  //               myHeight - from getTileHeight(k, l)      //
+  // Returns:      tile to draw for the terrain at (k,l)    //
+  ////////////////////////////////////////////////////////////
+  private int getTerrainTileNum(int k, int l, int myHeight)
+  {
+    int tileNum = terrain[k][l].getTileNum();
+
+    //adjust tile number for different corner heights
+    if(getElevation(k, l) > myHeight)     tileNum += 1;
+    if(getElevation(k+1, l) > myHeight)   tileNum += 2;
+    if(getElevation(k+1, l+1) > myHeight) tileNum += 4;
+    if(getElevation(k, l+1) > myHeight)   tileNum += 8;
+    return tileNum;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       pickTerrain                              //
+  // Arguments:    mx, my - screen position, e.g. the mouse //
+  // Description:  finds the tile at that position; sets    //
+  //               selTileStage to 0 if there is none       //
+  ////////////////////////////////////////////////////////////
+  public void pickTerrain(int mx, int my)
+  {
+    int k, l;
 
     selTileStage = 0;
 
-    dxStart = 288;
-    dyStart = 144;
-    for(j=0; j<VP_HEIGHT; j++)
+    for(l=0; l<HEIGHT; l++)
     {
-      dx = dxStart;
-      dy = dyStart;
-      for(i=0; i<VP_WIDTH; i++)
+      int kEnd = getLastVisible(l);
+      for(k=getFirstVisible(l); k<=kEnd; k++)
       {
-        int tileNum = terrain[i+offset_x][j+offset_y].getTileNum();
+        int a = k - offset_x, b = l - offset_y;
+        int dx = originX + (a-b) * stepX;
+        int dy = originY + (a+b) * stepY;
+        int myHeight = getTileHeight(k, l);
 
-        //find minimum height of the 4 corners
-        int k = i + offset_x;
-        int l = j + offset_y;
-        int myHeight = getElevation(k, l);
-        if(getElevation(k+1, l) < myHeight)   myHeight--;
-        if(getElevation(k+1, l+1) < myHeight) myHeight--;
-        if(getElevation(k, l+1) < myHeight)   myHeight--;
-
-        //adjust tile number for different corner heights
-        if(getElevation(k, l) > myHeight)     tileNum += 1;
-        if(getElevation(k+1, l) > myHeight)   tileNum += 2;
-        if(getElevation(k+1, l+1) > myHeight) tileNum += 4;
-        if(getElevation(k, l+1) > myHeight)   tileNum += 8;
+        //adjust y coordinate to account for minimum elevation
+        int yAdj = dy - (myHeight * stepY);
+        pickTerrainTile(mx, my, getTerrainTileNum(k, l, myHeight),
+                        dx, yAdj, k, l, myHeight);
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////
+  // Method:       drawTerrain                              //
+  // Arguments:    target - where to draw                   //
+  //               top, bottom - rows being drawn           //
+  // Description:  draws the visible portion of land only   //
+  ////////////////////////////////////////////////////////////
+  public void drawTerrain(RenderTarget target, int top, int bottom)
+  {
+    int k, l;
+
+    for(l=0; l<HEIGHT; l++)
+    {
+      int kEnd = getLastVisible(l);
+      for(k=getFirstVisible(l); k<=kEnd; k++)
+      {
+        int a = k - offset_x, b = l - offset_y;
+        int dx = originX + (a-b) * stepX;
+        int dy = originY + (a+b) * stepY;
+        int myHeight = getTileHeight(k, l);
 
         //adjust y coordinate to account for minimum elevation
-        int yAdj = dy - (myHeight * 16);
-        drawTerrainTile(tileNum, dx, yAdj, k, l, myHeight);
+        int yAdj = dy - (myHeight * stepY);
 
-        dx += 32;
-        dy += 16;
+        //terrain tiles are 3 steps high
+        if(yAdj < bottom && yAdj + 3*stepY > top)
+        {
+          target.drawTile(getTerrainTileNum(k, l, myHeight), dx, yAdj);
+        }
       }
-      dxStart -= 32;
-      dyStart += 16;
     }
-
   }
 
   ////////////////////////////////////////////////////////////
   // Method:       drawMachines                             //
-  // Description:  draws a 10x10 tile portion of land only  //
+  // Arguments:    target - where to draw                   //
+  //               top, bottom - rows being drawn           //
+  // Description:  draws the machines on the visible        //
+  //               portion of land                          //
   ////////////////////////////////////////////////////////////
-  public void drawMachines()
+  public void drawMachines(RenderTarget target, int top, int bottom)
   {
-    int dx, dy, dxStart, dyStart;
-    int i, j;
+    int k, l;
 
-    dxStart = 288;
-    dyStart = 144;
-    for(j=0; j<VP_HEIGHT; j++)
+    for(l=0; l<HEIGHT; l++)
     {
-      dx = dxStart;
-      dy = dyStart;
-      for(i=0; i<VP_WIDTH; i++)
+      int kEnd = getLastVisible(l);
+      for(k=getFirstVisible(l); k<=kEnd; k++)
       {
+        int a = k - offset_x, b = l - offset_y;
+        int dx = originX + (a-b) * stepX;
+        int dy = originY + (a+b) * stepY;
+
         //find minimum height of the 4 corners
-        int k = i + offset_x;
-        int l = j + offset_y;
-        int myHeight = getElevation(k, l);
-        if(getElevation(k+1, l) < myHeight)   myHeight--;
-        if(getElevation(k+1, l+1) < myHeight) myHeight--;
-        if(getElevation(k, l+1) < myHeight)   myHeight--;
+        int myHeight = getTileHeight(k, l);
 
         //adjust y coordinate to account for minimum elevation
-        int yAdj = dy - (myHeight * 16);
-        if(getElevation(k+1, l+1) > myHeight)      yAdj-=16;
-        else if(getElevation(k, l) > myHeight)     yAdj-=8;
+        int yAdj = dy - (myHeight * stepY);
+        if(getElevation(k+1, l+1) > myHeight)      yAdj-=stepY;
+        else if(getElevation(k, l) > myHeight)     yAdj-=stepY/2;
         //else if(getElevation(k+1, l) > myHeight)   yAdj-=4;
         //else if(getElevation(k, l+1) > myHeight)   yAdj-=4;
 
-        terrain[i+offset_x][j+offset_y].draw(dx, yAdj);
-
-        dx += 32;
-        dy += 16;
+        //machine sprites are 2 steps high and sit 0-2 steps below
+        //yAdj depending on how far they have moved
+        if(yAdj < bottom && yAdj + 4*stepY > top)
+        {
+          terrain[k][l].draw(target, dx, yAdj);
+        }
       }
-      dxStart -= 32;
-      dyStart += 16;
     }
   }
 
 
   ////////////////////////////////////////////////////////////
   // Method:       highlightTerrain                         //
+  // Arguments:    target - where to draw                   //
   // Description:  draws wireframe highlight on the terrain //
   //               under the mouse cursor                   //
   ////////////////////////////////////////////////////////////
-  public void highlightTerrain()
+  public void highlightTerrain(RenderTarget target)
   {
     if(selTileStage > 0)
     {
-      Machine m = terrain[selTile_i][selTile_j].findMachine("Any",
-                  JobQ.JOB_ANY);
-      String mDesc = " ";
-      if(m != null) mDesc += m.getJob().getDescription();
-      gk.drawTile(116 + selTileNum, selTile_x, selTile_y);
-      gk.showStatus("(" + selTile_i + "," + selTile_j + ") height: "
-                    + selTile_height + mDesc);
+      target.drawTile(116 + selTileNum, selTile_x, selTile_y);
     }
   }
-}
 
+  ////////////////////////////////////////////////////////////
+  // Method:       showSelection                            //
+  // Description:  shows information about the terrain      //
+  //               under the mouse cursor on the status bar //
+  //               along with the job on it, if any, and    //
+  //               whether it's queued, blocked or being    //
+  //               worked on                                //
+  ////////////////////////////////////////////////////////////
+  public void showSelection()
+  {
+    if(selTileStage > 0 && gk != null)
+    {
+      JobItem job = jobQ.getJobAt(selTile_i, selTile_j);
+
+      //only update the status bar when the text would change
+      int jobType = -1, job_i = 0, job_j = 0, jobParam = 0, status = 0;
+      if(job != null)
+      {
+        jobType = job.getType();
+        job_i = job.getI();
+        job_j = job.getJ();
+        jobParam = job.getParam();
+        if(job.heapIndex >= 0) status = 1;
+        else if(job.blocked)   status = 2;
+        else                   status = 3;
+      }
+      if(statusShown && selTile_i == shown[0] && selTile_j == shown[1]
+          && selTile_height == shown[2] && jobType == shown[3]
+          && job_i == shown[4] && job_j == shown[5]
+          && jobParam == shown[6] && status == shown[7]) return;
+      shown[0] = selTile_i;
+      shown[1] = selTile_j;
+      shown[2] = selTile_height;
+      shown[3] = jobType;
+      shown[4] = job_i;
+      shown[5] = job_j;
+      shown[6] = jobParam;
+      shown[7] = status;
+      statusShown = true;
+
+      statusBuf.setLength(0);
+      statusBuf.append('(').append(selTile_i).append(',').append(selTile_j);
+      statusBuf.append(") height: ").append(selTile_height).append(' ');
+      if(job != null)
+      {
+        job.appendDescription(statusBuf);
+        if(status==1)      statusBuf.append(" (queued)");
+        else if(status==2) statusBuf.append(" (blocked)");
+        else               statusBuf.append(" (working)");
+      }
+      gk.showStatus(statusBuf.toString());
+    }
+  }
+}
@@ -0,0 +1,39 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     MapListener.java                                      //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Told by the Map whenever part of it changes, so that  //
+//            views of the map can update just that part instead    //
+//            of scanning the whole map again.                      //
+//////////////////////////////////////////////////////////////////////
+
+interface MapListener
+{
+  ////////////////////////////////////////////////////////////////////
+  // Method:       terrainChanged                                   //
+  // Arguments:    i, j - tile whose Terrain object was replaced    //
+  ////////////////////////////////////////////////////////////////////
+  void terrainChanged(int i, int j);
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       elevationChanged                                 //
+  // Arguments:    x, y - elevation point that changed; it is the   //
+  //                      corner of tiles (x-1..x, y-1..y)          //
+  ////////////////////////////////////////////////////////////////////
+  void elevationChanged(int x, int y);
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       machinesChanged                                  //
+  // Arguments:    i, j - tile a machine has arrived at or left     //
+  ////////////////////////////////////////////////////////////////////
+  void machinesChanged(int i, int j);
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       mapChanged                                       //
+  // Description:  Anything may have changed, e.g. after randomize  //
+  ////////////////////////////////////////////////////////////////////
+  void mapChanged();
+}
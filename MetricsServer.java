@@ -0,0 +1,358 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     MetricsServer.java                                    //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Serves the game's counters as text at                 //
+//            http://127.0.0.1:port/metrics, in the format that     //
+//            Prometheus scrapes.  Off unless a port is given with  //
+//            -Dforeman.metrics=port or the applet parameter        //
+//            "metrics"; it only listens on localhost.              //
+//                                                                  //
+//            The game thread hands numbers over through atomics    //
+//            (recordTick / recordFrame), and only those and the    //
+//            job queue's JobMetrics are read when a request comes  //
+//            in, so a scrape never touches the map itself.         //
+//            Machines are counted on the game thread once every    //
+//            MACHINE_COUNT_TICKS ticks.                            //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.*;
+import com.sun.net.httpserver.*;
+
+class MetricsServer implements HttpHandler
+{
+  //ticks between counts of the machines
+  static final int MACHINE_COUNT_TICKS = 10;
+
+  //weight of the newest tick in the ticks per second average
+  static final double TPS_WEIGHT = 0.05;
+
+  private volatile Map map;
+  private HttpServer server;
+
+  private AtomicLong ticks = new AtomicLong();
+  private AtomicLong frames = new AtomicLong();
+  private AtomicLong fullFrames = new AtomicLong();   //background redrawn
+  private Histogram  checkTime = new Histogram();     //nanoseconds
+  private Histogram  frameTime = new Histogram();     //nanoseconds
+  private volatile double ticksPerSecond;
+  private long       lastTickTime;
+
+  //busy and idle machines of each Machine.TYPES, and the game
+  //thread's space for counting them
+  private AtomicLongArray busy, idle;
+  private int                nBusy[] = new int[Machine.TYPES.length];
+  private int                nIdle[] = new int[Machine.TYPES.length];
+  private ArrayList<Machine> machineList = new ArrayList<Machine>();
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  MetricsServer                                    //
+  // Arguments:    _map - map whose job queue is reported           //
+  ////////////////////////////////////////////////////////////////////
+  public MetricsServer(Map _map)
+  {
+    map = _map;
+    busy = new AtomicLongArray(Machine.TYPES.length);
+    idle = new AtomicLongArray(Machine.TYPES.length);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       setMap                                           //
+  // Arguments:    _map - new map to report on (counters carry on)  //
+  ////////////////////////////////////////////////////////////////////
+  public void setMap(Map _map)
+  {
+    map = _map;
+    lastTickTime = 0;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       startIfEnabled                                   //
+  // Arguments:    _map - map to report on                          //
+  //               param - applet parameter "metrics" or null       //
+  // Returns:      the running server, or null if no port was set   //
+  //               or it couldn't listen (which is logged)          //
+  ////////////////////////////////////////////////////////////////////
+  static public MetricsServer startIfEnabled(Map _map, String param)
+  {
+    try
+    {
+      if(param == null) param = System.getProperty("foreman.metrics");
+    }
+    catch(SecurityException e)
+    {
+      //running as an applet
+    }
+    if(param == null) return null;
+
+    MetricsServer metrics = new MetricsServer(_map);
+    try
+    {
+      metrics.start(Integer.parseInt(param.trim()));
+      return metrics;
+    }
+    catch(Exception e)
+    {
+      Log.log(Log.GAME, Log.ERROR, "Can't serve metrics: " + e);
+      return null;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      start                                            //
+  //               stop                                             //
+  // Arguments:    port - 0 picks a free one (see getPort)          //
+  ////////////////////////////////////////////////////////////////////
+  public void start(int port) throws IOException
+  {
+    InetAddress localhost = InetAddress.getLoopbackAddress();
+    server = HttpServer.create(new InetSocketAddress(localhost, port), 4);
+    server.createContext("/metrics", this);
+    server.start();
+    if(Log.isEnabled(Log.GAME, Log.INFO))
+    {
+      Log.log(Log.GAME, Log.INFO, "Serving metrics at http://127.0.0.1:"
+              + getPort() + "/metrics");
+    }
+  }
+
+  public void stop()
+  {
+    if(server != null) server.stop(0);
+    server = null;
+  }
+
+  public int  getPort()
+  {
+    return server.getAddress().getPort();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      recordTick                                       //
+  //               recordFrame                                      //
+  // Arguments:    nanos - time map.check() / drawing + showing the //
+  //                       frame took                               //
+  //               full - true if the whole background was redrawn  //
+  //                      rather than restored from the last frame  //
+  // Description:  Called by the game thread after each one        //
+  ////////////////////////////////////////////////////////////////////
+  public void recordTick(long nanos)
+  {
+    long now = System.nanoTime();
+    if(lastTickTime != 0)
+    {
+      double tps = 1e9 / Math.max(1, now - lastTickTime);
+      if(ticksPerSecond==0) ticksPerSecond = tps;
+      else ticksPerSecond += (tps - ticksPerSecond) * TPS_WEIGHT;
+    }
+    lastTickTime = now;
+    checkTime.record(nanos);
+
+    if(ticks.getAndIncrement() % MACHINE_COUNT_TICKS == 0)
+    {
+      countMachines();
+    }
+  }
+
+  public void recordFrame(long nanos, boolean full)
+  {
+    frames.incrementAndGet();
+    if(full) fullFrames.incrementAndGet();
+    frameTime.record(nanos);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       countMachines                                    //
+  // Description:  Counts busy and idle machines of each type       //
+  ////////////////////////////////////////////////////////////////////
+  private void countMachines()
+  {
+    int t;
+    for(t=0; t<nBusy.length; t++) nBusy[t] = nIdle[t] = 0;
+    map.getMachines(machineList);
+    for(int m=0; m<machineList.size(); m++)
+    {
+      Machine machine = machineList.get(m);
+      t = Machine.getTypeIndex(machine.getType());
+      if(t < 0) continue;
+      if(machine.getJob() != null) nBusy[t]++;
+      else                         nIdle[t]++;
+    }
+    for(t=0; t<nBusy.length; t++)
+    {
+      busy.set(t, nBusy[t]);
+      idle.set(t, nIdle[t]);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       handle                                           //
+  // Description:  Answers a request on the server's thread         //
+  ////////////////////////////////////////////////////////////////////
+  public void handle(HttpExchange exchange) throws IOException
+  {
+    try
+    {
+      byte body[] = getText().getBytes("UTF-8");
+      exchange.getResponseHeaders().set("Content-Type",
+                                        "text/plain; version=0.0.4");
+      exchange.sendResponseHeaders(200, body.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(body);
+      out.close();
+    }
+    finally
+    {
+      exchange.close();
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getText                                          //
+  // Returns:      every metric, one per line                       //
+  ////////////////////////////////////////////////////////////////////
+  public String getText()
+  {
+    StringBuffer buf = new StringBuffer(4096);
+    int t;
+
+    header(buf, "foreman_ticks_total", "counter", "Game ticks run");
+    buf.append("foreman_ticks_total ").append(ticks.get()).append('\n');
+    header(buf, "foreman_ticks_per_second", "gauge",
+           "Moving average of the tick rate");
+    buf.append("foreman_ticks_per_second ")
+       .append(round(ticksPerSecond)).append('\n');
+    header(buf, "foreman_check_seconds", "summary",
+           "Time taken by map.check()");
+    summary(buf, "foreman_check_seconds", null, checkTime, 1e-9);
+    header(buf, "foreman_frame_seconds", "summary",
+           "Time to draw and show a frame");
+    summary(buf, "foreman_frame_seconds", null, frameTime, 1e-9);
+
+    header(buf, "foreman_frames_total", "counter",
+           "Frames drawn, by whether the background was redrawn or "
+           + "reused from the last frame");
+    long full = fullFrames.get(), all = frames.get();
+    buf.append("foreman_frames_total{background=\"redrawn\"} ")
+       .append(full).append('\n');
+    buf.append("foreman_frames_total{background=\"reused\"} ")
+       .append(all - full).append('\n');
+    header(buf, "foreman_background_reuse_ratio", "gauge",
+           "Share of frames that reused the saved background");
+    buf.append("foreman_background_reuse_ratio ")
+       .append(all==0 ? 0 : round((double) (all - full) / all))
+       .append('\n');
+
+    header(buf, "foreman_machines", "gauge",
+           "Machines by type and whether they have a job");
+    for(t=0; t<Machine.TYPES.length; t++)
+    {
+      String type = Machine.TYPES[t];
+      buf.append("foreman_machines{type=\"").append(type)
+         .append("\",state=\"busy\"} ").append(busy.get(t)).append('\n');
+      buf.append("foreman_machines{type=\"").append(type)
+         .append("\",state=\"idle\"} ").append(idle.get(t)).append('\n');
+    }
+
+    Map current = map;
+    if(current == null) return buf.toString();
+    JobMetrics jobs = current.getJobQ().getMetrics();
+    header(buf, "foreman_jobs_queued", "gauge", "Jobs in the queue");
+    for(t=0; t<JobMetrics.TYPES; t++)
+    {
+      buf.append("foreman_jobs_queued").append(label(t)).append(' ')
+         .append(jobs.getCurrentDepth(t)).append('\n');
+    }
+    header(buf, "foreman_jobs_enqueued_total", "counter", "Jobs queued");
+    for(t=0; t<JobMetrics.TYPES; t++)
+    {
+      buf.append("foreman_jobs_enqueued_total").append(label(t))
+         .append(' ').append(jobs.getEnqueued(t)).append('\n');
+    }
+    header(buf, "foreman_jobs_completed_total", "counter", "Jobs done");
+    for(t=0; t<JobMetrics.TYPES; t++)
+    {
+      buf.append("foreman_jobs_completed_total").append(label(t))
+         .append(' ').append(jobs.getCompleted(t)).append('\n');
+    }
+    header(buf, "foreman_jobs_requeued_total", "counter",
+           "Blocked jobs put back once the ground changed");
+    for(t=0; t<JobMetrics.TYPES; t++)
+    {
+      buf.append("foreman_jobs_requeued_total").append(label(t))
+         .append(' ').append(jobs.getRequeued(t)).append('\n');
+    }
+    header(buf, "foreman_jobs_blocked", "gauge",
+           "Jobs waiting for the ground around them to change");
+    buf.append("foreman_jobs_blocked ")
+       .append(current.getBlockedJobs().getNumJobs()).append('\n');
+    header(buf, "foreman_job_wait_seconds", "summary",
+           "Time from a job being queued to a machine taking it");
+    for(t=0; t<JobMetrics.TYPES; t++)
+    {
+      summary(buf, "foreman_job_wait_seconds", label(t), jobs.getWait(t),
+              1.0 / JobQ.TICKS_PER_SECOND);
+    }
+    header(buf, "foreman_job_service_seconds", "summary",
+           "Time from a machine taking a job to finishing it");
+    for(t=0; t<JobMetrics.TYPES; t++)
+    {
+      summary(buf, "foreman_job_service_seconds", label(t),
+              jobs.getService(t), 1.0 / JobQ.TICKS_PER_SECOND);
+    }
+    return buf.toString();
+  }
+
+  static String label(int t)
+  {
+    return "{job=\"" + JobMetrics.TYPE_NAME[t] + "\"}";
+  }
+
+  static double round(double d)
+  {
+    return Math.round(d * 1000) / 1000.0;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      header                                           //
+  //               summary                                          //
+  // Arguments:    buf - where the text goes                        //
+  //               name, type, help - of the metric                 //
+  //               labels - e.g. {job="FILL"}; null for none        //
+  //               h - histogram to report the quantiles of         //
+  //               scale - seconds per histogram unit               //
+  ////////////////////////////////////////////////////////////////////
+  static void header(StringBuffer buf, String name, String type,
+                     String help)
+  {
+    buf.append("# HELP ").append(name).append(' ').append(help)
+       .append('\n');
+    buf.append("# TYPE ").append(name).append(' ').append(type)
+       .append('\n');
+  }
+
+  static void summary(StringBuffer buf, String name, String labels,
+                      Histogram h, double scale)
+  {
+    String inner = labels==null ? ""
+                   : labels.substring(1, labels.length()-1) + ",";
+    double q[] = { 0.5, 0.95, 0.99 };
+    for(int k=0; k<q.length; k++)
+    {
+      buf.append(name).append("{").append(inner).append("quantile=\"")
+         .append(q[k]).append("\"} ")
+         .append(h.getPercentile(q[k] * 100) * scale).append('\n');
+    }
+    String suffix = labels==null ? "" : labels;
+    buf.append(name).append("_sum").append(suffix).append(' ')
+       .append(h.getSum() * scale).append('\n');
+    buf.append(name).append("_count").append(suffix).append(' ')
+       .append(h.getCount()).append('\n');
+  }
+}
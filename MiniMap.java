@@ -0,0 +1,286 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     MiniMap.java                                          //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  A small overhead picture of the whole map, a few      //
+//            pixels per tile, showing terrain type, elevation      //
+//            shading and where the machines are.  It listens to    //
+//            the map and only repaints the tiles that change, so   //
+//            drawing it each frame costs no more than a copy.      //
+//                                                                  //
+//            A map too big for that gets a pixel for each block of //
+//            tiles instead, the average of their colors (or a      //
+//            machine's color if there's one in the block), so the  //
+//            overview never grows past MAX_SIZE.                   //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+
+class MiniMap implements MapListener
+{
+  //largest minimap (in pixels across) that the default scale and
+  //block give: a fifth of the width of the default screen
+  static final int MAX_SIZE = GameKit.HRES / 5;
+
+  private Map map;
+  private int scale;            //pixels per tile across and down
+  private int block;            //tiles per pixel across and down
+  private int width, height;    //in pixels
+  private int pixels[];         //aarrggbb, top row first
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  MiniMap                                          //
+  // Arguments:    _map - map to show; the minimap registers itself //
+  //                      as a listener                             //
+  //               _scale - pixels per tile                         //
+  //               _block - tiles per pixel; if more than 1, _scale //
+  //                        is taken as 1                           //
+  ////////////////////////////////////////////////////////////////////
+  public MiniMap(Map _map, int _scale, int _block)
+  {
+    map = _map;
+    block = Math.max(_block, 1);
+    scale = (block > 1) ? 1 : Math.max(_scale, 1);
+    width = (map.WIDTH + block - 1) / block * scale;
+    height = (map.HEIGHT + block - 1) / block * scale;
+    pixels = new int[width*height];
+    map.addMapListener(this);
+    mapChanged();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getDefaultScale                                  //
+  //               getDefaultBlock                                  //
+  // Arguments:    mapWidth, mapHeight - size of map in tiles       //
+  // Returns:      up to 4 pixels per tile, fewer for big maps;     //
+  //               tiles per pixel for a map more than MAX_SIZE     //
+  //               across (1 for smaller ones)                      //
+  ////////////////////////////////////////////////////////////////////
+  static public int getDefaultScale(int mapWidth, int mapHeight)
+  {
+    return Math.max(1, Math.min(4, MAX_SIZE / Math.max(mapWidth, mapHeight)));
+  }
+
+  static public int getDefaultBlock(int mapWidth, int mapHeight)
+  {
+    return (Math.max(mapWidth, mapHeight) + MAX_SIZE - 1) / MAX_SIZE;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getWidth                                         //
+  //               getHeight                                        //
+  //               getPixels                                        //
+  ////////////////////////////////////////////////////////////////////
+  public int   getWidth()
+  {
+    return width;
+  }
+  public int   getHeight()
+  {
+    return height;
+  }
+  public int[] getPixels()
+  {
+    return pixels;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       paintTile                                        //
+  // Arguments:    i, j - tile to repaint                           //
+  // Description:  Lighter tiles are higher; tiles sloping down to  //
+  //               the east are a little lighter again, which gives //
+  //               the hills some relief.  A tile with machines on  //
+  //               it gets a square of the first machine's color.   //
+  //               With more than one tile per pixel, the pixel the //
+  //               tile is in is repainted instead.                 //
+  ////////////////////////////////////////////////////////////////////
+  private void paintTile(int i, int j)
+  {
+    if(i<0 || i>=map.WIDTH || j<0 || j>=map.HEIGHT) return;
+    if(block > 1)
+    {
+      paintBlock(i / block, j / block);
+      return;
+    }
+
+    Terrain t = map.getTerrain(i, j);
+    fill(i*scale, j*scale, scale, getColor(t, i, j));
+
+    Machine m = (t != null) ? t.getFirstMachine() : null;
+    if(m != null)
+    {
+      //whole tile when tiles are tiny, else a square in the middle
+      int size = (scale < 3) ? scale : scale/2;
+      int inset = (scale - size) / 2;
+      fill(i*scale + inset, j*scale + inset, size,
+           0xff000000 | m.getMapColor());
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       paintBlock                                       //
+  // Arguments:    x, y - pixel to repaint                          //
+  // Description:  Averages the colors of the block of tiles under  //
+  //               the pixel, unless a machine is on one of them    //
+  ////////////////////////////////////////////////////////////////////
+  private void paintBlock(int x, int y)
+  {
+    int i, j, r = 0, g = 0, b = 0, n = 0;
+    for(j=y*block; j<Math.min(map.HEIGHT, (y+1)*block); j++)
+    {
+      for(i=x*block; i<Math.min(map.WIDTH, (x+1)*block); i++)
+      {
+        Terrain t = map.getTerrain(i, j);
+        Machine m = (t != null) ? t.getFirstMachine() : null;
+        if(m != null)
+        {
+          pixels[y*width + x] = 0xff000000 | m.getMapColor();
+          return;
+        }
+        int color = getColor(t, i, j);
+        r += (color >> 16) & 0xff;
+        g += (color >> 8) & 0xff;
+        b += color & 0xff;
+        n++;
+      }
+    }
+    pixels[y*width + x] = 0xff000000 | ((r/n) << 16) | ((g/n) << 8) | (b/n);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getColor                                         //
+  // Arguments:    t - the terrain at i, j (may be null)            //
+  // Returns:      the tile's shaded color, or black for none       //
+  ////////////////////////////////////////////////////////////////////
+  private int getColor(Terrain t, int i, int j)
+  {
+    int color = 0xff000000;
+    if(t != null)
+    {
+      int e00 = map.getElevation(i, j),   e10 = map.getElevation(i+1, j);
+      int e01 = map.getElevation(i, j+1), e11 = map.getElevation(i+1, j+1);
+      int shade = 192 + 16*(e00 + e10 + e01 + e11)
+                  + 24*((e00 + e01) - (e10 + e11));
+      shade = Math.max(96, Math.min(shade, 384));
+
+      int base = t.getMapColor();
+      int r = Math.min(255, (((base >> 16) & 0xff) * shade) >> 8);
+      int g = Math.min(255, (((base >> 8) & 0xff) * shade) >> 8);
+      int b = Math.min(255, ((base & 0xff) * shade) >> 8);
+      color = 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+    return color;
+  }
+
+  private void fill(int x, int y, int size, int color)
+  {
+    int j;
+    for(j=y; j<y+size; j++)
+    {
+      java.util.Arrays.fill(pixels, j*width + x, j*width + x + size, color);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      terrainChanged                                   //
+  //               elevationChanged                                 //
+  //               machinesChanged                                  //
+  //               mapChanged                                       //
+  // Description:  MapListener; repaint only the affected tiles     //
+  ////////////////////////////////////////////////////////////////////
+  public void terrainChanged(int i, int j)
+  {
+    paintTile(i, j);
+  }
+
+  public void elevationChanged(int x, int y)
+  {
+    paintTile(x-1, y-1);
+    paintTile(x,   y-1);
+    paintTile(x-1, y);
+    paintTile(x,   y);
+  }
+
+  public void machinesChanged(int i, int j)
+  {
+    paintTile(i, j);
+  }
+
+  public void mapChanged()
+  {
+    int i, j;
+    for(j=0; j<map.HEIGHT; j+=block)
+    {
+      for(i=0; i<map.WIDTH; i+=block)
+      {
+        paintTile(i, j);
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       draw                                             //
+  // Arguments:    rt - where to draw                               //
+  // Description:  Draws the minimap in the top right corner with a //
+  //               black border                                     //
+  ////////////////////////////////////////////////////////////////////
+  public void draw(RenderTarget rt)
+  {
+    int x = rt.getScreenWidth() - width - 8, y = 8;
+    rt.clearRect(x-1, y-1, width+2, height+2);
+    rt.drawPixels(pixels, width, height, x, y);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  // Arguments:    args[0] - file to save the overview to (.ppm)    //
+  //               args[1], args[2] - map size (default 21x21)      //
+  //               args[3] - pixels per tile (optional)             //
+  //               args[4] - tiles per pixel (optional)             //
+  // Description:  Renders an overview of a whole random site       //
+  //               without any display                              //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[]) throws IOException
+  {
+    if(args.length < 1)
+    {
+      System.out.println(
+        "usage: java MiniMap out.ppm [width height [scale [block]]]");
+      return;
+    }
+    int w = Map.DEFAULT_WIDTH, h = Map.DEFAULT_HEIGHT;
+    if(args.length >= 3)
+    {
+      w = Integer.parseInt(args[1]);
+      h = Integer.parseInt(args[2]);
+    }
+    int s = (args.length >= 4) ? Integer.parseInt(args[3])
+                               : getDefaultScale(w, h);
+    int b = (args.length >= 5) ? Integer.parseInt(args[4])
+                               : getDefaultBlock(w, h);
+
+    Map site = new Map(null, w, h);
+    site.randomize();
+    MiniMap miniMap = new MiniMap(site, s, b);
+
+    //no tiles are needed to draw the overview
+    FrameBuffer fb = new FrameBuffer(miniMap.getWidth(),
+                                     miniMap.getHeight(),
+                                     new TileSet(GameKit.MAX_TILES));
+    fb.drawPixels(miniMap.getPixels(), miniMap.getWidth(),
+                  miniMap.getHeight(), 0, 0);
+
+    FileOutputStream out = new FileOutputStream(args[0]);
+    try
+    {
+      fb.writePPM(out);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+}
@@ -12,6 +12,7 @@ class ObjItem
 {
   protected Machine machine;
   protected ObjItem nextItem;
+  ObjItem nextFree;           //link in ObjList's node pool
 
   ////////////////////////////////////////////////////////////////////
   // Constructor:  ObjItem                                          //
@@ -13,6 +13,12 @@ class ObjList
   static private GameKit gk;
   private ObjItem head, tail, lastReturned;
 
+  //Removed nodes are reused by later addItem calls, but not until
+  //recycleRemoved() is called.  A machine often removes itself from
+  //the list that is being walked, and the walk carries on from the
+  //removed node's nextItem, so it must not change until then.
+  static private ObjItem freeList, removedList;
+
   ////////////////////////////////////////////////////////////////////
   // Constructor:  ObjList                                          //
   ////////////////////////////////////////////////////////////////////
@@ -41,7 +47,7 @@ class ObjList
     //list empty?
     if(head==null)
     {
-      head = tail = new ObjItem(item);
+      head = tail = newItem(item);
       return true;
     }
 
@@ -53,7 +59,7 @@ class ObjList
     }
 
     //add object to end of list
-    tail.setNextItem(new ObjItem(item));
+    tail.setNextItem(newItem(item));
     tail = tail.getNextItem();
     return true;
   }
@@ -74,8 +80,10 @@ class ObjList
     // 1) is item at head of list?
     if(head.getMachine() == item)
     {
+      ObjItem removed = head;
       head = head.getNextItem();
       if(head == null) tail = null;
+      releaseItem(removed);
       return true;
     }
 
@@ -94,6 +102,7 @@ class ObjList
         {
           prev.setNextItem(cur.getNextItem());
         }
+        releaseItem(cur);
         return true;
       }
       prev = cur;  //remember previous element
@@ -103,6 +112,63 @@ class ObjList
     return false;  //didn't find it;
   }
 
+  ////////////////////////////////////////////////////////////////////
+  // Method:       reserve                                          //
+  // Arguments:    n - nodes to add to the pool                     //
+  // Description:  A machine holds a node on the tile it is on and, //
+  //               until the next recycleRemoved(), one on the tile //
+  //               it just left.  Reserving both when the machine   //
+  //               is made keeps its moves from allocating.         //
+  ////////////////////////////////////////////////////////////////////
+  static public void reserve(int n)
+  {
+    for(; n>0; n--)
+    {
+      ObjItem item = new ObjItem(null);
+      item.nextFree = freeList;
+      freeList = item;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      newItem                                          //
+  //               releaseItem                                      //
+  //               recycleRemoved                                   //
+  // Description:  Node pool.  Call recycleRemoved() at a point     //
+  //               where no list is being walked, e.g. the start of //
+  //               each tick.                                       //
+  ////////////////////////////////////////////////////////////////////
+  static private ObjItem newItem(Machine m)
+  {
+    ObjItem item = freeList;
+    if(item==null) return new ObjItem(m);
+
+    freeList = item.nextFree;
+    item.nextFree = null;
+    item.machine = m;
+    item.nextItem = null;
+    return item;
+  }
+
+  static private void releaseItem(ObjItem item)
+  {
+    item.nextFree = removedList;
+    removedList = item;
+  }
+
+  static public void recycleRemoved()
+  {
+    while(removedList != null)
+    {
+      ObjItem item = removedList;
+      removedList = item.nextFree;
+      item.machine = null;
+      item.nextItem = null;
+      item.nextFree = freeList;
+      freeList = item;
+    }
+  }
+
   ////////////////////////////////////////////////////////////////////
   // Methods:      setCurItem                                       //
   //               getCurItem                                       //
@@ -117,6 +183,18 @@ class ObjList
     return lastReturned;
   }
 
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getHead                                          //
+  // Returns:      first node of the list or null if empty          //
+  // Note:         Walking the nodes with ObjItem.getNextItem()     //
+  //               leaves the list's own position untouched, so     //
+  //               several threads can read the list at once.       //
+  ////////////////////////////////////////////////////////////////////
+  public ObjItem getHead()
+  {
+    return head;
+  }
+
   ////////////////////////////////////////////////////////////////////
   // Method:       getFirstItem                                     //
   // Returns:      first Machine object in list or null if none     //
@@ -0,0 +1,44 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     PlanStep.java                                         //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  One job in a JobScheduler plan and the steps waiting  //
+//            for it                                                //
+//////////////////////////////////////////////////////////////////////
+
+import java.util.ArrayList;
+
+class PlanStep
+{
+  JobScheduler        owner;
+  int                 type, i, j;
+  int                 waitingOn;   //prerequisites not done yet
+  int                 pending;     //linked jobs not finished yet
+  int                 priority;    //JobQ.PRIORITY_NORMAL, etc.
+  ArrayList<PlanStep> dependents = new ArrayList<PlanStep>();
+
+  public PlanStep(JobScheduler _owner, int _type, int _i, int _j)
+  {
+    owner = _owner;
+    type = _type;
+    i = _i;
+    j = _j;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       dependOn                                         //
+  // Arguments:    prereq - step that must be done first, or null   //
+  ////////////////////////////////////////////////////////////////////
+  public void dependOn(PlanStep prereq)
+  {
+    if(prereq==null || prereq==this || prereq.dependents.contains(this))
+    {
+      return;
+    }
+    prereq.dependents.add(this);
+    waitingOn++;
+  }
+}
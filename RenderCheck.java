@@ -0,0 +1,121 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     RenderCheck.java                                      //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Checks that a FrameBuffer draws the same pixels as    //
+//            AWT does.  Every frame of a headless map with its     //
+//            machines at work is drawn both into a FrameBuffer and //
+//            on the AwtFrame GameKit draws with, here made on      //
+//            BufferedImages so no display is needed.  Each zoom    //
+//            level is run in turn, redrawing in full and from the  //
+//            saved background.                                     //
+//                                                                  //
+//              java RenderCheck [options]                          //
+//                -dir d       directory holding the tile sheets    //
+//                -ticks n     frames at each zoom level (50)       //
+//                                                                  //
+//            It exits with status 1 if any pixel differs.          //
+//////////////////////////////////////////////////////////////////////
+
+import java.awt.image.*;
+import java.io.*;
+
+class RenderCheck
+{
+  static int ticks = 50;
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       compare                                          //
+  // Arguments:    fb, awt - the same frame drawn both ways         //
+  //               what - which frame, for the report               //
+  // Returns:      number of pixels that differ                     //
+  ////////////////////////////////////////////////////////////////////
+  static int compare(FrameBuffer fb, AwtFrame awt, String what)
+  {
+    BufferedImage image = (BufferedImage) awt.getImage();
+    int pixels[] = fb.getPixels();
+    int w = fb.getWidth(), h = fb.getHeight();
+    int x, y, differ = 0;
+    for(y=0; y<h; y++)
+    {
+      for(x=0; x<w; x++)
+      {
+        int a = pixels[y*w + x] & 0xffffff;
+        int b = image.getRGB(x, y) & 0xffffff;
+        if(a == b) continue;
+        if(differ == 0)
+        {
+          System.out.println(what + ": first differs at (" + x + "," + y
+                             + "), " + Integer.toHexString(a) + " vs "
+                             + Integer.toHexString(b));
+        }
+        differ++;
+      }
+    }
+    return differ;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       makeAwtFrame                                     //
+  // Arguments:    w, h - size in pixels                            //
+  //               tiles - pixels of the tiles to draw with         //
+  // Returns:      an AwtFrame on a pair of new BufferedImages      //
+  ////////////////////////////////////////////////////////////////////
+  static AwtFrame makeAwtFrame(int w, int h, TileSet tiles)
+  {
+    return new AwtFrame(new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB),
+                        new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB),
+                        w, h, AwtFrame.createTileImages(tiles), null);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[]) throws Exception
+  {
+    int n;
+    for(n=0; n<args.length; n++)
+    {
+      if(args[n].equals("-dir"))        Benchmark.dir = new File(args[++n]);
+      else if(args[n].equals("-ticks")) ticks = Integer.parseInt(args[++n]);
+      else
+      {
+        System.out.println("usage: java RenderCheck [-dir d] [-ticks n]");
+        System.exit(2);
+      }
+    }
+
+    TileSet tiles = Benchmark.getTiles();
+    FrameBuffer fb = new FrameBuffer(GameKit.HRES, GameKit.VRES, tiles);
+    AwtFrame awt = makeAwtFrame(GameKit.HRES, GameKit.VRES, tiles);
+    Map map = Benchmark.makeMap(Map.DEFAULT_WIDTH, Map.DEFAULT_HEIGHT, 8);
+    map.addJobsIn(0, 0, Map.DEFAULT_WIDTH-1, Map.DEFAULT_HEIGHT-1);
+
+    int frames = 0, differ = 0, level;
+    for(level=0; level<TileSet.ZOOM_LEVELS; level++)
+    {
+      map.setZoom(level);
+      for(n=0; n<ticks; n++)
+      {
+        map.check();
+
+        //drawFrame only reads the map, so both see the same frame
+        map.beginFrame(fb);
+        map.drawFrame(fb, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        map.drawFrame(awt, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        map.endFrame();
+
+        int d = compare(fb, awt, "zoom " + level + " frame " + n);
+        if(d > 0) differ++;
+        frames++;
+      }
+    }
+
+    System.out.println(frames + " frames drawn, " + differ
+                       + " with pixels that differ");
+    if(differ > 0) System.exit(1);
+  }
+}
@@ -0,0 +1,67 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     RenderTarget.java                                     //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  The drawing operations the Map and its machines need. //
+//            GameKit draws them on-screen with AWT; FrameBuffer    //
+//            draws them into a plain array of pixels.              //
+//////////////////////////////////////////////////////////////////////
+
+interface RenderTarget
+{
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getScreenWidth                                   //
+  //               getScreenHeight                                  //
+  // Returns:      size of the drawing area in pixels               //
+  ////////////////////////////////////////////////////////////////////
+  int getScreenWidth();
+  int getScreenHeight();
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      setZoom                                          //
+  //               getZoom                                          //
+  // Description:  Zoom level 0 draws tiles full size, each level   //
+  //               after that draws them at half the size of the    //
+  //               last (see TileSet.ZOOM_LEVELS)                   //
+  ////////////////////////////////////////////////////////////////////
+  void setZoom(int level);
+  int  getZoom();
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       cls                                              //
+  // Description:  Clears the whole target to the color (r,g,b)    //
+  ////////////////////////////////////////////////////////////////////
+  void cls(int r, int g, int b);
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       clearRect                                        //
+  // Description:  Fills the given rectangle with solid black       //
+  ////////////////////////////////////////////////////////////////////
+  void clearRect(int x, int y, int width, int height);
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drawTile                                         //
+  // Description:  Draws tile number n with its top left at (x,y)   //
+  ////////////////////////////////////////////////////////////////////
+  void drawTile(int n, int x, int y);
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       drawPixels                                       //
+  // Arguments:    pix - w*h aarrggbb values, drawn fully opaque    //
+  //               x, y - where to put the top left corner          //
+  // Description:  The same array may be drawn again each frame     //
+  //               after its contents have changed                  //
+  ////////////////////////////////////////////////////////////////////
+  void drawPixels(int pix[], int w, int h, int x, int y);
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      copyBackground                                   //
+  //               restoreBackground                                //
+  // Description:  Save the current picture and put it back later   //
+  ////////////////////////////////////////////////////////////////////
+  void copyBackground();
+  void restoreBackground();
+}
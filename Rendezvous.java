@@ -0,0 +1,120 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Rendezvous.java                                       //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Where a Hoe with a load dug up meets the Truck that   //
+//            takes it.  The Hoe posts the load along with the      //
+//            JOB_WAIT job that calls for a truck; the Truck that   //
+//            takes the job claims it, and tells it when it gets to //
+//            the site, which tells the Hoe straight away.  So the  //
+//            Hoe never has to look around for a waiting truck, and //
+//            it can't call a second truck for the same load.       //
+//                                                                  //
+//            Each Hoe has two, used for one load after another:    //
+//            the one it's loading now and the next, which it may   //
+//            send a truck to early (see Hoe.dispatchTrucks).       //
+//////////////////////////////////////////////////////////////////////
+
+class Rendezvous
+{
+  private Machine hoe;         //posts the loads
+  private JobItem job;         //JOB_WAIT calling for the truck
+  private Machine truck;       //that took the job, or null
+  private boolean posted;      //a load is waiting for a truck
+  private boolean arrived;     //the truck is at the site
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  Rendezvous                                       //
+  ////////////////////////////////////////////////////////////////////
+  public Rendezvous(Machine _hoe)
+  {
+    hoe = _hoe;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      isPosted                                         //
+  //               getTruck - the truck once it's at the site       //
+  //               getArrivalTicks - about how long until it is,    //
+  //                   or -1 if no truck has taken the job yet      //
+  ////////////////////////////////////////////////////////////////////
+  public boolean isPosted()
+  {
+    return posted;
+  }
+  public Machine getTruck()
+  {
+    return arrived ? truck : null;
+  }
+  public int getArrivalTicks()
+  {
+    if(truck==null) return -1;
+    if(arrived) return 0;
+    return truck.getTravelTicks(job.getI(), job.getJ());
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      post                                             //
+  //               claim                                            //
+  //               arrive                                           //
+  //               done                                             //
+  // Arguments:    _job - the JOB_WAIT job calling for a truck      //
+  //               _truck - truck that took it                      //
+  // Description:  The Hoe posts a load; the Truck claims it when   //
+  //               it takes the job and arrives when it gets to the //
+  //               site; the Hoe is done once the dirt is in it     //
+  ////////////////////////////////////////////////////////////////////
+  public void post(JobItem _job)
+  {
+    job = _job;
+    job.rendezvous = this;
+    posted = true;
+    truck = null;
+    arrived = false;
+  }
+
+  public void claim(Machine _truck)
+  {
+    truck = _truck;
+  }
+
+  public void arrive(Machine _truck)
+  {
+    truck = _truck;
+    arrived = true;
+    hoe.truckArrived(this);
+  }
+
+  public void done()
+  {
+    posted = false;
+    job = null;
+    truck = null;
+    arrived = false;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       cancel                                           //
+  // Arguments:    jobQ - the map's                                 //
+  // Description:  For a load the Hoe won't dig after all (a truck  //
+  //               was sent early and the dirt's gone): finishes    //
+  //               the JOB_WAIT, freeing the truck if one took it,  //
+  //               or else takes it back out of the JobQ            //
+  ////////////////////////////////////////////////////////////////////
+  public void cancel(JobQ jobQ)
+  {
+    if(!posted) return;
+    job.rendezvous = null;
+    if(truck != null)
+    {
+      truck.finishJob();
+    }
+    else
+    {
+      jobQ.withdrawJob(job);
+    }
+    done();
+  }
+}
@@ -0,0 +1,317 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Route.java                                            //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  The stops of one machine's trip, each a job it has    //
+//            already claimed, in the order to drive them.  plan()  //
+//            tries two orders from where the trip starts and keeps //
+//            whichever getTicks() says is quicker, counting turns: //
+//                                                                  //
+//              a tour - the nearest stop left each time, then any  //
+//                crossings taken out by reversing stretches of it  //
+//                while that makes it shorter (2-opt)               //
+//              a sweep - row by row, every other row backwards     //
+//                (boustrophedon), along either axis; best on a     //
+//                block of stops, since turning takes time too      //
+//                                                                  //
+//            A route only holds a few stops, so this is cheap.     //
+//            Distances are in tiles the way machines drive them:   //
+//            diagonally as far as they can and then straight.      //
+//////////////////////////////////////////////////////////////////////
+
+class Route
+{
+  private JobItem stops[];
+  private int     keys[];       //what offer() kept each stop by
+  private int     numStops;
+  private int     nextStop;     //index of the next stop to drive to
+  private JobItem best[];       //plan()'s best order so far
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  Route                                            //
+  // Arguments:    capacity - most stops it can hold                //
+  ////////////////////////////////////////////////////////////////////
+  public Route(int capacity)
+  {
+    stops = new JobItem[capacity];
+    keys = new int[capacity];
+    best = new JobItem[capacity];
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      clear                                            //
+  //               add - false if the route is full                 //
+  //               offer - adds the job if the route has room or if //
+  //                   key is less than one there, which it drops   //
+  //               isFull                                           //
+  //               getNumStops                                      //
+  //               getStop                                          //
+  //               hasNext                                          //
+  //               next - takes the next stop to drive to           //
+  ////////////////////////////////////////////////////////////////////
+  public void clear()
+  {
+    for(int n=0; n<numStops; n++) stops[n] = null;
+    numStops = 0;
+    nextStop = 0;
+  }
+  public boolean add(JobItem job)
+  {
+    return offer(job, Integer.MIN_VALUE);
+  }
+  public boolean offer(JobItem job, int key)
+  {
+    int n = numStops;
+    if(n==stops.length)
+    {
+      if(key >= keys[n-1]) return false;
+      n--;     //drop the last
+    }
+    else numStops++;
+
+    //kept in order of key
+    for(; n>0 && keys[n-1] > key; n--)
+    {
+      stops[n] = stops[n-1];
+      keys[n] = keys[n-1];
+    }
+    stops[n] = job;
+    keys[n] = key;
+    return true;
+  }
+  public boolean isFull()
+  {
+    return numStops==stops.length;
+  }
+  public int getNumStops()
+  {
+    return numStops;
+  }
+  public JobItem getStop(int n)
+  {
+    return stops[n];
+  }
+  public boolean hasNext()
+  {
+    return nextStop < numStops;
+  }
+  public JobItem next()
+  {
+    if(nextStop==numStops) return null;
+    JobItem job = stops[nextStop];
+    stops[nextStop++] = null;
+    return job;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getDistance                                      //
+  // Returns:      tiles a machine drives between two points        //
+  ////////////////////////////////////////////////////////////////////
+  static public int getDistance(int i0, int j0, int i1, int j1)
+  {
+    return Math.max(Math.abs(i1 - i0), Math.abs(j1 - j0));
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       plan                                             //
+  // Arguments:    i, j - tile the trip starts from                 //
+  // Description:  Puts the stops not yet driven to in order        //
+  ////////////////////////////////////////////////////////////////////
+  public void plan(int i, int j)
+  {
+    if(nextStop >= numStops) return;
+    planTour(i, j);
+    int bestTicks = getTicks(i, j);
+    System.arraycopy(stops, 0, best, 0, numStops);
+
+    //a block of stops goes quicker swept row by row (boustrophedon)
+    //since machines take longer to turn than to go straight
+    for(int across=0; across<2; across++)
+    {
+      planSweep(i, j, across==1);
+      int ticks = getTicks(i, j);
+      if(ticks < bestTicks)
+      {
+        bestTicks = ticks;
+        System.arraycopy(stops, 0, best, 0, numStops);
+      }
+    }
+    System.arraycopy(best, 0, stops, 0, numStops);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getTicks                                         //
+  // Arguments:    i, j - tile the trip starts from                 //
+  // Returns:      about how long it'd take to drive the stops not  //
+  //               yet driven to in order, turns and all            //
+  ////////////////////////////////////////////////////////////////////
+  public int getTicks(int i, int j)
+  {
+    int ticks = 0;
+    int facing = -1;
+    for(int n=nextStop; n<numStops; n++)
+    {
+      int di = stops[n].getI() - i;
+      int dj = stops[n].getJ() - j;
+      int diag = Math.min(Math.abs(di), Math.abs(dj));
+      int straight = Math.max(Math.abs(di), Math.abs(dj)) - diag;
+
+      //diagonally first, then straight on along the longer axis
+      if(diag > 0)
+      {
+        ticks += turnTicks(facing, getDir(di, dj));
+        facing = getDir(di, dj);
+      }
+      if(straight > 0)
+      {
+        int dir = (Math.abs(di) > Math.abs(dj)) ? getDir(di, 0)
+                                                : getDir(0, dj);
+        ticks += turnTicks(facing, dir);
+        facing = dir;
+      }
+      ticks += (diag + straight) * Machine.TICKS_PER_TILE;
+      i = stops[n].getI();
+      j = stops[n].getJ();
+    }
+    return ticks;
+  }
+
+  //Machine.DIR_N etc. for a step of (di,dj)
+  private static int getDir(int di, int dj)
+  {
+    if(di==0) return (dj<0) ? 0 : 4;
+    if(dj==0) return (di>0) ? 2 : 6;
+    if(dj<0)  return (di>0) ? 1 : 7;
+    return (di>0) ? 3 : 5;
+  }
+
+  private static int turnTicks(int from, int to)
+  {
+    if(from < 0) return 0;
+    int turns = (to - from) & 7;
+    if(turns > 4) turns = 8 - turns;
+    return turns * Machine.TICKS_PER_TURN;
+  }
+
+  //the stops ordered nearest first, then shortened by 2-opt
+  private void planTour(int i, int j)
+  {
+    int a, b, n;
+
+    //nearest stop first, then the nearest to that, and so on
+    int ci = i, cj = j;
+    for(a=nextStop; a<numStops; a++)
+    {
+      int best = a;
+      int bestDist = dist(ci, cj, a);
+      for(n=a+1; n<numStops; n++)
+      {
+        int d = dist(ci, cj, n);
+        if(d < bestDist)
+        {
+          best = n;
+          bestDist = d;
+        }
+      }
+      swap(a, best);
+      ci = stops[a].getI();
+      cj = stops[a].getJ();
+    }
+
+    //reverse stops a..b wherever that shortens the route; the
+    //route ends at the last stop, so there's nothing after b there
+    boolean improved = true;
+    while(improved)
+    {
+      improved = false;
+      for(a=nextStop; a<numStops-1; a++)
+      {
+        int pi = (a==nextStop) ? i : stops[a-1].getI();
+        int pj = (a==nextStop) ? j : stops[a-1].getJ();
+        for(b=a+1; b<numStops; b++)
+        {
+          int before = dist(pi, pj, a);
+          int after  = dist(pi, pj, b);
+          if(b+1 < numStops)
+          {
+            before += between(b, b+1);
+            after  += between(a, b+1);
+          }
+          if(after < before)
+          {
+            reverse(a, b);
+            improved = true;
+          }
+        }
+      }
+    }
+  }
+
+  //the stops in rows along j (or i if across), each row the other
+  //way from the last, starting from the end nearer (i,j)
+  private void planSweep(int i, int j, boolean across)
+  {
+    int a, n;
+
+    //sort by row and then along the row (few stops; insertion sort)
+    for(a=nextStop+1; a<numStops; a++)
+    {
+      for(n=a; n>nextStop && sweepKey(n-1, across) > sweepKey(n, across);
+          n--)
+      {
+        swap(n-1, n);
+      }
+    }
+
+    //start from the nearer end
+    if(dist(i, j, numStops-1) < dist(i, j, nextStop))
+    {
+      reverse(nextStop, numStops-1);
+    }
+
+    //every other row runs backwards
+    int flip = 0;
+    for(a=nextStop; a<numStops; a=n)
+    {
+      int row = across ? stops[a].getI() : stops[a].getJ();
+      for(n=a+1; n<numStops; n++)
+      {
+        if((across ? stops[n].getI() : stops[n].getJ()) != row) break;
+      }
+      if(flip==1) reverse(a, n-1);
+      flip ^= 1;
+    }
+  }
+
+  private int sweepKey(int n, boolean across)
+  {
+    int i = stops[n].getI();
+    int j = stops[n].getJ();
+    return across ? (i<<16) + j : (j<<16) + i;
+  }
+
+  private int dist(int i, int j, int n)
+  {
+    return getDistance(i, j, stops[n].getI(), stops[n].getJ());
+  }
+
+  private int between(int n, int m)
+  {
+    return dist(stops[n].getI(), stops[n].getJ(), m);
+  }
+
+  private void swap(int n, int m)
+  {
+    JobItem temp = stops[n];
+    stops[n] = stops[m];
+    stops[m] = temp;
+  }
+
+  private void reverse(int n, int m)
+  {
+    while(n < m) swap(n++, m--);
+  }
+}
@@ -0,0 +1,550 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     Scenario.java                                         //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Runs scripted jobs on a headless map until the work   //
+//            is done and reports how long it took:                 //
+//                                                                  //
+//              java Scenario [options] file ...                    //
+//                -runs n      run each seed n times (the makespan  //
+//                             comes out the same; the wall clock   //
+//                             time is averaged)                    //
+//                -seeds n     also try seeds seed+1 ... seed+n-1.  //
+//                             Orders are written for one map, so   //
+//                             this suits AUTO orders best.         //
+//                -jobs        also print the job metrics of each   //
+//                             run (see JobMetrics)                 //
+//                -metrics p   serve live metrics on localhost port //
+//                             p while running (see MetricsServer)  //
+//                                                                  //
+//            A scenario file has one command per line ('#' starts //
+//            a comment):                                           //
+//                                                                  //
+//              seed n          random seed for the map             //
+//              size w h        map size in tiles (w at least 10)   //
+//              machine type n  n machines of a type (Hoe, Dozer,   //
+//                              Roller, Grader, Truck) instead of   //
+//                              the usual 8                         //
+//              order job i j [at t] [priority p] [deadline d]      //
+//                              queue a CUT, FILL, CLEAR or PAVE    //
+//                              job at tile (i,j) on tick t (0 if   //
+//                              left out), NORMAL, HIGH or URGENT   //
+//                              priority, to be started by tick d.  //
+//                              AUTO queues whatever a click on the //
+//                              tile would.                         //
+//              depot i j       another Depot at tile (i,j)         //
+//              plan goal i0 j0 i1 j1 [at t]                        //
+//                              have the JobScheduler make the area //
+//                              (i0,j0)-(i1,j1) into ROAD or level  //
+//                              DIRT on tick t (0 if left out)      //
+//              limit t         give up after t ticks               //
+//                                                                  //
+//            The makespan is the number of ticks until every order //
+//            has been given, the job queue is empty, no machine    //
+//            has a job and nothing planned is left.  A machine is  //
+//            busy on the ticks it has a job.  Jobs the machines    //
+//            can't start (e.g. a fill with no flat dirt next to    //
+//            it) wait in BlockedJobs for the ground to change, so  //
+//            a run where no machine has been busy for STALL_TICKS  //
+//            after the last order is stopped as stalled.           //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.util.*;
+
+class Scenario
+{
+  //order job type that means "whatever a click would queue"
+  static final int ORDER_AUTO = 0;
+
+  //order job type of a plan; the goal follows the area
+  static final int ORDER_PLAN = -2;
+
+  //idle ticks with jobs still queued before a run counts as stalled
+  static final int STALL_TICKS = 1000;
+
+  //told about every tick of every run, if -metrics was given
+  static MetricsServer metrics;
+
+  String name;
+  long   seed;
+  int    width = Map.DEFAULT_WIDTH, height = Map.DEFAULT_HEIGHT;
+  int    limit = 100000;
+  int    fleet[];               //count of each Machine.TYPES, or null
+  ArrayList<int[]> depots = new ArrayList<int[]>();   //each {i, j}
+
+  //each {tick, job, i, j, priority, deadline}, or {tick, ORDER_PLAN,
+  //i0, j0, i1, j1, goal} for a plan
+  ArrayList<int[]> orders = new ArrayList<int[]>();
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        Result                                           //
+  // Description:  What one run of a scenario measured              //
+  ////////////////////////////////////////////////////////////////////
+  static class Result
+  {
+    long    seed;
+    boolean finished;
+    int     ticks;
+    int     jobsLeft;             //still queued or blocked when the
+                                  //run stopped
+    JobMetrics metrics;
+    long    nanos;
+    int     count[] = new int[Machine.TYPES.length];
+    long    busyTicks[] = new long[Machine.TYPES.length];
+
+    //////////////////////////////////////////////////////////////////
+    // Method:       getUtilization                                 //
+    // Arguments:    type - index into Machine.TYPES, or -1 for all //
+    // Returns:      fraction of machine-ticks spent on a job       //
+    //////////////////////////////////////////////////////////////////
+    double getUtilization(int type)
+    {
+      long busy = 0, machines = 0;
+      int t;
+      for(t=0; t<count.length; t++)
+      {
+        if(type>=0 && t!=type) continue;
+        busy += busyTicks[t];
+        machines += count[t];
+      }
+      if(machines==0 || ticks==0) return 0;
+      return (double) busy / ((double) machines * ticks);
+    }
+
+    double getTicksPerSecond()
+    {
+      if(nanos==0) return 0;
+      return ticks / (nanos / 1e9);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  Scenario                                         //
+  ////////////////////////////////////////////////////////////////////
+  public Scenario(String _name)
+  {
+    name = _name;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       findJob                                          //
+  // Returns:      job value of an order name, ORDER_AUTO or -1     //
+  ////////////////////////////////////////////////////////////////////
+  static int findJob(String job)
+  {
+    job = job.toUpperCase();
+    if(job.equals("CUT"))   return JobQ.JOB_CUT;
+    if(job.equals("FILL"))  return JobQ.JOB_FILL;
+    if(job.equals("CLEAR")) return JobQ.JOB_CLEAR;
+    if(job.equals("PAVE"))  return JobQ.JOB_PAVE;
+    if(job.equals("AUTO"))  return ORDER_AUTO;
+    return -1;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       findPriority                                     //
+  // Returns:      JobQ priority of a name (NORMAL, HIGH, URGENT)   //
+  ////////////////////////////////////////////////////////////////////
+  static int findPriority(String name)
+  {
+    name = name.toUpperCase();
+    if(name.equals("NORMAL")) return JobQ.PRIORITY_NORMAL;
+    if(name.equals("HIGH"))   return JobQ.PRIORITY_HIGH;
+    if(name.equals("URGENT")) return JobQ.PRIORITY_URGENT;
+    throw new IllegalArgumentException("no priority " + name);
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       load                                             //
+  // Arguments:    f - scenario file                                //
+  // Description:  Reads a scenario; mistakes are reported with     //
+  //               the file name and line number.                   //
+  ////////////////////////////////////////////////////////////////////
+  static public Scenario load(File f) throws IOException
+  {
+    Scenario s = new Scenario(f.getName());
+    BufferedReader in = new BufferedReader(new FileReader(f));
+    try
+    {
+      String line;
+      int lineNum = 0;
+      while((line = in.readLine()) != null)
+      {
+        lineNum++;
+        int hash = line.indexOf('#');
+        if(hash>=0) line = line.substring(0, hash);
+        StringTokenizer st = new StringTokenizer(line);
+        int n = st.countTokens();
+        if(n==0) continue;
+        String word[] = new String[n];
+        for(int k=0; k<n; k++) word[k] = st.nextToken();
+
+        try
+        {
+          s.parse(word);
+        }
+        catch(RuntimeException e)
+        {
+          throw new IOException(f + ":" + lineNum + ": " + e.getMessage());
+        }
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    return s;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       parse                                            //
+  // Arguments:    word - the words of one line                     //
+  ////////////////////////////////////////////////////////////////////
+  private void parse(String word[])
+  {
+    String cmd = word[0];
+    if(cmd.equals("seed") && word.length==2)
+    {
+      seed = Long.parseLong(word[1]);
+    }
+    else if(cmd.equals("size") && word.length==3)
+    {
+      width = Integer.parseInt(word[1]);
+      height = Integer.parseInt(word[2]);
+      if(width<10 || height<2)
+      {
+        throw new IllegalArgumentException("map must be at least 10x2");
+      }
+    }
+    else if(cmd.equals("machine") && word.length==3)
+    {
+      int type = Machine.getTypeIndex(word[1]);
+      if(type<0)
+      {
+        throw new IllegalArgumentException("no machine type " + word[1]);
+      }
+      if(fleet==null) fleet = new int[Machine.TYPES.length];
+      fleet[type] += Integer.parseInt(word[2]);
+    }
+    else if(cmd.equals("order") && word.length>=4 && word.length%2==0)
+    {
+      int job = findJob(word[1]);
+      if(job<0)
+      {
+        throw new IllegalArgumentException("no job type " + word[1]);
+      }
+      int order[] = { 0, job, Integer.parseInt(word[2]),
+                      Integer.parseInt(word[3]), JobQ.PRIORITY_NORMAL, -1 };
+      for(int w=4; w<word.length; w+=2)
+      {
+        if(word[w].equals("at"))
+        {
+          order[0] = Integer.parseInt(word[w+1]);
+        }
+        else if(word[w].equals("priority"))
+        {
+          order[4] = findPriority(word[w+1]);
+        }
+        else if(word[w].equals("deadline"))
+        {
+          order[5] = Integer.parseInt(word[w+1]);
+        }
+        else
+        {
+          throw new IllegalArgumentException("can't understand '"
+                                             + word[w] + "'");
+        }
+      }
+      orders.add(order);
+    }
+    else if(cmd.equals("plan") && (word.length==6 || word.length==8))
+    {
+      int goal;
+      if(word[1].equalsIgnoreCase("ROAD"))      goal = JobScheduler.GOAL_ROAD;
+      else if(word[1].equalsIgnoreCase("DIRT")) goal = JobScheduler.GOAL_DIRT;
+      else throw new IllegalArgumentException("no plan goal " + word[1]);
+      int tick = 0;
+      if(word.length==8)
+      {
+        if(!word[6].equals("at"))
+        {
+          throw new IllegalArgumentException("expected 'at tick'");
+        }
+        tick = Integer.parseInt(word[7]);
+      }
+      int order[] = { tick, ORDER_PLAN, Integer.parseInt(word[2]),
+                      Integer.parseInt(word[3]), Integer.parseInt(word[4]),
+                      Integer.parseInt(word[5]), goal };
+      orders.add(order);
+    }
+    else if(cmd.equals("depot") && word.length==3)
+    {
+      int depot[] = { Integer.parseInt(word[1]), Integer.parseInt(word[2]) };
+      depots.add(depot);
+    }
+    else if(cmd.equals("limit") && word.length==2)
+    {
+      limit = Integer.parseInt(word[1]);
+    }
+    else
+    {
+      throw new IllegalArgumentException("can't understand '" + cmd + "'");
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       makeMap                                          //
+  // Arguments:    runSeed - seed to build the map with             //
+  // Returns:      a new headless map with the scenario's fleet.    //
+  //               Map keeps static state, so only use the newest.  //
+  ////////////////////////////////////////////////////////////////////
+  Map makeMap(long runSeed)
+  {
+    Map map = new Map(null, width, height);
+    map.setSeed(runSeed);
+    map.randomize();
+    for(int d=0; d<depots.size(); d++)
+    {
+      int depot[] = depots.get(d);
+      Terrain ter = map.getTerrain(depot[0], depot[1]);
+      if(ter==null)
+      {
+        throw new IllegalArgumentException("depot " + depot[0] + ","
+                                           + depot[1] + " is off the map");
+      }
+      ter.createFromCurrent("Depot");
+    }
+    if(fleet==null) return map;
+
+    //take away the usual machines along the top row
+    int i, j, t, n;
+    for(i=0; i<width; i++)
+    {
+      Terrain ter = map.getTerrain(i, 0);
+      Machine m;
+      while((m = ter.getFirstMachine()) != null) ter.removeMachine(m);
+    }
+
+    //and line up the scenario's from (1,0), skipping the depot
+    int pos = 1;
+    for(t=0; t<Machine.TYPES.length; t++)
+    {
+      for(n=0; n<fleet[t]; n++)
+      {
+        i = pos % width;
+        j = (pos / width) % height;
+        pos++;
+        Terrain ter = map.getTerrain(i, j);
+        ter.addMachine(Machine.create(Machine.TYPES[t], ter));
+      }
+    }
+    return map;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       run                                              //
+  // Arguments:    runSeed - seed to build the map with             //
+  // Description:  Gives each order on its tick and runs the map    //
+  //               until the work is done or the limit is reached.  //
+  ////////////////////////////////////////////////////////////////////
+  public Result run(long runSeed)
+  {
+    Map map = makeMap(runSeed);
+    JobQ jobQ = map.getJobQ();
+    ArrayList<Machine> list = new ArrayList<Machine>();
+    map.getMachines(list);
+    Machine machines[] = new Machine[list.size()];
+    list.toArray(machines);
+    int type[] = new int[machines.length];
+    Result r = new Result();
+    r.seed = runSeed;
+    if(metrics != null) metrics.setMap(map);
+    int m;
+    for(m=0; m<machines.length; m++)
+    {
+      type[m] = Machine.getTypeIndex(machines[m].getType());
+      r.count[type[m]]++;
+    }
+
+    //orders are given in tick order; the sort is stable so orders
+    //on the same tick keep the order they were written in
+    int order[][] = new int[orders.size()][];
+    orders.toArray(order);
+    Arrays.sort(order, new Comparator<int[]>()
+    {
+      public int compare(int a[], int b[])
+      {
+        return a[0] - b[0];
+      }
+    });
+
+    int next = 0, tick = 0, idle = 0;
+    long start = System.nanoTime();
+    while(tick < limit)
+    {
+      while(next < order.length && order[next][0] <= tick)
+      {
+        int o[] = order[next++];
+        if(o[2]<0 || o[2]>=width || o[3]<0 || o[3]>=height) continue;
+        if(o[1]==ORDER_AUTO) map.addJobAt(o[2], o[3]);
+        else if(o[1]==ORDER_PLAN)
+        {
+          map.getScheduler().planArea(o[2], o[3], o[4], o[5], o[6]);
+        }
+        else jobQ.addJob(o[1], o[2], o[3], -1, o[4], o[5]);
+      }
+
+      long tickStart = System.nanoTime();
+      map.check();
+      if(metrics != null) metrics.recordTick(System.nanoTime() - tickStart);
+      tick++;
+
+      int busy = 0;
+      for(m=0; m<machines.length; m++)
+      {
+        if(machines[m].getJob() != null)
+        {
+          r.busyTicks[type[m]]++;
+          busy++;
+        }
+      }
+      if(busy==0 && next==order.length)
+      {
+        if(jobQ.getNumJobs()==0 && map.getBlockedJobs().getNumJobs()==0
+            && map.getScheduler().getNumSteps()==0)
+        {
+          r.finished = true;
+          break;
+        }
+        if(++idle >= STALL_TICKS) break;
+      }
+      else
+      {
+        idle = 0;
+      }
+    }
+    r.nanos = System.nanoTime() - start;
+    r.ticks = tick;
+    r.jobsLeft = jobQ.getNumJobs() + map.getBlockedJobs().getNumJobs();
+    r.metrics = jobQ.getMetrics();
+    return r;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       report                                           //
+  // Description:  Prints one run                                   //
+  ////////////////////////////////////////////////////////////////////
+  void report(Result r, PrintStream out)
+  {
+    out.println(name + "  seed " + r.seed + "  " + width + "x" + height
+                + "  " + orders.size() + " orders");
+    out.println("  makespan     " + r.ticks + " ticks ("
+                + (r.ticks / JobQ.TICKS_PER_SECOND) + " s of game time)"
+                + (r.finished ? "" : "  DID NOT FINISH, "
+                                     + r.jobsLeft + " jobs left"));
+    out.println("  wall clock   " + format(r.nanos / 1e6) + " ms, "
+                + format(r.getTicksPerSecond()) + " ticks/s");
+    out.print("  utilization  all " + percent(r.getUtilization(-1)));
+    for(int t=0; t<Machine.TYPES.length; t++)
+    {
+      if(r.count[t]==0) continue;
+      out.print(", " + Machine.TYPES[t] + " x" + r.count[t] + " "
+                + percent(r.getUtilization(t)));
+    }
+    out.println();
+  }
+
+  static String format(double d)
+  {
+    if(Math.abs(d) >= 100) return Long.toString(Math.round(d));
+    return Double.toString(Math.round(d * 10) / 10.0);
+  }
+
+  static String percent(double fraction)
+  {
+    return format(fraction * 100) + "%";
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  // Description:  Runs each scenario and, with -runs or -seeds,    //
+  //               the average over all of its runs.  Exits with 1  //
+  //               if any run did not finish.                       //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[]) throws Exception
+  {
+    int runs = 1, seeds = 1;
+    boolean showJobs = false;
+    int metricsPort = -1;
+    ArrayList<String> files = new ArrayList<String>();
+    for(int a=0; a<args.length; a++)
+    {
+      if(args[a].equals("-runs") && a+1<args.length)
+      {
+        runs = Math.max(1, Integer.parseInt(args[++a]));
+      }
+      else if(args[a].equals("-seeds") && a+1<args.length)
+      {
+        seeds = Math.max(1, Integer.parseInt(args[++a]));
+      }
+      else if(args[a].equals("-jobs"))
+      {
+        showJobs = true;
+      }
+      else if(args[a].equals("-metrics") && a+1<args.length)
+      {
+        metricsPort = Integer.parseInt(args[++a]);
+      }
+      else
+      {
+        files.add(args[a]);
+      }
+    }
+    if(files.size()==0)
+    {
+      System.out.println("usage: java Scenario [-runs n] [-seeds n] "
+                         + "[-jobs] [-metrics port] file ...");
+      return;
+    }
+    if(metricsPort >= 0)
+    {
+      metrics = new MetricsServer(null);
+      metrics.start(metricsPort);
+    }
+
+    boolean allFinished = true;
+    for(int f=0; f<files.size(); f++)
+    {
+      Scenario s = load(new File(files.get(f)));
+      long ticks = 0, nanos = 0;
+      double util = 0;
+      int finished = 0, total = runs * seeds;
+      for(int n=0; n<total; n++)
+      {
+        Result r = s.run(s.seed + n / runs);
+        s.report(r, System.out);
+        if(showJobs) r.metrics.write(System.out);
+        ticks += r.ticks;
+        nanos += r.nanos;
+        util += r.getUtilization(-1);
+        if(r.finished) finished++;
+        else           allFinished = false;
+      }
+      if(total > 1)
+      {
+        System.out.println(s.name + "  mean of " + total + " runs ("
+                           + finished + " finished): makespan "
+                           + format((double) ticks / total) + " ticks, "
+                           + format(ticks / (nanos / 1e9))
+                           + " ticks/s, utilization "
+                           + percent(util / total));
+      }
+      System.out.println();
+    }
+    System.exit(allFinished ? 0 : 1);
+  }
+}
@@ -0,0 +1,169 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     StripRenderer.java                                    //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Renders a Map into a FrameBuffer using several        //
+//            threads.  The frame is cut into horizontal strips     //
+//            and each thread draws the tiles and machines that     //
+//            overlap its own strip, in the usual back-to-front     //
+//            order.  Every pixel therefore goes through the same   //
+//            sequence of writes as in a serial redraw and the      //
+//            result is identical.                                  //
+//////////////////////////////////////////////////////////////////////
+
+class StripRenderer
+{
+  private FrameBuffer frameBuffer;
+  private StripTask   strips[];
+  private Map         map;          //being drawn this frame
+
+  //Workers wait for frameNum to change, draw their strip and count
+  //down pending; redraw() waits for pending to reach zero.  All of
+  //it is guarded by "this".  A plain monitor rather than an executor
+  //so that a frame creates no objects.
+  private int       frameNum, pending;
+  private Throwable error;          //first failure this frame
+  private boolean   stopped;
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  StripRenderer                                    //
+  // Arguments:    fb - buffer to draw into                         //
+  //               numStrips - how many strips (and threads) to use //
+  ////////////////////////////////////////////////////////////////////
+  public StripRenderer(FrameBuffer fb, int numStrips)
+  {
+    frameBuffer = fb;
+    if(numStrips < 1) numStrips = 1;
+
+    int height = fb.getHeight();
+    int stripHeight = (height + numStrips - 1) / numStrips;
+    numStrips = (height + stripHeight - 1) / stripHeight;
+    strips = new StripTask[numStrips];
+    int n;
+    for(n=0; n<numStrips; n++)
+    {
+      int top = n * stripHeight;
+      strips[n] = new StripTask(new FrameBuffer(fb, top, top+stripHeight),
+                                top, top+stripHeight);
+      Thread t = new Thread(strips[n], "StripRenderer");
+      t.setDaemon(true);
+      t.start();
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getFrameBuffer                                   //
+  ////////////////////////////////////////////////////////////////////
+  public FrameBuffer getFrameBuffer()
+  {
+    return frameBuffer;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       redraw                                           //
+  // Arguments:    _map - the map to draw                           //
+  // Description:  Parallel version of Map.redraw().  Returns once  //
+  //               every strip is finished.                         //
+  ////////////////////////////////////////////////////////////////////
+  public void redraw(Map _map)
+  {
+    _map.beginFrame(frameBuffer);
+    boolean interrupted = false;
+    Throwable failure;
+    synchronized(this)
+    {
+      map = _map;
+      error = null;
+      pending = strips.length;
+      frameNum++;
+      notifyAll();
+      while(pending > 0)
+      {
+        try
+        {
+          wait();
+        }
+        catch(InterruptedException e)
+        {
+          interrupted = true;   //the strips must still finish
+        }
+      }
+      failure = error;
+    }
+    if(interrupted) Thread.currentThread().interrupt();
+    if(failure != null) throw new RuntimeException(failure);
+    _map.endFrame();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       shutdown                                         //
+  // Description:  Stops the drawing threads                        //
+  ////////////////////////////////////////////////////////////////////
+  public synchronized void shutdown()
+  {
+    stopped = true;
+    notifyAll();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        StripTask                                        //
+  // Description:  Draws one strip of each frame                    //
+  ////////////////////////////////////////////////////////////////////
+  private class StripTask implements Runnable
+  {
+    private FrameBuffer strip;
+    private int top, bottom;
+
+    public StripTask(FrameBuffer _strip, int _top, int _bottom)
+    {
+      strip = _strip;
+      top = _top;
+      bottom = _bottom;
+    }
+
+    public void run()
+    {
+      int drawn = 0;     //last frame drawn
+      Map frameMap;
+      while(true)
+      {
+        synchronized(StripRenderer.this)
+        {
+          while(frameNum == drawn && !stopped)
+          {
+            try
+            {
+              StripRenderer.this.wait();
+            }
+            catch(InterruptedException e)
+            {
+              //only shutdown() stops a worker; a frame may be due
+            }
+          }
+          if(stopped) return;
+          drawn = frameNum;
+          frameMap = map;
+        }
+
+        Throwable failure = null;
+        try
+        {
+          frameMap.drawFrame(strip, top, bottom);
+        }
+        catch(Throwable t)
+        {
+          failure = t;
+        }
+
+        synchronized(StripRenderer.this)
+        {
+          if(failure != null && error == null) error = failure;
+          if(--pending == 0) StripRenderer.this.notifyAll();
+        }
+      }
+    }
+  }
+}
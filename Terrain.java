@@ -60,6 +60,7 @@ abstract class Terrain
   //               setMap                                           //
   //               getGK                                            //
   //               getMap                                           //
+  //               setSeed - for repeatable runs                    //
   ////////////////////////////////////////////////////////////////////
   static public void setGK(GameKit gkInit)
   {
@@ -77,6 +78,10 @@ abstract class Terrain
   {
     return map;
   }
+  static public void setSeed(long seed)
+  {
+    randomGen.setSeed(seed);
+  }
 
   ////////////////////////////////////////////////////////////////////
   // Methods:      getI                                             //
@@ -123,6 +128,7 @@ abstract class Terrain
   ////////////////////////////////////////////////////////////////////
   public Terrain createFromCurrent(String type)
   {
+    Events.TerrainChanged event = Events.beginTerrainChange();
     Terrain newTerrain = null;
     if(type=="Grass")       newTerrain = new Grass(map_i, map_j);
     if(type=="Dirt")        newTerrain = new Dirt(map_i, map_j);
@@ -132,7 +138,7 @@ abstract class Terrain
     if(type=="Depot")       newTerrain = new Depot(map_i, map_j);
     if(newTerrain==null)
     {
-      gk.debugMesg("createFromCurrent type not found!");
+      Log.log(Log.MAP, Log.ERROR, "createFromCurrent type not found!");
       return null;
     }
 
@@ -142,6 +148,7 @@ abstract class Terrain
     getMap().setTerrain(map_i, map_j, newTerrain);
     getMap().setFullRedraw();
 
+    Events.endTerrainChange(event, newTerrain, getType());
     return newTerrain;
   }
 
@@ -155,6 +162,16 @@ abstract class Terrain
     return 0;
   }
 
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getMapColor                                      //
+  // Returns:      0xrrggbb color of this terrain on the minimap    //
+  ////////////////////////////////////////////////////////////////////
+  public int  getMapColor()
+  {
+    //Override in derived classes
+    return 0;
+  }
+
   ////////////////////////////////////////////////////////////////////
   // Method:       getType                                          //
   // Returns:      returns String w/name of class                   //
@@ -193,17 +210,18 @@ abstract class Terrain
 
   ////////////////////////////////////////////////////////////////////
   // Method:       draw                                             //
-  // Arguments:    x, y:  pixel coordinates of top-left edge of     //
+  // Arguments:    rt:  where to draw                               //
+  //               x, y:  pixel coordinates of top-left edge of     //
   //               iso tile                                         //
   // Description:  Calls the draw method of each of the Machines    //
   //               in objList.                                      //
   ////////////////////////////////////////////////////////////////////
-  public void draw(int x, int y)
+  public void draw(RenderTarget rt, int x, int y)
   {
-    Machine m;
-    for(m=objList.getFirstItem(); m!=null; m=objList.getNextItem())
+    ObjItem item;
+    for(item=objList.getHead(); item!=null; item=item.getNextItem())
     {
-      m.draw(x, y);
+      item.getMachine().draw(rt, x, y);
     }
   }
 
@@ -212,16 +230,31 @@ abstract class Terrain
   //               removeMachine                                    //
   // Arguments:    machine - machine obj to add or remove           //
   // Description:  Adds the given machine object to the objList of  //
-  //               the terrain object                               //
+  //               the terrain object and tells the map about it    //
   ////////////////////////////////////////////////////////////////////
   public boolean addMachine(Machine m)
   {
-    return objList.addItem(m);
+    boolean added = objList.addItem(m);
+    if(map!=null) map.machinesChanged(map_i, map_j);
+    return added;
   }
 
   public boolean removeMachine(Machine m)
   {
-    return objList.removeItem(m);
+    boolean removed = objList.removeItem(m);
+    if(map!=null) map.machinesChanged(map_i, map_j);
+    return removed;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getFirstMachine                                  //
+  // Returns:      first machine on this tile or null               //
+  ////////////////////////////////////////////////////////////////////
+  public Machine getFirstMachine()
+  {
+    ObjItem item = objList.getHead();
+    if(item==null) return null;
+    return item.getMachine();
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -272,6 +305,10 @@ class Grass extends Terrain
   {
     return "Grass";
   }
+  public int  getMapColor()
+  {
+    return 0x3c8c28;
+  }
 }
 
 class Dirt extends Terrain
@@ -289,6 +326,10 @@ class Dirt extends Terrain
   {
     return "Dirt";
   }
+  public int  getMapColor()
+  {
+    return 0x8c6432;
+  }
 }
 
 class Road extends Terrain
@@ -306,6 +347,10 @@ class Road extends Terrain
   {
     return "Road";
   }
+  public int  getMapColor()
+  {
+    return 0x505050;
+  }
 }
 
 class AsphaltPile extends Terrain
@@ -323,6 +368,10 @@ class AsphaltPile extends Terrain
   {
     return "AsphaltPile";
   }
+  public int  getMapColor()
+  {
+    return 0x282828;
+  }
 }
 
 class DirtPile extends Terrain
@@ -340,6 +389,10 @@ class DirtPile extends Terrain
   {
     return "DirtPile";
   }
+  public int  getMapColor()
+  {
+    return 0x6e4a1e;
+  }
 }
 
 class Depot extends Terrain
@@ -357,5 +410,9 @@ class Depot extends Terrain
   {
     return "Depot";
   }
+  public int  getMapColor()
+  {
+    return 0xa03c28;
+  }
 }
 
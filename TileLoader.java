@@ -0,0 +1,201 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     TileLoader.java                                       //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Loads the tile images on a small pool of threads so   //
+//            the Foreman thread can generate the map meanwhile.    //
+//            Uses the asset pack when there is one, otherwise      //
+//            decodes and cuts every tile sheet concurrently.       //
+//////////////////////////////////////////////////////////////////////
+
+import java.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TileLoader
+{
+  private URL base;
+  private TileSet tileSet;
+  private ExecutorService pool;
+
+  //the pack task submits the sheet tasks if there is no pack, so
+  //sheetTask[] is only safe to look at once packTask is done
+  private Future<?> packTask;
+  private Future<?> sheetTask[] = new Future<?>[TileSet.SHEET_FILE.length];
+
+  //progress, readable from any thread without locking
+  private volatile boolean usedPack;
+  private AtomicInteger sheetsDone = new AtomicInteger();
+  private long startTime, elapsedTime;
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  TileLoader                                       //
+  // Arguments:    _base - URL the tile files are relative to       //
+  //               _tileSet - where to store the tile pixels        //
+  ////////////////////////////////////////////////////////////////////
+  public TileLoader(URL _base, TileSet _tileSet)
+  {
+    base = _base;
+    tileSet = _tileSet;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getSheetsDone - number of sheets cut so far      //
+  //               usedPack      - were tiles read from the pack?   //
+  //               getElapsedTime - ms from start() until await()   //
+  //                                returned                        //
+  ////////////////////////////////////////////////////////////////////
+  public int     getSheetsDone()
+  {
+    return sheetsDone.get();
+  }
+  public boolean usedPack()
+  {
+    return usedPack;
+  }
+  public long    getElapsedTime()
+  {
+    return elapsedTime;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       start                                            //
+  // Description:  Begins loading and returns immediately.          //
+  ////////////////////////////////////////////////////////////////////
+  public TileLoader start()
+  {
+    startTime = System.currentTimeMillis();
+    int numThreads = Math.min(TileSet.SHEET_FILE.length,
+                              Runtime.getRuntime().availableProcessors());
+    pool = Executors.newFixedThreadPool(Math.max(numThreads, 1),
+                                        new ThreadFactory()
+    {
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "TileLoader");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    packTask = pool.submit(new PackTask());
+    return this;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       await                                            //
+  // Returns:      null if every tile loaded, else the first error  //
+  // Description:  Blocks until loading has finished, even if the   //
+  //               thread is interrupted (the interrupt is kept for //
+  //               the caller).  Call before the first frame is     //
+  //               drawn.                                           //
+  ////////////////////////////////////////////////////////////////////
+  public Throwable await()
+  {
+    Throwable error = null;
+    try
+    {
+      error = waitFor(packTask, error);
+      for(int sheet=0; sheet<sheetTask.length; sheet++)
+      {
+        if(sheetTask[sheet] != null) error = waitFor(sheetTask[sheet], error);
+      }
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+    elapsedTime = System.currentTimeMillis() - startTime;
+    return error;
+  }
+
+  private Throwable waitFor(Future<?> task, Throwable error)
+  {
+    boolean interrupted = false;
+    try
+    {
+      for(;;)
+      {
+        try
+        {
+          task.get();
+          return error;
+        }
+        catch(InterruptedException e)
+        {
+          //keep waiting; tiles are needed before anything can be drawn
+          interrupted = true;
+        }
+        catch(ExecutionException e)
+        {
+          return (error != null) ? error : e.getCause();
+        }
+      }
+    }
+    finally
+    {
+      //the caller still gets to see it, once the tiles are in
+      if(interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        PackTask                                         //
+  // Description:  Reads the asset pack, or starts one SheetTask    //
+  //               per tile sheet if there is none.                 //
+  ////////////////////////////////////////////////////////////////////
+  private class PackTask implements Callable<Object>
+  {
+    public Object call() throws Exception
+    {
+      boolean found;
+      try
+      {
+        found = tileSet.readPack(new URL(base, TileSet.PACK_FILE));
+      }
+      catch(Exception e)
+      {
+        found = false;    //a bad pack is no worse than a missing one
+      }
+
+      if(found)
+      {
+        usedPack = true;
+        sheetsDone.set(TileSet.SHEET_FILE.length);
+        return null;
+      }
+
+      for(int sheet=0; sheet<sheetTask.length; sheet++)
+      {
+        sheetTask[sheet] = pool.submit(new SheetTask(sheet));
+      }
+      return null;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Class:        SheetTask                                        //
+  // Description:  Decodes one .bmp.gz sheet and cuts its tiles.    //
+  //               Sheets fill separate ranges of the tile set so   //
+  //               the tasks do not need to lock it.                //
+  ////////////////////////////////////////////////////////////////////
+  private class SheetTask implements Callable<Object>
+  {
+    private int sheet;
+
+    public SheetTask(int _sheet)
+    {
+      sheet = _sheet;
+    }
+
+    public Object call() throws Exception
+    {
+      URL url = new URL(base, TileSet.SHEET_FILE[sheet]);
+      tileSet.cutSheet(sheet, Bitmap.readBMPGZ(url.openStream()));
+      sheetsDone.incrementAndGet();
+      return null;
+    }
+  }
+}
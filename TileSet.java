@@ -0,0 +1,363 @@
+//////////////////////////////////////////////////////////////////////
+//  File:     TileSet.java                                          //
+//                                                                  //
+//  Author:   agent                                                 //
+//  Created:  10.19.26                                              //
+//  Modified: 10.19.26                                              //
+//                                                                  //
+//  Purpose:  Holds the ARGB pixels of every tile image and knows   //
+//            how the tile sheets are laid out.  Can save the cut   //
+//            tiles into a single asset pack and load them back     //
+//            without decoding any bitmaps.                         //
+//                                                                  //
+//            To build the pack run "java TileSet [directory]" in   //
+//            the directory holding the .bmp.gz sheets.            //
+//////////////////////////////////////////////////////////////////////
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+class TileSet
+{
+  //name of the asset pack file
+  static final String PACK_FILE = "tiles.pak";
+
+  //pack header values; "FPAK" and format version
+  static final int PACK_MAGIC = 0x4650414b, PACK_VERSION = 1;
+
+  //Tile sheet layout.  Tiles are numbered consecutively through
+  //the sheets in this order.
+  static final String SHEET_FILE[] =
+  {
+    "machines.bmp.gz", "isotiles.bmp.gz", "wireframe.bmp.gz"
+  };
+  static final String SHEET_DESC[] =
+  {
+    "machine", "terrain", "wireframe"
+  };
+  static final int SHEET_COLS[]   = { 8,  4,  4};
+  static final int SHEET_ROWS[]   = {10,  9,  4};
+  static final int SHEET_TILE_W[] = {64, 64, 64};
+  static final int SHEET_TILE_H[] = {32, 48, 48};
+
+  //number of zoom levels; each one has half the size of the last
+  static final int ZOOM_LEVELS = 3;
+
+  int tileW[], tileH[];
+  int pixels[][];       //aarrggbb values of each tile, or null
+
+  private TileSet halfSize;   //next zoom level, made on demand
+
+  ////////////////////////////////////////////////////////////////////
+  // Constructor:  TileSet                                          //
+  // Arguments:    maxTiles - number of tile slots                  //
+  ////////////////////////////////////////////////////////////////////
+  public TileSet(int maxTiles)
+  {
+    tileW = new int[maxTiles];
+    tileH = new int[maxTiles];
+    pixels = new int[maxTiles][];
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Methods:      getMaxTiles                                      //
+  //               getWidth                                         //
+  //               getHeight                                        //
+  //               getPixels                                        //
+  ////////////////////////////////////////////////////////////////////
+  public int   getMaxTiles()
+  {
+    return pixels.length;
+  }
+  public int   getWidth(int n)
+  {
+    return tileW[n];
+  }
+  public int   getHeight(int n)
+  {
+    return tileH[n];
+  }
+  public int[] getPixels(int n)
+  {
+    return pixels[n];
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getFirstTile                                     //
+  // Arguments:    sheet - index into the SHEET_ arrays             //
+  // Returns:      number of the first tile cut from that sheet     //
+  ////////////////////////////////////////////////////////////////////
+  static public int getFirstTile(int sheet)
+  {
+    int n = 0;
+    for(int s=0; s<sheet; s++) n += SHEET_COLS[s] * SHEET_ROWS[s];
+    return n;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       grab                                             //
+  // Arguments:    n - the number of the tile to store              //
+  //               bmData, bmWidth - source pixels and their width  //
+  //               x, y, w, h - the rectangle to copy               //
+  ////////////////////////////////////////////////////////////////////
+  public void grab(int n, int bmData[], int bmWidth,
+                   int x, int y, int w, int h)
+  {
+    int buffer[] = new int[w*h];
+    int j;
+    for(j=0; j<h; j++)
+    {
+      System.arraycopy(bmData, (y+j) * bmWidth + x, buffer, j*w, w);
+    }
+    tileW[n] = w;
+    tileH[n] = h;
+    pixels[n] = buffer;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       cutSheet                                         //
+  // Arguments:    sheet - index into the SHEET_ arrays             //
+  //               bm - the decoded sheet                           //
+  // Description:  Grabs every tile of the given sheet.             //
+  ////////////////////////////////////////////////////////////////////
+  public void cutSheet(int sheet, Bitmap bm)
+  {
+    int i, j, n = getFirstTile(sheet);
+    int w = SHEET_TILE_W[sheet], h = SHEET_TILE_H[sheet];
+    for(j=0; j<SHEET_ROWS[sheet]; j++)
+    {
+      for(i=0; i<SHEET_COLS[sheet]; i++)
+      {
+        grab(n++, bm.data, bm.width, i*w, j*h, w, h);
+      }
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getZoomLevel                                     //
+  // Arguments:    level - 0 for full size, 1 for half size, etc.   //
+  // Returns:      the tiles scaled down for that zoom level        //
+  ////////////////////////////////////////////////////////////////////
+  public TileSet getZoomLevel(int level)
+  {
+    TileSet tiles = this;
+    while(level-- > 0) tiles = tiles.getHalfSize();
+    return tiles;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       getHalfSize                                      //
+  // Returns:      every tile scaled to half its width and height   //
+  // Description:  Each new pixel averages the opaque pixels of a   //
+  //               2x2 block.  It stays transparent (the blue       //
+  //               color key) unless at least half the block was    //
+  //               opaque.  Made once and kept, so call after all   //
+  //               tiles are loaded.                                //
+  ////////////////////////////////////////////////////////////////////
+  public synchronized TileSet getHalfSize()
+  {
+    if(halfSize != null) return halfSize;
+
+    TileSet half = new TileSet(pixels.length);
+    int n, i, j;
+    for(n=0; n<pixels.length; n++)
+    {
+      if(pixels[n]==null) continue;
+      int w = tileW[n], h = tileH[n];
+      int hw = Math.max(w/2, 1), hh = Math.max(h/2, 1);
+      int src[] = pixels[n];
+      int dst[] = new int[hw*hh];
+      for(j=0; j<hh; j++)
+      {
+        for(i=0; i<hw; i++)
+        {
+          int count = 0, r = 0, g = 0, b = 0, k;
+          for(k=0; k<4; k++)
+          {
+            int sx = Math.min(i*2 + (k&1), w-1);
+            int sy = Math.min(j*2 + (k>>1), h-1);
+            int color = src[sy*w + sx];
+            if((color >>> 24) == 0) continue;   //transparent
+            r += (color >> 16) & 0xff;
+            g += (color >> 8) & 0xff;
+            b += color & 0xff;
+            count++;
+          }
+          if(count < 2) dst[j*hw + i] = 0xff;   //blue stays transparent
+          else dst[j*hw + i] = 0xff000000 | ((r/count) << 16)
+                                 | ((g/count) << 8) | (b/count);
+        }
+      }
+      half.tileW[n] = hw;
+      half.tileH[n] = hh;
+      half.pixels[n] = dst;
+    }
+    halfSize = half;
+    return halfSize;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       writePack                                        //
+  // Arguments:    out - stream to write the pack to                //
+  // Description:  Pack layout (all big-endian ints):               //
+  //                 magic, version, number of tile slots           //
+  //                 per slot: width, height, offset of pixels      //
+  //                 all tile pixels, aarrggbb                      //
+  //               Offsets are counted in ints from the first       //
+  //               pixel.  Empty slots have zero width.             //
+  ////////////////////////////////////////////////////////////////////
+  public void writePack(OutputStream out) throws IOException
+  {
+    DataOutputStream dataOut = new DataOutputStream(
+      new BufferedOutputStream(out, 65536));
+    int n, k, offset = 0;
+    dataOut.writeInt(PACK_MAGIC);
+    dataOut.writeInt(PACK_VERSION);
+    dataOut.writeInt(pixels.length);
+    for(n=0; n<pixels.length; n++)
+    {
+      if(pixels[n]==null)
+      {
+        dataOut.writeInt(0);
+        dataOut.writeInt(0);
+        dataOut.writeInt(0);
+        continue;
+      }
+      dataOut.writeInt(tileW[n]);
+      dataOut.writeInt(tileH[n]);
+      dataOut.writeInt(offset);
+      offset += pixels[n].length;
+    }
+    for(n=0; n<pixels.length; n++)
+    {
+      if(pixels[n]==null) continue;
+      for(k=0; k<pixels[n].length; k++) dataOut.writeInt(pixels[n][k]);
+    }
+    dataOut.flush();
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       readPack                                         //
+  // Arguments:    url - location of the pack                       //
+  // Returns:      false if there is no pack at that location       //
+  // Description:  Local packs are memory-mapped; anything else is  //
+  //               read into memory in one go.  Either way the      //
+  //               tiles are bulk-copied straight out of the        //
+  //               buffer.                                          //
+  ////////////////////////////////////////////////////////////////////
+  public boolean readPack(URL url) throws IOException
+  {
+    ByteBuffer buf;
+    if(url.getProtocol().equals("file"))
+    {
+      File file;
+      try
+      {
+        file = new File(url.toURI());
+      }
+      catch(URISyntaxException e)
+      {
+        file = new File(url.getPath());
+      }
+      if(!file.isFile()) return false;
+
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try
+      {
+        FileChannel channel = raf.getChannel();
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                          channel.size());
+      }
+      finally
+      {
+        raf.close();   //the mapping stays valid after closing
+      }
+    }
+    else
+    {
+      InputStream in;
+      try
+      {
+        in = url.openStream();
+      }
+      catch(FileNotFoundException e)
+      {
+        return false;
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+      byte chunk[] = new byte[65536];
+      int len;
+      try
+      {
+        while((len = in.read(chunk)) > 0) bytes.write(chunk, 0, len);
+      }
+      finally
+      {
+        in.close();
+      }
+      buf = ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    readPack(buf.order(ByteOrder.BIG_ENDIAN).asIntBuffer());
+    return true;
+  }
+
+  public void readPack(IntBuffer ib) throws IOException
+  {
+    if(ib.remaining() < 3 || ib.get(0) != PACK_MAGIC
+        || ib.get(1) != PACK_VERSION)
+    {
+      throw new IOException("Invalid tile pack");
+    }
+    int numSlots = ib.get(2);
+    int dataStart = 3 + numSlots*3;
+    int n;
+    for(n=0; n<numSlots && n<pixels.length; n++)
+    {
+      int w = ib.get(3 + n*3);
+      int h = ib.get(4 + n*3);
+      if(w==0) continue;
+      int offset = ib.get(5 + n*3);
+      int buffer[] = new int[w*h];
+      ib.position(dataStart + offset);
+      ib.get(buffer);
+      tileW[n] = w;
+      tileH[n] = h;
+      pixels[n] = buffer;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // Method:       main                                             //
+  // Arguments:    args[0] - directory holding the tile sheets      //
+  //                         (defaults to the current directory)    //
+  // Description:  Offline tool; cuts every sheet and writes the    //
+  //               asset pack next to them.                         //
+  ////////////////////////////////////////////////////////////////////
+  public static void main(String args[]) throws IOException
+  {
+    File dir = new File(args.length > 0 ? args[0] : ".");
+    TileSet tiles = new TileSet(GameKit.MAX_TILES);
+    int sheet;
+    for(sheet=0; sheet<SHEET_FILE.length; sheet++)
+    {
+      File f = new File(dir, SHEET_FILE[sheet]);
+      System.out.println("Cutting " + f);
+      tiles.cutSheet(sheet, Bitmap.readBMPGZ(new FileInputStream(f)));
+    }
+
+    File packFile = new File(dir, PACK_FILE);
+    FileOutputStream out = new FileOutputStream(packFile);
+    try
+    {
+      tiles.writePack(out);
+    }
+    finally
+    {
+      out.close();
+    }
+    System.out.println("Wrote " + packFile);
+  }
+}